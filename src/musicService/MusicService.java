@@ -1,8 +1,26 @@
 package musicstreaming.services;
 
 import musicStreaming.interfaces.Searchable;
+import musicstreaming.interfaces.AsyncSearchable;
 import musicStreaming.media.*;
+import musicStreaming.enums.LogLevel;
+import musicStreaming.events.EventLog;
+import musicStreaming.search.KeywordAutomaton;
+import musicStreaming.search.SearchResult;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 /**
  * MusicService - Central system controller for the music streaming platform
@@ -15,6 +33,8 @@ import java.util.ArrayList;
  * 
  * DESIGN RATIONALE:
  * - Implements Searchable because the system needs search capability
+ * - Implements AsyncSearchable so callers under load can search with a
+ *   deadline on virtual threads instead of blocking a platform thread
  * - Uses ArrayList for collections because we don't know how many items in advance
  * - Centralized storage ensures all users see the same catalog
  * - Similar to the Basket class pattern from Lecture 04
@@ -27,7 +47,7 @@ import java.util.ArrayList;
  * @author Member 4
  * @version 1.0
  */
-public class MusicService implements Searchable {
+public class MusicService implements AsyncSearchable {
     
     // WHY private: Encapsulation - protect internal data structure
     // WHY ArrayList: Dynamic sizing, don't know how many items in advance
@@ -37,6 +57,27 @@ public class MusicService implements Searchable {
     private ArrayList<Artist> allArtists;
     private ArrayList<Album> allAlbums;
     
+    // WHY virtual threads: an async search spends its life scanning or parked,
+    // one cheap virtual thread per query scales to many concurrent searches
+    // WHY static: one executor shared by every service instance
+    private static final ExecutorService SEARCH_EXECUTOR =
+            Executors.newVirtualThreadPerTaskExecutor();
+    
+    // WHY one timer thread: it only completes futures at their deadline
+    // WHY remove on cancel: a search that finishes early cancels its timer,
+    // which must not stay queued (holding its matches) until the deadline
+    private static final ScheduledThreadPoolExecutor DEADLINE_TIMER = createDeadlineTimer();
+    
+    private static ScheduledThreadPoolExecutor createDeadlineTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "search-deadline-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+    
     /**
      * Constructor initializes empty collections.
      * 
@@ -73,10 +114,10 @@ public class MusicService implements Searchable {
      * 
      * @param song the song to add to the system
      */
-    public void addSong(Song song) {
+    public synchronized void addSong(Song song) {
         if (song != null && !allSongs.contains(song)) {
             allSongs.add(song);
-            System.out.println("Song added: " + song.getTitle());
+            EventLog.info("MusicService", "Song added: {}", song.getTitle());
         }
     }
     
@@ -89,7 +130,7 @@ public class MusicService implements Searchable {
      * 
      * @param podcast the podcast to add
      */
-    public void addPodcast(Podcast podcast) {
+    public synchronized void addPodcast(Podcast podcast) {
         if (podcast != null && !allPodcasts.contains(podcast)) {
             allPodcasts.add(podcast);
             System.out.println("Podcast added: " + podcast.getTitle());
@@ -164,7 +205,7 @@ public class MusicService implements Searchable {
         
         // Validate input - defensive programming
         if (keyword == null || keyword.trim().isEmpty()) {
-            System.out.println("Please enter a valid search keyword.");
+            EventLog.warn("MusicService", "Please enter a valid search keyword.");
             return results;
         }
         
@@ -184,11 +225,118 @@ public class MusicService implements Searchable {
             }
         }
         
-        System.out.println("Search for '" + keyword + "' found " + 
-                         results.size() + " results.");
+        // WHY isEnabled guard: avoids boxing the count when logging is off
+        if (EventLog.isEnabled(LogLevel.INFO)) {
+            EventLog.info("MusicService", "Search for '{}' found {} results.",
+                          keyword, results.size());
+        }
         return results;
     }
     
+    /**
+     * Asynchronous search - implements AsyncSearchable interface contract.
+     * Same matching rules as search(), but runs on a virtual thread and
+     * answers by the deadline.
+     * 
+     * WHY THIS METHOD:
+     * - search() blocks the caller for the whole scan
+     * - Under load a slow query should not hold a platform thread
+     * - Callers would rather show the first matches on time than all
+     *   matches too late
+     * 
+     * HOW THE DEADLINE WORKS:
+     * - The scan runs on a virtual thread and appends matches as it goes,
+     *   over a copy of the catalog taken under the same lock as addSong/
+     *   addPodcast (the lists themselves are not thread-safe)
+     * - A timer task fires at the deadline and completes the future with
+     *   a snapshot of the matches so far, marked incomplete; it is
+     *   cancelled as soon as the future completes, so finished searches
+     *   leave no timers behind
+     * - The scan checks isDone() between items and stops as soon as the
+     *   future has been completed, so no work is wasted after the deadline
+     * - Whichever finishes first wins; CompletableFuture.complete() ignores
+     *   the second attempt
+     * 
+     * WHY NO PRINTING:
+     * - Runs off the caller's thread; console feedback belongs to the caller
+     * 
+     * @param keyword the search term (searches titles)
+     * @param deadline how long the caller is willing to wait
+     * @return future completed with a complete or partial SearchResult
+     *         (completed exceptionally if deadline is null)
+     */
+    @Override
+    public CompletableFuture<SearchResult> searchAsync(String keyword, Duration deadline) {
+        CompletableFuture<SearchResult> result = new CompletableFuture<SearchResult>();
+        
+        // Validate input - same rules as search(), but never block or throw
+        if (keyword == null || keyword.trim().isEmpty()) {
+            result.complete(new SearchResult(keyword, new ArrayList<Media>(), true));
+            return result;
+        }
+        if (deadline == null) {
+            result.completeExceptionally(new NullPointerException("deadline"));
+            return result;
+        }
+        
+        String lowerKeyword = keyword.toLowerCase();
+        // WHY synchronized list: the scan thread appends while the deadline
+        // task may take a snapshot at the same moment
+        List<Media> found = Collections.synchronizedList(new ArrayList<Media>());
+        
+        // Deadline: complete with whatever has been found so far
+        ScheduledFuture<?> timer = DEADLINE_TIMER.schedule(
+                () -> result.complete(snapshot(keyword, found, false)),
+                deadline.toNanos(), TimeUnit.NANOSECONDS);
+        result.whenComplete((done, error) -> timer.cancel(false));
+        
+        SEARCH_EXECUTOR.execute(() -> {
+            try {
+                Song[] songs;
+                Podcast[] podcasts;
+                synchronized (this) {
+                    songs = allSongs.toArray(new Song[0]);
+                    podcasts = allPodcasts.toArray(new Podcast[0]);
+                }
+                for (int i = 0; i < songs.length && !result.isDone(); i++) {
+                    Song song = songs[i];
+                    if (song.getTitle().toLowerCase().contains(lowerKeyword)) {
+                        found.add(song);
+                    }
+                }
+                for (int i = 0; i < podcasts.length && !result.isDone(); i++) {
+                    Podcast podcast = podcasts[i];
+                    if (podcast.getTitle().toLowerCase().contains(lowerKeyword)) {
+                        found.add(podcast);
+                    }
+                }
+                result.complete(snapshot(keyword, found, true));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        
+        return result;
+    }
+    
+    /**
+     * Copy the matches found so far into an immutable SearchResult.
+     * 
+     * WHY synchronized ON found:
+     * - Copying a synchronizedList must hold its lock, otherwise a
+     *   concurrent add() could break the iteration
+     * 
+     * @param keyword the searched keyword
+     * @param found the shared match list
+     * @param complete whether the scan finished
+     * @return immutable result
+     */
+    private static SearchResult snapshot(String keyword, List<Media> found, boolean complete) {
+        synchronized (found) {
+            return new SearchResult(keyword, found, complete);
+        }
+    }
+    
     /**
      * Search only songs (more specific than general search).
      * 
@@ -226,6 +374,76 @@ public class MusicService implements Searchable {
         return results;
     }
     
+    /**
+     * Run many song searches in a single pass over the catalog.
+     * 
+     * WHY THIS METHOD:
+     * - Batch jobs (recommendations) call searchSongs() thousands of times
+     *   back to back, and every call rescans allSongs
+     * - Here every title/artist/genre is read ONCE per batch, no matter
+     *   how many keywords are asked
+     * 
+     * HOW IT WORKS:
+     * - All keywords go into one Aho-Corasick automaton (KeywordAutomaton)
+     * - Each field of each song is fed through the automaton once
+     * - Every keyword the automaton reports gets the song added to its list
+     * - lastSong[id] remembers which song a keyword last matched, so a song
+     *   matching in both title and artist is only added once
+     * 
+     * SAME RESULTS AS searchSongs():
+     * - Case-insensitive substring match on title, artist and genre
+     * - Null or blank keywords map to an empty list
+     * - Uses getGener() for the genre text (getGenre() is still a stub)
+     * 
+     * @param keywords search terms
+     * @return map from each keyword (in the given order) to its matching songs
+     */
+    public Map<String, ArrayList<Song>> searchSongsBatch(List<String> keywords) {
+        Map<String, ArrayList<Song>> results = new LinkedHashMap<String, ArrayList<Song>>();
+        if (keywords == null || keywords.isEmpty()) {
+            return results;
+        }
+        
+        KeywordAutomaton automaton = new KeywordAutomaton(keywords);
+        
+        // Same snapshot as searchAsync: addSong() holds this monitor
+        Song[] songs;
+        synchronized (this) {
+            songs = allSongs.toArray(new Song[0]);
+        }
+        
+        // One result list per distinct keyword
+        List<ArrayList<Song>> perPattern = new ArrayList<ArrayList<Song>>();
+        for (int id = 0; id < automaton.getPatternCount(); id++) {
+            perPattern.add(new ArrayList<Song>());
+        }
+        
+        // WHY int[] stamp instead of a Set per song: no allocation, no clearing
+        int[] lastSong = new int[automaton.getPatternCount()];
+        Arrays.fill(lastSong, -1);
+        
+        for (int i = 0; i < songs.length; i++) {
+            final int songIndex = i;
+            final Song song = songs[i];
+            IntConsumer onMatch = id -> {
+                if (lastSong[id] != songIndex) {
+                    lastSong[id] = songIndex;
+                    perPattern.get(id).add(song);
+                }
+            };
+            automaton.match(song.getTitle(), onMatch);
+            automaton.match(song.getArtist(), onMatch);
+            automaton.match(song.getGener(), onMatch);
+        }
+        
+        for (String keyword : keywords) {
+            int id = automaton.idOf(keyword);
+            // Own copy per keyword: duplicates must not share a mutable list
+            results.put(keyword, id < 0 ? new ArrayList<Song>() : new ArrayList<Song>(perPattern.get(id)));
+        }
+        return results;
+    }
+    
     /**
      * Search only podcasts.
      * 
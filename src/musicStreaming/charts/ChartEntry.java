@@ -0,0 +1,46 @@
+package musicStreaming.charts;
+
+import musicStreaming.media.Media;
+
+/**
+ * One row of a trending chart: a media item and its estimated play count
+ * in the chart's window.
+ * 
+ * Counts come from a Count-Min Sketch, so they may be slightly high, never
+ * low.
+ * 
+ * @author Sima
+ */
+public final class ChartEntry {
+    
+    private final Media media;
+    private final long plays;
+    
+    ChartEntry(Media media, long plays) {
+        this.media = media;
+        this.plays = plays;
+    }
+    
+    /**
+     * GETTER: getMedia
+     * 
+     * @return the charting media item
+     */
+    public Media getMedia() {
+        return media;
+    }
+    
+    /**
+     * GETTER: getPlays
+     * 
+     * @return estimated plays in the window
+     */
+    public long getPlays() {
+        return plays;
+    }
+    
+    @Override
+    public String toString() {
+        return media.getTitle() + " (" + plays + " plays)";
+    }
+}
@@ -0,0 +1,80 @@
+package musicStreaming.charts;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch: approximate counters for any number of keys in a fixed
+ * depth x width table.
+ * 
+ * Each key increments one counter per row (rows use different hashes);
+ * its estimate is the smallest of those counters. Estimates never
+ * undercount, and overcount by at most about e/width of all counts with
+ * high probability. Memory does not depend on how many keys there are.
+ * 
+ * Sketches with the same shape can be subtracted, which lets a sliding
+ * window remove a whole expired bucket at once.
+ * 
+ * Not thread-safe; the owner synchronizes.
+ * 
+ * @author Sima
+ */
+final class CountMinSketch {
+    
+    private final int depth;
+    private final int mask;
+    private final int[] counts; // Row-major: row r at [r * width, (r + 1) * width)
+    
+    /**
+     * @param depth number of rows (hash functions)
+     * @param width counters per row, rounded up to a power of two
+     */
+    CountMinSketch(int depth, int width) {
+        int size = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counts = new int[depth * size];
+    }
+    
+    void add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            counts[row * (mask + 1) + ((h1 + row * h2) & mask)]++;
+        }
+    }
+    
+    int estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[row * (mask + 1) + ((h1 + row * h2) & mask)]);
+        }
+        return min;
+    }
+    
+    // this -= other; other must have been added to this as well
+    void subtract(CountMinSketch other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] -= other.counts[i];
+        }
+    }
+    
+    void clear() {
+        Arrays.fill(counts, 0);
+    }
+    
+    // 64-bit key hash over every char (FNV-1a), finished by SplitMix64 so
+    // both 32-bit halves used by the rows are well mixed. Not derived from
+    // String.hashCode: keys sharing that 32-bit value (e.g. "Aa" / "BB")
+    // would collide in every row and void the e/width bound.
+    static long hash(String key) {
+        long z = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            z = (z ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
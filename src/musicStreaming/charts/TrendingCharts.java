@@ -0,0 +1,161 @@
+package musicStreaming.charts;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import musicStreaming.enums.ChartWindow;
+import musicStreaming.enums.Genre;
+import musicStreaming.media.Media;
+import musicStreaming.media.Song;
+
+/**
+ * Real-time "top N in the last hour / day" charts, globally and per Genre.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * Counting every play of every track exactly, per genre and per window,
+ * needs memory proportional to the catalog. Charts only care about the few
+ * tracks that are played the most (the heavy hitters), and those can be
+ * found in fixed memory.
+ * 
+ * HOW IT WORKS:
+ * - Every play is fed in by User.startedPlaying
+ * - Each chart (scope x window) is a WindowedTopK: bucketed Count-Min
+ *   Sketches for the counts, plus a small heap of the current leaders
+ * - A play counts in the global charts and, for songs, in its genre's
+ *   charts (podcasts have no genre)
+ * - top() returns a cached, sorted list; it is rebuilt only after plays
+ *   changed the leaders or a bucket expired
+ * 
+ * MEMORY:
+ * (1 + number of genres) x windows x (buckets + 1) sketches of
+ * depth x width ints, plus topK x CANDIDATE_FACTOR candidates per chart -
+ * about 1 MB per scope with the defaults (global plus one per genre that
+ * was played), whatever the catalog size.
+ * 
+ * ACCURACY:
+ * Counts may be slightly high (never low); tracks with near-equal counts
+ * at the bottom of a chart may swap places.
+ * 
+ * @author Sima
+ */
+public final class TrendingCharts {
+    
+    private static final int DEFAULT_TOP_K = 100;
+    private static final int DEFAULT_SKETCH_WIDTH = 2048;
+    private static final int SKETCH_DEPTH = 4;
+    // Extra candidates tracked beyond topK, so a rising track is already
+    // being followed by the time it enters the chart
+    private static final int CANDIDATE_FACTOR = 4;
+    private static final ChartWindow[] WINDOWS = ChartWindow.values();
+    
+    private static TrendingCharts shared;
+    
+    private final int topK;
+    private final int sketchWidth;
+    private final WindowedTopK[] global;
+    private final EnumMap<Genre, WindowedTopK[]> byGenre = new EnumMap<Genre, WindowedTopK[]>(Genre.class);
+    
+    /**
+     * CONSTRUCTOR: TrendingCharts
+     * 
+     * @param topK longest chart that can be asked for
+     * @param sketchWidth counters per sketch row; wider is more accurate
+     */
+    public TrendingCharts(int topK, int sketchWidth) {
+        if (topK <= 0 || sketchWidth <= 0) {
+            throw new IllegalArgumentException("Chart size and sketch width must be positive");
+        }
+        this.topK = topK;
+        this.sketchWidth = sketchWidth;
+        this.global = newCharts();
+    }
+    
+    /**
+     * METHOD: getShared
+     * 
+     * @return the node-wide charts fed by User plays
+     */
+    public static synchronized TrendingCharts getShared() {
+        if (shared == null) {
+            shared = new TrendingCharts(DEFAULT_TOP_K, DEFAULT_SKETCH_WIDTH);
+        }
+        return shared;
+    }
+    
+    /**
+     * METHOD: record
+     * 
+     * @param media the media that was played
+     * @param timestamp when it was played (epoch millis)
+     * 
+     * PURPOSE:
+     * Counts one play in every chart it belongs to.
+     */
+    public void record(Media media, long timestamp) {
+        if (media == null || media.getId() == null) {
+            return;
+        }
+        long hash = CountMinSketch.hash(media.getId());
+        for (WindowedTopK chart : global) {
+            chart.record(media, hash, timestamp);
+        }
+        if (media instanceof Song) {
+            for (WindowedTopK chart : chartsFor(Genre.fromName(((Song) media).getGener()))) {
+                chart.record(media, hash, timestamp);
+            }
+        }
+    }
+    
+    /**
+     * METHOD: top
+     * 
+     * @param window the time span of the chart
+     * @param genre the genre, or null for the global chart
+     * @param n how many entries (at most topK)
+     * @return the n most played items in the window, most played first
+     *         (unmodifiable; fewer if not enough items were played)
+     */
+    public List<ChartEntry> top(ChartWindow window, Genre genre, int n) {
+        WindowedTopK[] charts;
+        if (genre == null) {
+            charts = global;
+        } else {
+            synchronized (byGenre) {
+                charts = byGenre.get(genre);
+            }
+            if (charts == null) {
+                return Collections.emptyList(); // Nothing played yet
+            }
+        }
+        return charts[window.ordinal()].top(Math.min(n, topK), System.currentTimeMillis());
+    }
+    
+    /**
+     * GETTER: getTopK
+     * 
+     * @return longest chart that can be asked for
+     */
+    public int getTopK() {
+        return topK;
+    }
+    
+    // Genre charts are created on the first play of that genre
+    private WindowedTopK[] chartsFor(Genre genre) {
+        synchronized (byGenre) {
+            WindowedTopK[] charts = byGenre.get(genre);
+            if (charts == null) {
+                charts = newCharts();
+                byGenre.put(genre, charts);
+            }
+            return charts;
+        }
+    }
+    
+    private WindowedTopK[] newCharts() {
+        WindowedTopK[] charts = new WindowedTopK[WINDOWS.length];
+        for (ChartWindow window : WINDOWS) {
+            charts[window.ordinal()] = new WindowedTopK(window, topK * CANDIDATE_FACTOR, SKETCH_DEPTH, sketchWidth);
+        }
+        return charts;
+    }
+}
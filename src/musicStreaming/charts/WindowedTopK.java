@@ -0,0 +1,197 @@
+package musicStreaming.charts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import musicStreaming.enums.ChartWindow;
+import musicStreaming.media.Media;
+
+/**
+ * Heavy hitters of one chart (one scope, one window).
+ * 
+ * - One Count-Min Sketch per time bucket plus one for the whole window
+ *   (the sum of the buckets). A play increments its bucket and the window;
+ *   when a bucket slides out of the window it is subtracted and cleared
+ * - Candidates: at most "capacity" items with the highest estimates, kept
+ *   in an indexed min-heap, so a newcomer only has to beat the smallest
+ * - The sorted chart is cached and rebuilt only after a change
+ * 
+ * Thread safety: every method synchronizes on this object; the work per
+ * call is O(depth + log capacity), or O(sketch size) when a bucket expires.
+ * 
+ * @author Sima
+ */
+final class WindowedTopK {
+    
+    private static final class Candidate {
+        final Media media;
+        final long hash;
+        long count;
+        int heapIndex;
+        
+        Candidate(Media media, long hash) {
+            this.media = media;
+            this.hash = hash;
+        }
+    }
+    
+    private final long bucketMillis;
+    private final int buckets;
+    private final int capacity;
+    private final CountMinSketch[] bucketSketches;
+    private final CountMinSketch window;
+    
+    private final HashMap<String, Candidate> candidates = new HashMap<String, Candidate>();
+    private final Candidate[] heap; // Min-heap on count
+    private int heapSize;
+    
+    private long currentBucket = Long.MIN_VALUE; // Newest bucket seen
+    private List<ChartEntry> chart = Collections.emptyList();
+    private boolean dirty;
+    
+    WindowedTopK(ChartWindow span, int capacity, int depth, int width) {
+        this.bucketMillis = span.getBucketMillis();
+        this.buckets = span.getBuckets();
+        this.capacity = capacity;
+        this.bucketSketches = new CountMinSketch[buckets];
+        for (int i = 0; i < buckets; i++) {
+            bucketSketches[i] = new CountMinSketch(depth, width);
+        }
+        this.window = new CountMinSketch(depth, width);
+        this.heap = new Candidate[capacity];
+    }
+    
+    synchronized void record(Media media, long hash, long timestamp) {
+        long bucket = Math.floorDiv(timestamp, bucketMillis);
+        advance(bucket);
+        if (bucket <= currentBucket - buckets) {
+            return; // Older than the window
+        }
+        bucketSketches[(int) Math.floorMod(bucket, (long) buckets)].add(hash);
+        window.add(hash);
+        long estimate = window.estimate(hash);
+        
+        Candidate candidate = candidates.get(media.getId());
+        if (candidate != null) {
+            candidate.count = estimate;
+            siftDown(candidate.heapIndex); // Count only grew
+        } else if (heapSize < capacity) {
+            candidate = new Candidate(media, hash);
+            candidate.count = estimate;
+            candidates.put(media.getId(), candidate);
+            heap[heapSize] = candidate;
+            candidate.heapIndex = heapSize++;
+            siftUp(candidate.heapIndex);
+        } else if (estimate > heap[0].count) {
+            candidates.remove(heap[0].media.getId());
+            candidate = new Candidate(media, hash);
+            candidate.count = estimate;
+            candidates.put(media.getId(), candidate);
+            heap[0] = candidate;
+            candidate.heapIndex = 0;
+            siftDown(0);
+        } else {
+            return; // Not in the running; chart unchanged
+        }
+        dirty = true;
+    }
+    
+    // Top n by estimated plays in the window ending at "now"
+    synchronized List<ChartEntry> top(int n, long now) {
+        advance(Math.floorDiv(now, bucketMillis));
+        if (dirty) {
+            Candidate[] sorted = Arrays.copyOf(heap, heapSize);
+            Arrays.sort(sorted, (a, b) -> Long.compare(b.count, a.count));
+            List<ChartEntry> entries = new ArrayList<ChartEntry>(sorted.length);
+            for (Candidate candidate : sorted) {
+                entries.add(new ChartEntry(candidate.media, candidate.count));
+            }
+            chart = Collections.unmodifiableList(entries);
+            dirty = false;
+        }
+        return chart.size() <= n ? chart : chart.subList(0, n);
+    }
+    
+    // Slides the window forward to "bucket", expiring buckets that leave it
+    private void advance(long bucket) {
+        if (bucket <= currentBucket) {
+            return;
+        }
+        if (currentBucket == Long.MIN_VALUE || bucket - currentBucket >= buckets) {
+            for (CountMinSketch sketch : bucketSketches) {
+                sketch.clear();
+            }
+            window.clear();
+        } else {
+            for (long b = currentBucket + 1; b <= bucket; b++) {
+                CountMinSketch expired = bucketSketches[(int) Math.floorMod(b, (long) buckets)];
+                window.subtract(expired);
+                expired.clear();
+            }
+        }
+        currentBucket = bucket;
+        refreshCandidates();
+    }
+    
+    // After expiry: re-estimate every candidate, drop those at zero, re-heap
+    private void refreshCandidates() {
+        int kept = 0;
+        for (int i = 0; i < heapSize; i++) {
+            Candidate candidate = heap[i];
+            candidate.count = window.estimate(candidate.hash);
+            if (candidate.count > 0) {
+                heap[kept++] = candidate;
+            } else {
+                candidates.remove(candidate.media.getId());
+            }
+        }
+        Arrays.fill(heap, kept, heapSize, null);
+        heapSize = kept;
+        for (int i = 0; i < heapSize; i++) {
+            heap[i].heapIndex = i;
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+        dirty = true;
+    }
+    
+    private void siftUp(int index) {
+        Candidate moving = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= moving.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(moving, index);
+    }
+    
+    private void siftDown(int index) {
+        Candidate moving = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (moving.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(moving, index);
+    }
+    
+    private void place(Candidate candidate, int index) {
+        heap[index] = candidate;
+        candidate.heapIndex = index;
+    }
+}
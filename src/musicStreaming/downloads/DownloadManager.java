@@ -0,0 +1,360 @@
+package musicStreaming.downloads;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import musicStreaming.enums.DownloadState;
+import musicStreaming.events.EventLog;
+import musicStreaming.media.Media;
+import musicstreaming.interfaces.DownloadListener;
+
+/**
+ * Concurrent, resumable download subsystem behind PremiumUser.downloadMedia.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * downloadMedia used to sleep 500 ms and flip a flag. A real download copies
+ * a media file from the origin store into the user's offline directory, and
+ * thousands of them may run at once. One thread per download would not
+ * survive that, so downloads are state objects advanced by a small pool.
+ * 
+ * HOW IT WORKS:
+ * - submit() queues a DownloadTask; nothing runs on the caller's thread
+ * - A task is ADMITTED only while both limits allow it: at most
+ *   maxActive downloads node-wide and maxPerUser per user. The rest wait
+ *   in QUEUED state and are admitted as slots free up
+ * - An admitted task transfers ONE chunk per worker step, then re-queues
+ *   itself behind the other active tasks (round robin), so a huge file
+ *   cannot starve small ones and the pool size is independent of the
+ *   number of downloads
+ * - A second submit() for a user and media already in progress returns the
+ *   task in progress: both would write the same part file
+ * - Chunks move with FileChannel.transferTo: the kernel copies the bytes,
+ *   they never pass through the Java heap
+ * 
+ * RESUME:
+ * - Data is written to "mediaId.part" in the user's offline directory
+ * - On (re)start, the part file is cut back to the last whole chunk and the
+ *   transfer continues from there
+ * - When the last chunk is stored, the part file is forced to disk and
+ *   atomically renamed to "mediaId"
+ * 
+ * STORAGE LAYOUT:
+ * originDir/mediaId                source files
+ * offlineDir/userId/mediaId        finished downloads
+ * offlineDir/userId/mediaId.part   downloads in progress
+ * 
+ * @author Sima
+ */
+public class DownloadManager {
+    
+    // Defaults for the shared instance; the directories can be overridden
+    // with -Dmusicstreaming.origin.dir=... and -Dmusicstreaming.offline.dir=...
+    private static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int DEFAULT_MAX_ACTIVE = 4096;
+    private static final int DEFAULT_MAX_PER_USER = 3;
+    
+    private static final String PART_SUFFIX = ".part";
+    
+    private static DownloadManager shared;
+    
+    private final Path originDir;
+    private final Path offlineDir;
+    private final int chunkSize;
+    private final int maxActive;
+    private final int maxPerUser;
+    private final ExecutorService workers;
+    
+    // Admission state, guarded by "this"
+    private final ArrayDeque<DownloadTask> waiting = new ArrayDeque<DownloadTask>();
+    private final Map<String, Integer> activePerUser = new HashMap<String, Integer>();
+    // Unfinished tasks by user and media id
+    private final Map<String, DownloadTask> inProgress = new HashMap<String, DownloadTask>();
+    private int active;
+    
+    /**
+     * CONSTRUCTOR: DownloadManager
+     * 
+     * @param originDir directory holding the source media files
+     * @param offlineDir root of the per-user offline directories
+     * @param chunkSize bytes transferred per worker step
+     * @param workers number of worker threads
+     * @param maxActive maximum downloads in progress node-wide
+     * @param maxPerUser maximum downloads in progress per user
+     */
+    public DownloadManager(Path originDir, Path offlineDir, int chunkSize,
+                           int workers, int maxActive, int maxPerUser) {
+        if (chunkSize <= 0 || workers <= 0 || maxActive <= 0 || maxPerUser <= 0) {
+            throw new IllegalArgumentException("Download limits must be positive");
+        }
+        this.originDir = originDir;
+        this.offlineDir = offlineDir;
+        this.chunkSize = chunkSize;
+        this.maxActive = maxActive;
+        this.maxPerUser = maxPerUser;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), runnable -> {
+                    Thread thread = new Thread(runnable, "download-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    /**
+     * METHOD: getShared
+     * 
+     * @return the node-wide download manager used by PremiumUser
+     */
+    public static synchronized DownloadManager getShared() {
+        if (shared == null) {
+            shared = new DownloadManager(
+                    Paths.get(System.getProperty("musicstreaming.origin.dir", "media/origin")),
+                    Paths.get(System.getProperty("musicstreaming.offline.dir", "media/offline")),
+                    DEFAULT_CHUNK_SIZE, DEFAULT_WORKERS, DEFAULT_MAX_ACTIVE, DEFAULT_MAX_PER_USER);
+        }
+        return shared;
+    }
+    
+    /**
+     * METHOD: submit
+     * 
+     * @param userId the user downloading (selects the offline directory)
+     * @param media the media to download (its id names the files)
+     * @param listener progress callbacks, may be null
+     * @return handle for the queued download
+     * 
+     * PURPOSE:
+     * Queues a download without blocking. Submitting media that was
+     * partially downloaded before resumes from its last completed chunk.
+     * If this user is already downloading this media, that task is returned
+     * and the given listener is not added (follow getCompletion() instead).
+     */
+    public DownloadTask submit(String userId, Media media, DownloadListener listener) {
+        String key = userId + '\u0000' + media.getId();
+        synchronized (this) {
+            DownloadTask running = inProgress.get(key);
+            if (running != null) {
+                return running;
+            }
+            DownloadTask task = new DownloadTask(userId, media,
+                    listener != null ? listener : new DownloadListener() { });
+            inProgress.put(key, task);
+            waiting.add(task);
+            admitWaiting();
+            return task;
+        }
+    }
+    
+    /**
+     * METHOD: getOfflineFile
+     * 
+     * @param userId the user
+     * @param mediaId the media id
+     * @return where the finished download for this user and media lives
+     */
+    public Path getOfflineFile(String userId, String mediaId) {
+        return offlineDir.resolve(safeName(userId)).resolve(safeName(mediaId));
+    }
+    
+    /**
+     * METHOD: getOriginFile
+     * 
+     * @param mediaId the media id
+     * @return where the source file of this media lives
+     */
+    public Path getOriginFile(String mediaId) {
+        return originDir.resolve(safeName(mediaId));
+    }
+    
+    /**
+     * GETTER: getActiveCount
+     * 
+     * @return downloads currently admitted
+     */
+    public synchronized int getActiveCount() {
+        return active;
+    }
+    
+    /**
+     * GETTER: getQueuedCount
+     * 
+     * @return downloads waiting for a slot
+     */
+    public synchronized int getQueuedCount() {
+        return waiting.size();
+    }
+    
+    // Caller holds the lock. Skips over tasks whose user is at its limit,
+    // so one busy user cannot block everybody queued behind them.
+    private void admitWaiting() {
+        Iterator<DownloadTask> it = waiting.iterator();
+        while (active < maxActive && it.hasNext()) {
+            DownloadTask task = it.next();
+            int running = activePerUser.getOrDefault(task.getUserId(), 0);
+            if (running < maxPerUser) {
+                it.remove();
+                active++;
+                activePerUser.put(task.getUserId(), running + 1);
+                task.setState(DownloadState.ACTIVE);
+                workers.execute(() -> step(task));
+            }
+        }
+    }
+    
+    // Called once when a task finishes, whatever the outcome
+    private synchronized void release(DownloadTask task) {
+        inProgress.remove(task.getUserId() + '\u0000' + task.getMedia().getId(), task);
+        active--;
+        int running = activePerUser.get(task.getUserId()) - 1;
+        if (running == 0) {
+            activePerUser.remove(task.getUserId());
+        } else {
+            activePerUser.put(task.getUserId(), running);
+        }
+        admitWaiting();
+    }
+    
+    // One worker step: open on first use, move one chunk, re-queue or finish
+    private void step(DownloadTask task) {
+        try {
+            if (task.isCancelRequested()) {
+                finish(task, DownloadState.CANCELLED, null);
+                return;
+            }
+            if (task.source == null) {
+                if (open(task)) {
+                    return; // Already downloaded earlier
+                }
+            }
+            long position = task.getBytesDone();
+            long end = Math.min(position + chunkSize, task.getTotalBytes());
+            task.target.position(position);
+            while (position < end) {
+                long moved = task.source.transferTo(position, end - position, task.target);
+                if (moved <= 0) {
+                    throw new IOException("Origin file shrank during download: " + task.getMedia().getId());
+                }
+                position += moved;
+            }
+            task.setBytesDone(position);
+            long done = position;
+            notifyListener(task, () -> task.getListener().onProgress(task, done, task.getTotalBytes()));
+            
+            if (position >= task.getTotalBytes()) {
+                complete(task);
+            } else {
+                workers.execute(() -> step(task));
+            }
+        } catch (IOException e) {
+            finish(task, DownloadState.FAILED, e);
+        } catch (RuntimeException e) {
+            // Bad id or broken listener: fail this download, keep the worker
+            finish(task, DownloadState.FAILED, new IOException(e));
+        }
+    }
+    
+    // Opens channels and positions after the last whole chunk.
+    // Returns true if the download was already complete.
+    private boolean open(DownloadTask task) throws IOException {
+        String mediaId = task.getMedia().getId();
+        Path source = getOriginFile(mediaId);
+        task.finalFile = getOfflineFile(task.getUserId(), mediaId);
+        task.partFile = task.finalFile.resolveSibling(task.finalFile.getFileName() + PART_SUFFIX);
+        
+        long total = Files.size(source);
+        task.setTotalBytes(total);
+        if (Files.exists(task.finalFile) && Files.size(task.finalFile) == total) {
+            task.setBytesDone(total);
+            finish(task, DownloadState.COMPLETED, null);
+            return true;
+        }
+        
+        Files.createDirectories(task.finalFile.getParent());
+        task.source = FileChannel.open(source, StandardOpenOption.READ);
+        task.target = FileChannel.open(task.partFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        
+        // Resume: keep only whole chunks, a torn last chunk is re-fetched
+        long resumeAt = Math.min(total, (task.target.size() / chunkSize) * chunkSize);
+        task.target.truncate(resumeAt);
+        task.setBytesDone(resumeAt);
+        return false;
+    }
+    
+    private void complete(DownloadTask task) throws IOException {
+        task.target.force(true);
+        closeChannels(task);
+        Files.move(task.partFile, task.finalFile,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finish(task, DownloadState.COMPLETED, null);
+    }
+    
+    // Runs once per task: a later call (e.g. from step()'s catch after a
+    // failure in here) is ignored, so release() never runs twice
+    private void finish(DownloadTask task, DownloadState state, IOException error) {
+        if (!task.markFinished()) {
+            return;
+        }
+        closeChannels(task);
+        task.setState(state);
+        release(task);
+        if (state == DownloadState.COMPLETED) {
+            notifyListener(task, () -> task.getListener().onComplete(task, task.finalFile));
+            task.getCompletion().complete(task.finalFile);
+        } else if (state == DownloadState.FAILED) {
+            notifyListener(task, () -> task.getListener().onFailed(task, error));
+            task.getCompletion().completeExceptionally(error);
+        } else {
+            task.getCompletion().completeExceptionally(
+                    new CancellationException("Download cancelled: " + task.getMedia().getId()));
+        }
+    }
+    
+    // A throwing listener must not change the outcome of the download
+    private static void notifyListener(DownloadTask task, Runnable call) {
+        try {
+            call.run();
+        } catch (RuntimeException e) {
+            EventLog.warn("DownloadManager", "Download listener failed: {}", e.toString());
+        }
+    }
+    
+    private static void closeChannels(DownloadTask task) {
+        try {
+            if (task.source != null) {
+                task.source.close();
+            }
+            if (task.target != null) {
+                task.target.close();
+            }
+        } catch (IOException ignored) {
+            // Nothing useful to do; the data that matters is already forced
+        } finally {
+            task.source = null;
+            task.target = null;
+        }
+    }
+    
+    // Ids become file names: refuse anything that could escape the directory
+    private static String safeName(String id) {
+        if (id == null || id.isEmpty() || id.contains("/") || id.contains("\\") || id.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid id for file name: " + id);
+        }
+        return id;
+    }
+}
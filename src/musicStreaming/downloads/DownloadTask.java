@@ -0,0 +1,143 @@
+package musicStreaming.downloads;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import musicStreaming.enums.DownloadState;
+import musicStreaming.media.Media;
+import musicstreaming.interfaces.DownloadListener;
+
+/**
+ * Handle for one download submitted to a DownloadManager.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * A download is not a thread. It is a small state object (open channels,
+ * position) that the manager's worker pool advances one chunk at a time.
+ * Callers use this handle to watch progress, wait for the result, or cancel.
+ * 
+ * @author Sima
+ */
+public class DownloadTask {
+    
+    private final String userId;
+    private final Media media;
+    private final DownloadListener listener;
+    private final CompletableFuture<Path> completion = new CompletableFuture<Path>();
+    
+    // WHY volatile: written by worker threads, read by any caller
+    private volatile DownloadState state = DownloadState.QUEUED;
+    private volatile long bytesDone;
+    private volatile long totalBytes = -1;
+    private volatile boolean cancelRequested;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    
+    // Only touched by the worker currently advancing this task
+    FileChannel source;
+    FileChannel target;
+    Path partFile;
+    Path finalFile;
+    
+    DownloadTask(String userId, Media media, DownloadListener listener) {
+        this.userId = userId;
+        this.media = media;
+        this.listener = listener;
+    }
+    
+    /**
+     * GETTER: getUserId
+     * 
+     * @return the user the file is downloaded for
+     */
+    public String getUserId() {
+        return userId;
+    }
+    
+    /**
+     * GETTER: getMedia
+     * 
+     * @return the media being downloaded
+     */
+    public Media getMedia() {
+        return media;
+    }
+    
+    /**
+     * GETTER: getState
+     * 
+     * @return current lifecycle state
+     */
+    public DownloadState getState() {
+        return state;
+    }
+    
+    /**
+     * GETTER: getBytesDone
+     * 
+     * @return bytes stored so far
+     */
+    public long getBytesDone() {
+        return bytesDone;
+    }
+    
+    /**
+     * GETTER: getTotalBytes
+     * 
+     * @return file size, or -1 while the download has not started
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+    
+    /**
+     * METHOD: getCompletion
+     * 
+     * @return future completed with the offline file path, or completed
+     *         exceptionally when the download fails or is cancelled
+     */
+    public CompletableFuture<Path> getCompletion() {
+        return completion;
+    }
+    
+    /**
+     * METHOD: cancel
+     * 
+     * PURPOSE:
+     * Stops the download after the chunk in progress. Completed chunks stay
+     * on disk, so submitting the same media again resumes from there.
+     */
+    public void cancel() {
+        cancelRequested = true;
+    }
+    
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+    
+    DownloadListener getListener() {
+        return listener;
+    }
+    
+    // True for the first caller only: a task is finished exactly once
+    boolean markFinished() {
+        return finished.compareAndSet(false, true);
+    }
+    
+    void setState(DownloadState state) {
+        this.state = state;
+    }
+    
+    void setBytesDone(long bytesDone) {
+        this.bytesDone = bytesDone;
+    }
+    
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+    
+    @Override
+    public String toString() {
+        return "Download{" + media.getId() + " for " + userId + ", " + state +
+               ", " + bytesDone + "/" + totalBytes + " bytes}";
+    }
+}
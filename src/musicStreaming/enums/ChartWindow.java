@@ -0,0 +1,94 @@
+package musicStreaming.enums;
+
+/**
+ * Represents the time span a trending chart covers.
+ * Each window slides in fixed steps (buckets): plays older than the window
+ * stop counting one bucket at a time.
+ * 
+ * @author Sima
+ */
+public enum ChartWindow {
+    /**
+     * Plays in the last hour, sliding in 10-minute steps.
+     */
+    LAST_HOUR("Last Hour", 10L * 60 * 1000, 6),
+    
+    /**
+     * Plays in the last 24 hours, sliding in 1-hour steps.
+     */
+    LAST_DAY("Last Day", 60L * 60 * 1000, 24);
+    
+    /**
+     * The human-readable display name of the window.
+     */
+    private final String displayName;
+    
+    /**
+     * Length of one sliding step in milliseconds.
+     */
+    private final long bucketMillis;
+    
+    /**
+     * Number of steps that make up the window.
+     */
+    private final int buckets;
+    
+    /**
+     * Constructs a ChartWindow enum with the specified characteristics.
+     * 
+     * @param displayName the human-readable name of the window
+     * @param bucketMillis length of one sliding step
+     * @param buckets number of steps in the window
+     */
+    ChartWindow(String displayName, long bucketMillis, int buckets) {
+        this.displayName = displayName;
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+    }
+    
+    /**
+     * Returns the display name of the window.
+     * 
+     * @return the human-readable window name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Returns the length of one sliding step.
+     * 
+     * @return step length in milliseconds
+     */
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+    
+    /**
+     * Returns the number of steps in the window.
+     * 
+     * @return number of buckets
+     */
+    public int getBuckets() {
+        return buckets;
+    }
+    
+    /**
+     * Returns the total length of the window.
+     * 
+     * @return window length in milliseconds
+     */
+    public long getLengthMillis() {
+        return bucketMillis * buckets;
+    }
+    
+    /**
+     * Returns a string representation of the window.
+     * 
+     * @return the display name of the window
+     */
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,76 @@
+
+package musicStreaming.enums;
+
+/**
+ * Represents the lifecycle state of a download in the download manager.
+ * 
+ * @author Sima
+ */
+public enum DownloadState {
+    /**
+     * Waiting for a free slot (global or per-user limit reached).
+     */
+    QUEUED("Queued"),
+    
+    /**
+     * Admitted; chunks are being transferred.
+     */
+    ACTIVE("Active"),
+    
+    /**
+     * All chunks transferred and the file moved into the offline directory.
+     */
+    COMPLETED("Completed"),
+    
+    /**
+     * Stopped by an I/O error; resubmitting resumes from the last chunk.
+     */
+    FAILED("Failed"),
+    
+    /**
+     * Stopped by the user; resubmitting resumes from the last chunk.
+     */
+    CANCELLED("Cancelled");
+    
+    /**
+     * The human-readable display name of the state.
+     */
+    private final String displayName;
+    
+    /**
+     * Constructs a DownloadState enum with the specified display name.
+     * 
+     * @param displayName the human-readable name of the state
+     */
+    DownloadState(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    /**
+     * Returns the display name of the state.
+     * 
+     * @return the human-readable state name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Checks if the download has stopped for good (until resubmitted).
+     * 
+     * @return true for COMPLETED, FAILED and CANCELLED
+     */
+    public boolean isFinished() {
+        return this == COMPLETED || this == FAILED || this == CANCELLED;
+    }
+    
+    /**
+     * Returns a string representation of the state.
+     * 
+     * @return the display name of the state
+     */
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
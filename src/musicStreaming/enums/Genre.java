@@ -102,6 +102,26 @@ public enum Genre {
         return displayName;
     }
     
+    /**
+     * Finds the genre for a free-text name such as Song's genre field.
+     * Matches the constant name or the display name, ignoring case
+     * ("hip-hop", "HIP_HOP", "Hip-Hop"); anything else is OTHER.
+     * 
+     * @param name the genre name, may be null
+     * @return the matching genre, or OTHER
+     */
+    public static Genre fromName(String name) {
+        if (name != null) {
+            String trimmed = name.trim();
+            for (Genre genre : values()) {
+                if (genre.name().equalsIgnoreCase(trimmed) || genre.displayName.equalsIgnoreCase(trimmed)) {
+                    return genre;
+                }
+            }
+        }
+        return OTHER;
+    }
+    
     /**
      * Returns a string representation of the genre.
      * 
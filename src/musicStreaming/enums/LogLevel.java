@@ -0,0 +1,68 @@
+
+package musicStreaming.enums;
+
+/**
+ * Represents the severity of an event recorded by the event log.
+ * Events below the configured level are discarded before they are created.
+ * 
+ * @author Member 4
+ */
+public enum LogLevel {
+    /**
+     * Detailed diagnostic events, normally disabled.
+     */
+    DEBUG("Debug"),
+    
+    /**
+     * Normal user-facing feedback such as "Song added".
+     */
+    INFO("Info"),
+    
+    /**
+     * Rejected or unusual operations such as adding a duplicate item.
+     */
+    WARN("Warn"),
+    
+    /**
+     * Failures that need attention.
+     */
+    ERROR("Error"),
+    
+    /**
+     * Threshold only: disables every event.
+     */
+    OFF("Off");
+    
+    /**
+     * The human-readable display name of the level.
+     */
+    private final String displayName;
+    
+    /**
+     * Constructs a LogLevel enum with the specified display name.
+     * 
+     * @param displayName the human-readable name of the level
+     */
+    LogLevel(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    /**
+     * Returns the display name of the level.
+     * 
+     * @return the human-readable level name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Returns a string representation of the level.
+     * 
+     * @return the display name of the level
+     */
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
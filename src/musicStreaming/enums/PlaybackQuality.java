@@ -8,7 +8,7 @@ package musicStreaming.enums;
  * @author Sima
 
  */
-enum PlaybackQuality {
+public enum PlaybackQuality {
     /**
      * Low quality audio - 64 kbps bitrate, minimal bandwidth usage.
      * Suitable for limited data connections.
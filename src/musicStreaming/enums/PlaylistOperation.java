@@ -0,0 +1,68 @@
+package musicStreaming.enums;
+
+/**
+ * Represents one kind of edit in a playlist's change log.
+ * Positions are those of the playlist at the moment of the edit, so a
+ * client replaying the edits in order ends up with the same playlist.
+ * 
+ * @author Arya Ali
+ */
+public enum PlaylistOperation {
+    /**
+     * An item was inserted at a position (add() inserts at the end).
+     */
+    INSERT("Insert"),
+    
+    /**
+     * The item at a position was removed.
+     */
+    REMOVE("Remove"),
+    
+    /**
+     * The item at one position was moved to another.
+     */
+    MOVE("Move"),
+    
+    /**
+     * The playlist was renamed.
+     */
+    RENAME("Rename"),
+    
+    /**
+     * All items were removed.
+     */
+    CLEAR("Clear");
+    
+    /**
+     * The human-readable display name of the operation.
+     */
+    private final String displayName;
+    
+    /**
+     * Constructs a PlaylistOperation enum with the specified display name.
+     * 
+     * @param displayName the human-readable name of the operation
+     */
+    PlaylistOperation(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    /**
+     * Returns the display name of the operation.
+     * 
+     * @return the human-readable operation name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Returns a string representation of the operation.
+     * 
+     * @return the display name of the operation
+     */
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
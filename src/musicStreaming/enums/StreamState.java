@@ -0,0 +1,80 @@
+package musicStreaming.enums;
+
+/**
+ * Represents the lifecycle state of an audio stream in the streaming engine.
+ * 
+ * @author Sima
+ */
+public enum StreamState {
+    /**
+     * Accepted; the first chunk has not been sent yet.
+     */
+    PENDING("Pending"),
+    
+    /**
+     * Chunks are being sent.
+     */
+    STREAMING("Streaming"),
+    
+    /**
+     * The sink is full; waiting until it can take more bytes (back-pressure).
+     */
+    WAITING("Waiting"),
+    
+    /**
+     * Every byte of the file has been sent.
+     */
+    COMPLETED("Completed"),
+    
+    /**
+     * Stopped by an I/O error (file missing, client disconnected).
+     */
+    FAILED("Failed"),
+    
+    /**
+     * Stopped by the listener (skip, stop, app closed).
+     */
+    CANCELLED("Cancelled");
+    
+    /**
+     * The human-readable display name of the state.
+     */
+    private final String displayName;
+    
+    /**
+     * Constructs a StreamState enum with the specified display name.
+     * 
+     * @param displayName the human-readable name of the state
+     */
+    StreamState(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    /**
+     * Returns the display name of the state.
+     * 
+     * @return the human-readable state name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Checks if the stream has stopped for good.
+     * 
+     * @return true for COMPLETED, FAILED and CANCELLED
+     */
+    public boolean isFinished() {
+        return this == COMPLETED || this == FAILED || this == CANCELLED;
+    }
+    
+    /**
+     * Returns a string representation of the state.
+     * 
+     * @return the display name of the state
+     */
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
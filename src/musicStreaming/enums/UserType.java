@@ -12,12 +12,12 @@ public enum UserType {
      * capability. Basic access to the streaming service with feature
      * restrictions.
      */
-    FREE("Free User", false, true, false),
+    FREE("Free User", false, true, false, PlaybackQuality.NORMAL),
     /**
      * Premium user account with no advertisements, unlimited skips, and
      * download capability. Full access to all streaming service features.
      */
-    PREMIUM("Premium User", true, false, true);
+    PREMIUM("Premium User", true, false, true, PlaybackQuality.VERY_HIGH);
 
     /**
      * The human-readable display name of the user type.
@@ -39,6 +39,11 @@ public enum UserType {
      */
     private final boolean unlimitedSkips;
 
+    /**
+     * Highest audio quality this user type may stream.
+     */
+    private final PlaybackQuality maxQuality;
+
     /**
      * Constructs a UserType enum with the specified characteristics.
      *
@@ -46,12 +51,15 @@ public enum UserType {
      * @param canDownload whether downloads are allowed
      * @param hasAds whether advertisements are shown
      * @param unlimitedSkips whether unlimited skips are allowed
+     * @param maxQuality the highest streaming quality allowed
      */
-    UserType(String displayName, boolean canDownload, boolean hasAds, boolean unlimitedSkips) {
+    UserType(String displayName, boolean canDownload, boolean hasAds, boolean unlimitedSkips,
+             PlaybackQuality maxQuality) {
         this.displayName = displayName;
         this.canDownload = canDownload;
         this.hasAds = hasAds;
         this.unlimitedSkips = unlimitedSkips;
+        this.maxQuality = maxQuality;
     }
 
     /**
@@ -90,6 +98,16 @@ public enum UserType {
         return unlimitedSkips;
     }
 
+    /**
+     * Returns the highest audio quality this user type may stream.
+     * Adaptive bitrate never selects a quality above this cap.
+     *
+     * @return the quality cap
+     */
+    public PlaybackQuality getMaxQuality() {
+        return maxQuality;
+    }
+
     /**
      * Returns a string representation of the user type.
      *
@@ -0,0 +1,25 @@
+package musicStreaming.events;
+
+import musicstreaming.interfaces.EventSink;
+
+/**
+ * Default EventSink: prints each event's message to System.out.
+ * 
+ * Keeps the console output of the demo unchanged, but the printing now
+ * happens on the EventLog drain thread instead of on the hot path.
+ * 
+ * @author Member 4
+ * @version 1.0
+ */
+public class ConsoleEventSink implements EventSink {
+    
+    @Override
+    public void accept(Event event) {
+        System.out.println(event.getMessage());
+    }
+    
+    @Override
+    public void flush() {
+        System.out.flush();
+    }
+}
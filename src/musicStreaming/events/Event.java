@@ -0,0 +1,101 @@
+package musicStreaming.events;
+
+import musicStreaming.enums.LogLevel;
+
+/**
+ * One structured event recorded through EventLog.
+ * 
+ * WHY STRUCTURED (not a ready-made String):
+ * - The message is only rendered when a sink asks for it, on the drain
+ *   thread, so the recording thread never pays for string building
+ * - Sinks can use the fields directly (source, level, arguments) instead of
+ *   parsing text
+ * 
+ * The template uses {} placeholders, filled in order from the arguments:
+ * "Song added: {}" with argument "Hello" renders as "Song added: Hello".
+ * 
+ * @author Member 4
+ * @version 1.0
+ */
+public class Event {
+    
+    private final LogLevel level;
+    private final long timestamp;
+    private final String source;
+    private final String template;
+    private final Object[] arguments;
+    
+    /**
+     * Constructor for a new event.
+     * 
+     * @param level severity of the event
+     * @param timestamp wall-clock time in milliseconds
+     * @param source the component that recorded the event
+     * @param template message template with {} placeholders
+     * @param arguments values for the placeholders, in order
+     */
+    public Event(LogLevel level, long timestamp, String source, String template, Object... arguments) {
+        this.level = level;
+        this.timestamp = timestamp;
+        this.source = source;
+        this.template = template;
+        this.arguments = arguments;
+    }
+    
+    public LogLevel getLevel() {
+        return level;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public String getSource() {
+        return source;
+    }
+    
+    public String getTemplate() {
+        return template;
+    }
+    
+    /**
+     * Get the placeholder value at a position.
+     * 
+     * @param index argument position
+     * @return the argument
+     */
+    public Object getArgument(int index) {
+        return arguments[index];
+    }
+    
+    public int getArgumentCount() {
+        return arguments.length;
+    }
+    
+    /**
+     * Render the template with its arguments.
+     * Extra placeholders are left as {}, extra arguments are ignored.
+     * 
+     * @return the human-readable message
+     */
+    public String getMessage() {
+        if (arguments.length == 0) {
+            return template;
+        }
+        StringBuilder sb = new StringBuilder(template.length() + 16 * arguments.length);
+        int next = 0;
+        int from = 0;
+        int at;
+        while (next < arguments.length && (at = template.indexOf("{}", from)) >= 0) {
+            sb.append(template, from, at).append(arguments[next++]);
+            from = at + 2;
+        }
+        sb.append(template, from, template.length());
+        return sb.toString();
+    }
+    
+    @Override
+    public String toString() {
+        return "[" + level + "] " + source + ": " + getMessage();
+    }
+}
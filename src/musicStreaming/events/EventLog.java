@@ -0,0 +1,238 @@
+package musicStreaming.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import musicStreaming.enums.LogLevel;
+import musicstreaming.interfaces.EventSink;
+
+/**
+ * Central, non-blocking event log used instead of System.out on hot paths.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * addSong, search, Library.add, Playlist.add and every play() used to call
+ * System.out.println synchronously. Under load every thread queued on the
+ * stdout lock. Now a call records a small structured Event into a lock-free
+ * ring buffer and returns; one background thread drains the buffer into the
+ * configured EventSink.
+ * 
+ * ZERO COST WHEN DISABLED:
+ * - The level check is the first thing every method does; below the
+ *   threshold nothing is allocated and nothing is formatted
+ * - Fixed-arity overloads avoid the varargs array allocation
+ * - Call sites with primitive arguments guard with isEnabled() so the
+ *   values are not even boxed
+ * 
+ * WHY STATIC:
+ * - The classes that log (User, Library, Playlist, MusicService) are plain
+ *   objects with no shared context to pass a logger through
+ * - Like System.out, one process-wide log is what callers expect
+ * 
+ * USAGE EXAMPLE:
+ * EventLog.info("MusicService", "Song added: {}", song.getTitle());
+ * EventLog.setLevel(LogLevel.OFF);         // load test: silence everything
+ * EventLog.setSink(myFileSink);            // plug in another destination
+ * 
+ * @author Member 4
+ * @version 1.0
+ */
+public final class EventLog {
+    
+    // WHY 8192: absorbs bursts of a few thousand events between drains
+    private static final int BUFFER_CAPACITY = 8192;
+    
+    // WHY 1 s: record() unparks an idle drain thread, so this timeout is only
+    // a safety net; an idle node does not poll
+    private static final long IDLE_PARK_NANOS = 1_000_000_000L;
+    
+    private static final EventRingBuffer BUFFER = new EventRingBuffer(BUFFER_CAPACITY);
+    private static final AtomicLong DROPPED = new AtomicLong();
+    
+    // WHY volatile: changed by configuration code, read by every hot path
+    private static volatile int threshold = LogLevel.INFO.ordinal();
+    private static volatile EventSink sink = new ConsoleEventSink();
+    // True while the drain thread is about to park or parked on an empty buffer
+    private static volatile boolean drainerIdle;
+    
+    private static final Thread DRAINER = new Thread(EventLog::drainLoop, "event-log-drainer");
+    
+    static {
+        DRAINER.setDaemon(true);
+        DRAINER.start();
+        // Deliver whatever is still buffered when the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(EventLog::flush, "event-log-shutdown"));
+    }
+    
+    private EventLog() {
+    }
+    
+    /**
+     * Check whether events of a level would be recorded.
+     * Call sites use this to skip computing expensive arguments.
+     * 
+     * @param level the level to check
+     * @return true if events at this level are recorded (never for OFF)
+     */
+    public static boolean isEnabled(LogLevel level) {
+        return level != LogLevel.OFF && level.ordinal() >= threshold;
+    }
+    
+    /**
+     * Set the minimum level that is recorded; OFF disables everything.
+     * 
+     * @param level the new threshold
+     */
+    public static void setLevel(LogLevel level) {
+        threshold = level.ordinal();
+    }
+    
+    /**
+     * Get the current threshold.
+     * 
+     * @return the minimum recorded level
+     */
+    public static LogLevel getLevel() {
+        return LogLevel.values()[threshold];
+    }
+    
+    /**
+     * Replace the destination of all future events.
+     * 
+     * @param newSink the sink (must not be null)
+     */
+    public static void setSink(EventSink newSink) {
+        if (newSink == null) {
+            throw new IllegalArgumentException("Event sink cannot be null");
+        }
+        sink = newSink;
+    }
+    
+    /**
+     * Get the number of events dropped because the buffer was full.
+     * 
+     * @return dropped event count since startup
+     */
+    public static long getDroppedCount() {
+        return DROPPED.get();
+    }
+    
+    /**
+     * Record an event with a fixed number of arguments. The DEBUG/INFO/WARN
+     * overloads below avoid the varargs array of log().
+     * 
+     * @param source the recording component, e.g. "MusicService"
+     * @param template message template with {} placeholders
+     * @param a value for the first placeholder
+     */
+    public static void debug(String source, String template, Object a) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            record(new Event(LogLevel.DEBUG, System.currentTimeMillis(), source, template, a));
+        }
+    }
+    
+    public static void info(String source, String template) {
+        if (isEnabled(LogLevel.INFO)) {
+            record(new Event(LogLevel.INFO, System.currentTimeMillis(), source, template));
+        }
+    }
+    
+    public static void info(String source, String template, Object a) {
+        if (isEnabled(LogLevel.INFO)) {
+            record(new Event(LogLevel.INFO, System.currentTimeMillis(), source, template, a));
+        }
+    }
+    
+    public static void info(String source, String template, Object a, Object b) {
+        if (isEnabled(LogLevel.INFO)) {
+            record(new Event(LogLevel.INFO, System.currentTimeMillis(), source, template, a, b));
+        }
+    }
+    
+    public static void warn(String source, String template) {
+        if (isEnabled(LogLevel.WARN)) {
+            record(new Event(LogLevel.WARN, System.currentTimeMillis(), source, template));
+        }
+    }
+    
+    public static void warn(String source, String template, Object a) {
+        if (isEnabled(LogLevel.WARN)) {
+            record(new Event(LogLevel.WARN, System.currentTimeMillis(), source, template, a));
+        }
+    }
+    
+    /**
+     * Record an event at any level (generic form of info/warn/...).
+     * 
+     * @param level severity
+     * @param source the recording component
+     * @param template message template with {} placeholders
+     * @param arguments placeholder values
+     */
+    public static void log(LogLevel level, String source, String template, Object... arguments) {
+        if (isEnabled(level)) {
+            record(new Event(level, System.currentTimeMillis(), source, template, arguments));
+        }
+    }
+    
+    /**
+     * Hand every event recorded so far to the sink, on the calling thread.
+     * Useful before exiting or in tests; never needed on hot paths.
+     */
+    public static void flush() {
+        drainOnce();
+    }
+    
+    // Producer side: never blocks, counts drops when full. Wakes the drain
+    // thread only if it went idle, i.e. on the empty -> non-empty transition
+    private static void record(Event event) {
+        if (!BUFFER.offer(event)) {
+            DROPPED.incrementAndGet();
+        } else if (drainerIdle) {
+            LockSupport.unpark(DRAINER);
+        }
+    }
+    
+    // WHY synchronized: flush() may drain from the caller's thread while the
+    // drainer runs, but the ring buffer allows only ONE consumer at a time
+    private static synchronized int drainOnce() {
+        EventSink target = sink;
+        int drained = 0;
+        Event event;
+        while ((event = BUFFER.poll()) != null) {
+            try {
+                target.accept(event);
+            } catch (RuntimeException e) {
+                // A broken sink must not kill the drain thread
+                DROPPED.incrementAndGet();
+            }
+            drained++;
+        }
+        if (drained > 0) {
+            try {
+                target.flush();
+            } catch (RuntimeException e) {
+                // Same rule for flush: keep draining, the events were taken
+            }
+        }
+        return drained;
+    }
+    
+    // WHY idle is set before the last emptiness check: a producer publishes
+    // its event before reading drainerIdle, so either this check sees the
+    // event or the producer sees the flag and unparks
+    private static void drainLoop() {
+        while (true) {
+            if (drainOnce() == 0) {
+                drainerIdle = true;
+                if (isBufferEmpty()) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                drainerIdle = false;
+            }
+        }
+    }
+    
+    // Synchronized like drainOnce(): the consumer position is only read under it
+    private static synchronized boolean isBufferEmpty() {
+        return BUFFER.isEmpty();
+    }
+}
@@ -0,0 +1,104 @@
+package musicStreaming.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer ring buffer of events.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * System.out.println takes the PrintStream lock, so every thread printing
+ * at the same time queues up behind it. Here producers only do one CAS on
+ * the tail counter and two plain writes; nobody ever waits for a lock.
+ * 
+ * HOW IT WORKS (bounded queue with per-slot sequence numbers):
+ * - Every slot has a sequence number telling whose turn it is
+ * - A producer claims position p when sequence[p] == p, by advancing tail
+ *   with compareAndSet, writes the event, then publishes sequence = p + 1
+ * - The consumer reads position h when sequence[h] == h + 1, takes the
+ *   event and hands the slot back with sequence = h + capacity
+ * 
+ * WHEN FULL:
+ * offer() returns false instead of blocking - losing a log line is better
+ * than stalling playback. EventLog counts the dropped events.
+ * 
+ * @author Member 4
+ * @version 1.0
+ */
+class EventRingBuffer {
+    
+    private final int mask;
+    private final AtomicReferenceArray<Event> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    
+    // Only touched by the single consumer thread
+    private long head;
+    
+    /**
+     * Constructor rounds the capacity up to a power of two, so a position
+     * maps to its slot with a bit mask instead of a division.
+     * 
+     * @param capacity minimum number of events the buffer can hold
+     */
+    EventRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<Event>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+    
+    /**
+     * Add an event; safe to call from any number of threads.
+     * 
+     * @param event the event to add
+     * @return false if the buffer is full and the event was dropped
+     */
+    boolean offer(Event event) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(slot, event);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            // difference > 0: another producer took this position, retry
+        }
+    }
+    
+    /**
+     * Check for a published event; only the drain thread may call this.
+     * 
+     * @return true if poll() would return null
+     */
+    boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+    
+    /**
+     * Take the oldest event; only the drain thread may call this.
+     * 
+     * @return the event, or null if the buffer is empty
+     */
+    Event poll() {
+        int slot = (int) (head & mask);
+        if (sequences.get(slot) != head + 1) {
+            return null;
+        }
+        Event event = slots.get(slot);
+        slots.lazySet(slot, null);
+        sequences.set(slot, head + mask + 1);
+        head++;
+        return event;
+    }
+}
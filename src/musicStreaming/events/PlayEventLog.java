@@ -0,0 +1,484 @@
+package musicStreaming.events;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import musicStreaming.enums.LogLevel;
+import musicStreaming.enums.PlaybackQuality;
+import musicstreaming.interfaces.PlayEventVisitor;
+
+/**
+ * Durable, high-throughput log of who played what, when, for how long and
+ * at which quality - the raw data for royalties, charts and recommendations.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * play() had no side effects beyond printing, so nothing could be paid,
+ * ranked or recommended. Recording must not slow playback down, so the
+ * hot path only touches memory and a single background thread does all I/O.
+ * 
+ * HOW IT WORKS:
+ * - record() interns the user and media ids to ints (one hash lookup each)
+ *   and puts the event into a lock-free primitive ring buffer; no object
+ *   is allocated per event
+ * - The writer thread drains the ring in batches of up to BATCH_RECORDS,
+ *   encodes them as fixed 21-byte records and appends each batch with one
+ *   write() to the current segment file
+ * - Segments roll over at SEGMENT_BYTES; each keeps a block index of
+ *   timestamp ranges, so a time-range scan reads only matching blocks
+ * - Id strings are stored once, in strings.dict, written before any record
+ *   that refers to them
+ * 
+ * BACK-PRESSURE:
+ * Plays are money, so a full ring is never silently dropped: record()
+ * waits (parks briefly) until the writer has made room; tryRecord() is
+ * the non-waiting variant. recordOrDefer() never waits either: a play that
+ * finds the ring full goes to an overflow queue that the writer moves into
+ * the ring as room frees up (for callers that must not park, such as
+ * playback scheduler threads).
+ * 
+ * DURABILITY:
+ * Batches reach the OS right away; flush() (and every segment roll) also
+ * forces them to disk. After a crash, a torn last record is discarded.
+ * A batch whose append fails is counted as lost, never as written, and
+ * flush() reports it.
+ * 
+ * IDLE:
+ * The writer parks while there is nothing to write; the recording methods
+ * unpark it only when it is idle, so an idle node does not poll.
+ * 
+ * @author Sima
+ */
+public final class PlayEventLog {
+    
+    // WHY 256k: ~1/4 s of headroom at a million plays per second
+    private static final int RING_CAPACITY = 1 << 18;
+    private static final int BATCH_RECORDS = 8192;
+    private static final long SEGMENT_BYTES = 64L << 20; // 64 MB per segment
+    // WHY 1 s: producers unpark an idle writer, so this is only a safety net
+    private static final long IDLE_PARK_NANOS = 1_000_000_000L;
+    private static final long FULL_PARK_NANOS = 50_000L;
+    private static final String DICTIONARY_FILE = "strings.dict";
+    private static final PlaybackQuality[] QUALITIES = PlaybackQuality.values();
+    
+    private static PlayEventLog shared;
+    
+    private final Path directory;
+    private final PlayRingBuffer ring = new PlayRingBuffer(RING_CAPACITY);
+    private final CopyOnWriteArrayList<PlaySegment> segments = new CopyOnWriteArrayList<PlaySegment>();
+    private final Thread writer;
+    
+    // Id dictionary: string -> int for record(), int -> string for scans
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    private final Object dictionaryLock = new Object();
+    private String[] names = new String[1024]; // Guarded by dictionaryLock
+    private int nameCount;                     // Guarded by dictionaryLock
+    private int persistedNames;                // Writer thread only
+    private final FileChannel dictionary;
+    
+    // Plays that found the ring full in recordOrDefer(); moved in by the writer
+    private final ConcurrentLinkedQueue<Deferred> deferred = new ConcurrentLinkedQueue<Deferred>();
+    private final AtomicLong deferredCount = new AtomicLong();
+    
+    private volatile long written;   // Events appended to a segment so far
+    private volatile long lost;      // Events whose batch could not be appended
+    private volatile long processed; // written + lost: ring positions handled
+    private volatile boolean writerIdle; // Writer about to park or parked
+    private volatile boolean closed;
+    private long nextSegment;      // Writer thread only (after construction)
+    
+    /**
+     * CONSTRUCTOR: PlayEventLog
+     * 
+     * @param directory where segments and the dictionary live (created if
+     *                  missing); existing data is reopened and appended to
+     * @throws IOException if the directory cannot be read or written
+     */
+    public PlayEventLog(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.dictionary = FileChannel.open(directory.resolve(DICTIONARY_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadDictionary();
+        loadSegments();
+        this.writer = new Thread(this::writeLoop, "play-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /**
+     * METHOD: getShared
+     * 
+     * @return the node-wide play log; its directory can be set with
+     *         -Dmusicstreaming.plays.dir=... (default media/plays)
+     */
+    public static synchronized PlayEventLog getShared() {
+        if (shared == null) {
+            try {
+                shared = new PlayEventLog(Paths.get(System.getProperty("musicstreaming.plays.dir", "media/plays")));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open play event log", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::flush, "play-event-shutdown"));
+        }
+        return shared;
+    }
+    
+    /**
+     * METHOD: record
+     * 
+     * @param userId the listener
+     * @param mediaId the media played
+     * @param timestamp when playback ended, in epoch milliseconds
+     * @param listenedMillis how long the media was actually heard
+     * @param quality the quality it was played at
+     * 
+     * PURPOSE:
+     * Records one play without I/O; waits only if the writer is a full ring
+     * behind.
+     */
+    public void record(String userId, String mediaId, long timestamp, int listenedMillis,
+                       PlaybackQuality quality) {
+        int user = intern(userId);
+        int media = intern(mediaId);
+        byte q = (byte) quality.ordinal();
+        while (!ring.offer(timestamp, user, media, listenedMillis, q)) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        wakeWriter();
+    }
+    
+    /**
+     * METHOD: tryRecord
+     * 
+     * @return false if the ring is full and the play was not recorded
+     * @see #record
+     */
+    public boolean tryRecord(String userId, String mediaId, long timestamp, int listenedMillis,
+                             PlaybackQuality quality) {
+        if (!ring.offer(timestamp, intern(userId), intern(mediaId), listenedMillis, (byte) quality.ordinal())) {
+            return false;
+        }
+        wakeWriter();
+        return true;
+    }
+    
+    /**
+     * METHOD: recordOrDefer
+     * 
+     * PURPOSE:
+     * Like record(), but never waits: if the ring is full the play is kept
+     * in an overflow queue and written after the plays already in the ring.
+     * 
+     * @see #record
+     */
+    public void recordOrDefer(String userId, String mediaId, long timestamp, int listenedMillis,
+                              PlaybackQuality quality) {
+        int user = intern(userId);
+        int media = intern(mediaId);
+        byte q = (byte) quality.ordinal();
+        if (!ring.offer(timestamp, user, media, listenedMillis, q)) {
+            deferred.add(new Deferred(timestamp, user, media, listenedMillis, q));
+            deferredCount.incrementAndGet();
+            LockSupport.unpark(writer);
+        } else {
+            wakeWriter();
+        }
+    }
+    
+    /**
+     * GETTER: getDeferredCount
+     * 
+     * @return plays that found the ring full in recordOrDefer() so far
+     */
+    public long getDeferredCount() {
+        return deferredCount.get();
+    }
+    
+    /**
+     * METHOD: flush
+     * 
+     * @return plays lost while this call waited (their batch could not be
+     *         appended; may include plays recorded during the call); 0 if
+     *         every play recorded before the call was written
+     * 
+     * PURPOSE:
+     * Waits until every play recorded before this call is handled by the
+     * writer, then forces the current segment to disk.
+     */
+    public long flush() {
+        long lostBefore = lost;
+        while (!deferred.isEmpty() && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        long target = ring.getClaimedCount();
+        while (processed < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        long lostNow = lost - lostBefore;
+        if (lostNow > 0) {
+            EventLog.warn("PlayEventLog", "Flush: {} plays were lost", lostNow);
+        }
+        try {
+            dictionary.force(false);
+            if (!segments.isEmpty()) {
+                segments.get(segments.size() - 1).force();
+            }
+        } catch (IOException e) {
+            EventLog.warn("PlayEventLog", "Flush failed: {}", e);
+        }
+        return lostNow;
+    }
+    
+    /**
+     * METHOD: scan
+     * 
+     * @param fromMillis start of the range (inclusive), epoch milliseconds
+     * @param toMillis end of the range (exclusive)
+     * @param visitor receives every play in the range
+     * @throws IOException if a segment cannot be read
+     * 
+     * PURPOSE:
+     * Time-range scan over written plays (call flush() first to include the
+     * very latest). Plays come in roughly, not strictly, time order; only
+     * blocks whose time range overlaps the query are read.
+     */
+    public void scan(long fromMillis, long toMillis, PlayEventVisitor visitor) throws IOException {
+        List<PlaySegment> snapshot = new ArrayList<PlaySegment>(segments);
+        String[] scanNames;
+        synchronized (dictionaryLock) {
+            // After the segment snapshot: every id in it is in the dictionary
+            scanNames = names;
+        }
+        for (PlaySegment segment : snapshot) {
+            segment.scan(fromMillis, toMillis, (buffer, at) -> visitor.visit(
+                    scanNames[buffer.getInt(at + 8)], scanNames[buffer.getInt(at + 12)],
+                    buffer.getLong(at), buffer.getInt(at + 16), QUALITIES[buffer.get(at + 20)]));
+        }
+    }
+    
+    /**
+     * GETTER: getWrittenCount
+     * 
+     * @return plays appended to segment files so far (this run)
+     */
+    public long getWrittenCount() {
+        return written;
+    }
+    
+    /**
+     * GETTER: getLostCount
+     * 
+     * @return plays whose batch could not be appended so far (this run)
+     */
+    public long getLostCount() {
+        return lost;
+    }
+    
+    /**
+     * GETTER: getSegmentCount
+     * 
+     * @return number of segment files
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+    
+    /**
+     * METHOD: close
+     * 
+     * PURPOSE:
+     * Flushes, stops the writer and closes all files.
+     */
+    public void close() throws IOException {
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (PlaySegment segment : segments) {
+            segment.close();
+        }
+        dictionary.close();
+    }
+    
+    private int intern(String id) {
+        Integer known = ids.get(id);
+        if (known != null) {
+            return known;
+        }
+        synchronized (dictionaryLock) {
+            known = ids.get(id);
+            if (known != null) {
+                return known;
+            }
+            if (nameCount == names.length) {
+                names = Arrays.copyOf(names, nameCount * 2);
+            }
+            names[nameCount] = id;
+            ids.put(id, nameCount);
+            return nameCount++;
+        }
+    }
+    
+    // After a successful offer. The ring was published before writerIdle is
+    // read and the writer sets writerIdle before its last emptiness check,
+    // so either the writer sees the play or this unparks it.
+    private void wakeWriter() {
+        if (writerIdle) {
+            LockSupport.unpark(writer);
+        }
+    }
+    
+    // Writer thread
+    private void writeLoop() {
+        ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_RECORDS * PlayRingBuffer.RECORD_SIZE);
+        while (!closed) {
+            // Overflow first, as far as the ring has room
+            for (Deferred play; (play = deferred.peek()) != null; deferred.poll()) {
+                if (!ring.offer(play.timestamp, play.user, play.media, play.listenedMillis, play.quality)) {
+                    break;
+                }
+            }
+            batch.clear();
+            int count = ring.drainTo(batch);
+            if (count == 0) {
+                writerIdle = true;
+                if (ring.isEmpty() && deferred.isEmpty() && !closed) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+                continue;
+            }
+            batch.flip();
+            try {
+                persistDictionary();
+                currentSegment().append(batch);
+                written += count;
+            } catch (IOException e) {
+                // The batch is lost; keep going so playback never stalls
+                lost += count;
+                EventLog.log(LogLevel.ERROR, "PlayEventLog", "Lost {} plays: {}", count, e);
+            }
+            processed += count;
+        }
+    }
+    
+    // Writer thread: appends names interned since the last batch
+    private void persistDictionary() throws IOException {
+        String[] snapshot;
+        int count;
+        synchronized (dictionaryLock) {
+            snapshot = names;
+            count = nameCount;
+        }
+        if (persistedNames == count) {
+            return;
+        }
+        ByteBuffer out = ByteBuffer.allocate(4096);
+        for (int i = persistedNames; i < count; i++) {
+            byte[] bytes = snapshot[i].getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < 4 + bytes.length) {
+                writeAll(dictionary, out);
+                out = ByteBuffer.allocate(Math.max(4096, 4 + bytes.length));
+            }
+            out.putInt(bytes.length).put(bytes);
+        }
+        writeAll(dictionary, out);
+        persistedNames = count;
+    }
+    
+    // Writer thread: the segment to append to, rolling over when full
+    private PlaySegment currentSegment() throws IOException {
+        PlaySegment current = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (current == null || current.getSizeBytes() >= SEGMENT_BYTES) {
+            if (current != null) {
+                current.force();
+            }
+            current = PlaySegment.open(directory.resolve(String.format("plays-%012d.seg", nextSegment++)));
+            segments.add(current);
+        }
+        return current;
+    }
+    
+    // Startup: names in id order; a torn last entry is cut off
+    private void loadDictionary() throws IOException {
+        ByteBuffer all = ByteBuffer.allocate((int) dictionary.size());
+        while (all.hasRemaining() && dictionary.read(all, all.position()) >= 0) {
+            // keep reading
+        }
+        all.flip();
+        while (all.remaining() >= 4) {
+            int length = all.getInt(all.position());
+            if (length < 0 || all.remaining() < 4 + length) {
+                break;
+            }
+            all.getInt();
+            byte[] bytes = new byte[length];
+            all.get(bytes);
+            intern(new String(bytes, StandardCharsets.UTF_8));
+        }
+        dictionary.truncate(all.position());
+        dictionary.position(all.position());
+        persistedNames = nameCount;
+    }
+    
+    // Startup: reopen existing segments in order
+    private void loadSegments() throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "plays-*.seg")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(null);
+        for (Path file : files) {
+            segments.add(PlaySegment.open(file));
+            String name = file.getFileName().toString();
+            nextSegment = Long.parseLong(name.substring(6, name.length() - 4)) + 1;
+        }
+    }
+    
+    private static void writeAll(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    // One play waiting in the overflow queue
+    private static final class Deferred {
+        final long timestamp;
+        final int user;
+        final int media;
+        final int listenedMillis;
+        final byte quality;
+        
+        Deferred(long timestamp, int user, int media, int listenedMillis, byte quality) {
+            this.timestamp = timestamp;
+            this.user = user;
+            this.media = media;
+            this.listenedMillis = listenedMillis;
+            this.quality = quality;
+        }
+    }
+}
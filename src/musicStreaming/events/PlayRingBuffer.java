@@ -0,0 +1,106 @@
+package musicStreaming.events;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer ring buffer of play
+ * events, stored as primitive columns.
+ * 
+ * WHY NOT EventRingBuffer:
+ * At millions of plays per second an object per event would keep the
+ * garbage collector busy. Here an event is five array stores: the ring is
+ * allocated once and recording a play allocates nothing.
+ * 
+ * Same protocol as EventRingBuffer (per-slot sequence numbers): a producer
+ * claims a position with one CAS, fills the columns, then publishes the
+ * slot; the single consumer encodes published slots straight into the
+ * output buffer of the next batch.
+ * 
+ * @author Sima
+ */
+final class PlayRingBuffer {
+    
+    // Encoded record: timestamp, user, media, listened millis, quality
+    static final int RECORD_SIZE = 8 + 4 + 4 + 4 + 1;
+    
+    private final int mask;
+    private final long[] timestamps;
+    private final int[] users;
+    private final int[] medias;
+    private final int[] listened;
+    private final byte[] qualities;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    
+    // Only touched by the single consumer thread
+    private long head;
+    
+    /**
+     * @param capacity minimum number of events the buffer can hold
+     *                 (rounded up to a power of two)
+     */
+    PlayRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.timestamps = new long[size];
+        this.users = new int[size];
+        this.medias = new int[size];
+        this.listened = new int[size];
+        this.qualities = new byte[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+    
+    // Any thread; false if the buffer is full
+    boolean offer(long timestamp, int user, int media, int listenedMillis, byte quality) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    timestamps[slot] = timestamp;
+                    users[slot] = user;
+                    medias[slot] = media;
+                    listened[slot] = listenedMillis;
+                    qualities[slot] = quality;
+                    sequences.set(slot, position + 1); // Publishes the plain writes above
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+    
+    // Consumer only: encodes published events into out while they fit
+    int drainTo(ByteBuffer out) {
+        int count = 0;
+        while (out.remaining() >= RECORD_SIZE) {
+            int slot = (int) (head & mask);
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            out.putLong(timestamps[slot]).putInt(users[slot]).putInt(medias[slot])
+               .putInt(listened[slot]).put(qualities[slot]);
+            sequences.set(slot, head + mask + 1);
+            head++;
+            count++;
+        }
+        return count;
+    }
+    
+    // Consumer only: true if drainTo() would find nothing published
+    boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+    
+    // Number of positions claimed so far (recorded or being recorded)
+    long getClaimedCount() {
+        return tail.get();
+    }
+}
@@ -0,0 +1,210 @@
+package musicStreaming.events;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * One rolling segment of the play-event log: an append-only file of
+ * fixed-size records plus a small block index.
+ * 
+ * FILES:
+ * - plays-N.seg: records back to back (PlayRingBuffer.RECORD_SIZE bytes)
+ * - plays-N.idx: per full block of BLOCK_RECORDS records, the smallest and
+ *   largest timestamp in it (16 bytes). Records are roughly but not
+ *   strictly in time order (producers race), so a block is described by
+ *   its range rather than by its first timestamp
+ * 
+ * A time-range scan reads only blocks whose range overlaps the query.
+ * On open, a torn last record is cut off and index entries missing after a
+ * crash are rebuilt from the records.
+ * 
+ * Appends come from the log's single writer thread; scans from any thread
+ * work on a snapshot of the index and read the file with positional reads.
+ * 
+ * @author Sima
+ */
+final class PlaySegment {
+    
+    static final int BLOCK_RECORDS = 4096;
+    private static final int RECORD = PlayRingBuffer.RECORD_SIZE;
+    private static final int BLOCK_BYTES = BLOCK_RECORDS * RECORD;
+    
+    private final Path file;
+    private final FileChannel data;
+    private final FileChannel index;
+    
+    // Guarded by "this"; arrays are replaced (not resized in place) on growth
+    private long[] blockMin = new long[16];
+    private long[] blockMax = new long[16];
+    private int fullBlocks;
+    private long records;
+    private long openMin = Long.MAX_VALUE; // Range of the unfinished block
+    private long openMax = Long.MIN_VALUE;
+    
+    private PlaySegment(Path file, FileChannel data, FileChannel index) {
+        this.file = file;
+        this.data = data;
+        this.index = index;
+    }
+    
+    // Creates or reopens a segment (repairing a torn tail)
+    static PlaySegment open(Path file) throws IOException {
+        Path indexFile = file.resolveSibling(file.getFileName().toString().replace(".seg", ".idx"));
+        FileChannel data = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        PlaySegment segment = new PlaySegment(file, data, index);
+        segment.recover();
+        return segment;
+    }
+    
+    private void recover() throws IOException {
+        long total = data.size() / RECORD;
+        data.truncate(total * RECORD);
+        long indexed = Math.min(index.size() / 16, total / BLOCK_RECORDS);
+        index.truncate(indexed * 16);
+        data.position(total * RECORD);
+        index.position(indexed * 16);
+        ByteBuffer entries = ByteBuffer.allocate((int) indexed * 16);
+        readFully(index, entries, 0);
+        for (int i = 0; i < indexed; i++) {
+            addBlock(entries.getLong(i * 16), entries.getLong(i * 16 + 8), false);
+        }
+        records = indexed * BLOCK_RECORDS;
+        // Re-index whatever follows the last index entry
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+        while (records < total) {
+            block.clear().limit((int) Math.min(BLOCK_BYTES, (total - records) * RECORD));
+            readFully(data, block, records * RECORD);
+            track(block);
+        }
+    }
+    
+    // Writer thread: appends a batch of encoded records (flipped buffer)
+    void append(ByteBuffer batch) throws IOException {
+        ByteBuffer view = batch.duplicate();
+        while (batch.hasRemaining()) {
+            data.write(batch);
+        }
+        synchronized (this) {
+            track(view);
+        }
+    }
+    
+    // Updates block ranges for the records in buffer (position..limit)
+    private void track(ByteBuffer buffer) throws IOException {
+        for (int at = buffer.position(); at + RECORD <= buffer.limit(); at += RECORD) {
+            long timestamp = buffer.getLong(at);
+            openMin = Math.min(openMin, timestamp);
+            openMax = Math.max(openMax, timestamp);
+            records++;
+            if (records % BLOCK_RECORDS == 0) {
+                addBlock(openMin, openMax, true);
+                openMin = Long.MAX_VALUE;
+                openMax = Long.MIN_VALUE;
+            }
+        }
+    }
+    
+    private void addBlock(long min, long max, boolean persist) throws IOException {
+        if (fullBlocks == blockMin.length) {
+            blockMin = Arrays.copyOf(blockMin, fullBlocks * 2);
+            blockMax = Arrays.copyOf(blockMax, fullBlocks * 2);
+        }
+        blockMin[fullBlocks] = min;
+        blockMax[fullBlocks] = max;
+        fullBlocks++;
+        if (persist) {
+            ByteBuffer entry = ByteBuffer.allocate(16);
+            entry.putLong(min).putLong(max).flip();
+            while (entry.hasRemaining()) {
+                index.write(entry);
+            }
+        }
+    }
+    
+    /**
+     * Calls the reader for every record with from &lt;= timestamp &lt; to.
+     * The buffer passed to the reader is positioned at the record.
+     */
+    void scan(long from, long to, RecordReader reader) throws IOException {
+        long[] min;
+        long[] max;
+        int blocks;
+        long count;
+        long partialMin;
+        long partialMax;
+        synchronized (this) {
+            min = blockMin;
+            max = blockMax;
+            blocks = fullBlocks;
+            count = records;
+            partialMin = openMin;
+            partialMax = openMax;
+        }
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+        long totalBlocks = (count + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        for (int b = 0; b < totalBlocks; b++) {
+            long lo = b < blocks ? min[b] : partialMin;
+            long hi = b < blocks ? max[b] : partialMax;
+            if (hi < from || lo >= to) {
+                continue; // No record of this block is in range
+            }
+            long first = (long) b * BLOCK_RECORDS;
+            block.clear().limit((int) Math.min(BLOCK_RECORDS, count - first) * RECORD);
+            readFully(data, block, first * RECORD);
+            for (int at = 0; at < block.limit(); at += RECORD) {
+                long timestamp = block.getLong(at);
+                if (timestamp >= from && timestamp < to) {
+                    reader.read(block, at);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Receives one raw record during a scan.
+     */
+    interface RecordReader {
+        void read(ByteBuffer buffer, int offset);
+    }
+    
+    synchronized long getRecordCount() {
+        return records;
+    }
+    
+    long getSizeBytes() {
+        return getRecordCount() * RECORD;
+    }
+    
+    Path getFile() {
+        return file;
+    }
+    
+    void force() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+    
+    void close() throws IOException {
+        data.close();
+        index.close();
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Play segment is truncated");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,231 @@
+package musicStreaming.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of non-negative ints, compressed the "roaring bitmap" way.
+ * 
+ * The value range is cut into chunks of 65536 (by the high 16 bits). Each
+ * chunk that holds values has one container:
+ * - sparse (up to ARRAY_MAX values): sorted char[] of the low 16 bits,
+ *   2 bytes per value
+ * - dense: a 65536-bit bitmap (8 KB), whatever the number of values
+ * so a set never costs more than about 2 bytes per value, and much less
+ * when ids are dense. The size is kept in a field: O(1) cardinality.
+ * 
+ * Not thread-safe for writers; the owner synchronizes. size() may be read
+ * without the lock.
+ * 
+ * @author Sima
+ */
+final class CompressedIntSet {
+    
+    // Above 4096 values an array container would outgrow the 8 KB bitmap
+    private static final int ARRAY_MAX = 4096;
+    // Dense containers go back to arrays only well below ARRAY_MAX, so a
+    // chunk hovering around the limit does not convert on every change
+    private static final int BITMAP_MIN = ARRAY_MAX / 2;
+    private static final int BITMAP_WORDS = 65536 / 64;
+    
+    private static final class Container {
+        char[] values; // Sparse: sorted low bits; null when dense
+        long[] bits;   // Dense: bitmap; null when sparse
+        int size;
+        
+        Container copy() {
+            Container copy = new Container();
+            copy.values = values == null ? null : Arrays.copyOf(values, size);
+            copy.bits = bits == null ? null : bits.clone();
+            copy.size = size;
+            return copy;
+        }
+    }
+    
+    private char[] keys = new char[1]; // Sorted high 16 bits, one per container
+    private Container[] containers = new Container[1];
+    private int containerCount;
+    private volatile int size;
+    
+    boolean add(int value) {
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int index = findKey(key);
+        Container container;
+        if (index >= 0) {
+            container = containers[index];
+        } else {
+            container = new Container();
+            container.values = new char[4];
+            insertContainer(-index - 1, key, container);
+        }
+        
+        if (container.bits != null) {
+            long mask = 1L << low;
+            long word = container.bits[low >>> 6];
+            if ((word & mask) != 0) {
+                return false;
+            }
+            container.bits[low >>> 6] = word | mask;
+        } else {
+            int at = Arrays.binarySearch(container.values, 0, container.size, low);
+            if (at >= 0) {
+                return false;
+            }
+            at = -at - 1;
+            if (container.size == ARRAY_MAX) {
+                toBitmap(container);
+                container.bits[low >>> 6] |= 1L << low;
+            } else {
+                if (container.size == container.values.length) {
+                    container.values = Arrays.copyOf(container.values, Math.min(ARRAY_MAX, container.size * 2));
+                }
+                System.arraycopy(container.values, at, container.values, at + 1, container.size - at);
+                container.values[at] = low;
+            }
+        }
+        container.size++;
+        size++;
+        return true;
+    }
+    
+    boolean remove(int value) {
+        int index = findKey((char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        char low = (char) value;
+        if (container.bits != null) {
+            long mask = 1L << low;
+            long word = container.bits[low >>> 6];
+            if ((word & mask) == 0) {
+                return false;
+            }
+            container.bits[low >>> 6] = word & ~mask;
+            container.size--;
+            if (container.size < BITMAP_MIN) {
+                toArray(container);
+            }
+        } else {
+            int at = Arrays.binarySearch(container.values, 0, container.size, low);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(container.values, at + 1, container.values, at, container.size - at - 1);
+            container.size--;
+        }
+        size--;
+        if (container.size == 0) {
+            removeContainer(index);
+        }
+        return true;
+    }
+    
+    boolean contains(int value) {
+        int index = findKey((char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        char low = (char) value;
+        if (container.bits != null) {
+            return (container.bits[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch(container.values, 0, container.size, low) >= 0;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    // Values in increasing order
+    void forEach(IntConsumer action) {
+        for (int c = 0; c < containerCount; c++) {
+            int high = keys[c] << 16;
+            Container container = containers[c];
+            if (container.bits != null) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = container.bits[w];
+                    while (word != 0) {
+                        action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                for (int i = 0; i < container.size; i++) {
+                    action.accept(high | container.values[i]);
+                }
+            }
+        }
+    }
+    
+    // Independent copy, e.g. to iterate without holding the owner's lock
+    CompressedIntSet copy() {
+        CompressedIntSet copy = new CompressedIntSet();
+        copy.keys = Arrays.copyOf(keys, Math.max(1, containerCount));
+        copy.containers = new Container[Math.max(1, containerCount)];
+        for (int c = 0; c < containerCount; c++) {
+            copy.containers[c] = containers[c].copy();
+        }
+        copy.containerCount = containerCount;
+        copy.size = size;
+        return copy;
+    }
+    
+    // Approximate heap footprint of the data, in bytes
+    long getMemoryBytes() {
+        long bytes = keys.length * 2L + containers.length * 8L;
+        for (int c = 0; c < containerCount; c++) {
+            Container container = containers[c];
+            bytes += 32 + (container.bits != null ? BITMAP_WORDS * 8L : container.values.length * 2L);
+        }
+        return bytes;
+    }
+    
+    private int findKey(char key) {
+        return Arrays.binarySearch(keys, 0, containerCount, key);
+    }
+    
+    private void insertContainer(int at, char key, Container container) {
+        if (containerCount == keys.length) {
+            keys = Arrays.copyOf(keys, containerCount * 2);
+            containers = Arrays.copyOf(containers, containerCount * 2);
+        }
+        System.arraycopy(keys, at, keys, at + 1, containerCount - at);
+        System.arraycopy(containers, at, containers, at + 1, containerCount - at);
+        keys[at] = key;
+        containers[at] = container;
+        containerCount++;
+    }
+    
+    private void removeContainer(int at) {
+        System.arraycopy(keys, at + 1, keys, at, containerCount - at - 1);
+        System.arraycopy(containers, at + 1, containers, at, containerCount - at - 1);
+        containers[--containerCount] = null;
+    }
+    
+    private static void toBitmap(Container container) {
+        long[] bits = new long[BITMAP_WORDS];
+        for (int i = 0; i < container.size; i++) {
+            char low = container.values[i];
+            bits[low >>> 6] |= 1L << low;
+        }
+        container.bits = bits;
+        container.values = null;
+    }
+    
+    private static void toArray(Container container) {
+        char[] values = new char[container.size];
+        int n = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = container.bits[w];
+            while (word != 0) {
+                values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        container.values = values;
+        container.bits = null;
+    }
+}
@@ -0,0 +1,192 @@
+package musicStreaming.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Reverse index of libraries: media id -> the users who saved it.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * "How many users saved this song?" or "notify everyone who saved this
+ * podcast" meant walking every user's Library. This index answers the
+ * count in O(1) and lists the savers without touching any User object.
+ * 
+ * HOW IT WORKS:
+ * - Libraries report every change (see Library.add/remove/clear), so the
+ *   index is kept up to date incrementally; it is never rebuilt
+ * - User ids are numbered once (a string -> int dictionary); each media
+ *   keeps the numbers of its savers in a CompressedIntSet, about 2 bytes
+ *   per saver at worst and 1 bit per saver for popular media
+ * - Each set has its own lock, so changes to different media never
+ *   contend; a media that nobody has saved any more is dropped
+ * 
+ * FAN-OUT:
+ * forEachSaver() copies the set (compressed, so cheap) under its lock and
+ * walks the copy without it: a long notification job never blocks saves.
+ * 
+ * @author Sima
+ */
+public final class SavedByIndex {
+    
+    private static SavedByIndex shared;
+    
+    private final ConcurrentHashMap<String, CompressedIntSet> savers = new ConcurrentHashMap<String, CompressedIntSet>();
+    
+    // User id dictionary
+    private final ConcurrentHashMap<String, Integer> userNumbers = new ConcurrentHashMap<String, Integer>();
+    private final Object dictionaryLock = new Object();
+    private volatile String[] userIds = new String[1024]; // Number -> id, grown under dictionaryLock
+    private int userCount;                                // Guarded by dictionaryLock
+    
+    /**
+     * METHOD: getShared
+     * 
+     * @return the node-wide index that libraries report to
+     */
+    public static synchronized SavedByIndex getShared() {
+        if (shared == null) {
+            shared = new SavedByIndex();
+        }
+        return shared;
+    }
+    
+    /**
+     * METHOD: added
+     * 
+     * @param userId the user who saved the media
+     * @param mediaId the media saved
+     */
+    public void added(String userId, String mediaId) {
+        int user = number(userId);
+        while (true) {
+            CompressedIntSet set = savers.computeIfAbsent(mediaId, id -> new CompressedIntSet());
+            synchronized (set) {
+                // The set may have been dropped as empty since we looked it up
+                if (savers.get(mediaId) == set) {
+                    set.add(user);
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * METHOD: removed
+     * 
+     * @param userId the user who removed the media
+     * @param mediaId the media removed
+     */
+    public void removed(String userId, String mediaId) {
+        Integer user = userNumbers.get(userId);
+        CompressedIntSet set = savers.get(mediaId);
+        if (user == null || set == null) {
+            return;
+        }
+        synchronized (set) {
+            if (set.remove(user) && set.size() == 0) {
+                savers.remove(mediaId, set);
+            }
+        }
+    }
+    
+    /**
+     * METHOD: countSavers
+     * 
+     * @param mediaId a media id
+     * @return how many users have it in their library (O(1))
+     */
+    public int countSavers(String mediaId) {
+        CompressedIntSet set = savers.get(mediaId);
+        return set == null ? 0 : set.size();
+    }
+    
+    /**
+     * METHOD: hasSaved
+     * 
+     * @param userId a user id
+     * @param mediaId a media id
+     * @return true if that user has that media in their library
+     */
+    public boolean hasSaved(String userId, String mediaId) {
+        Integer user = userNumbers.get(userId);
+        CompressedIntSet set = savers.get(mediaId);
+        if (user == null || set == null) {
+            return false;
+        }
+        synchronized (set) {
+            return set.contains(user);
+        }
+    }
+    
+    /**
+     * METHOD: forEachSaver
+     * 
+     * @param mediaId a media id
+     * @param action called once per user id that has saved the media
+     * @return how many users were visited
+     * 
+     * PURPOSE:
+     * Fan-out (notifications, royalty statements): visits the savers as of
+     * the call, without holding any lock while the action runs.
+     */
+    public int forEachSaver(String mediaId, Consumer<String> action) {
+        CompressedIntSet set = savers.get(mediaId);
+        if (set == null) {
+            return 0;
+        }
+        CompressedIntSet snapshot;
+        synchronized (set) {
+            snapshot = set.copy();
+        }
+        String[] ids = userIds;
+        snapshot.forEach(user -> action.accept(ids[user]));
+        return snapshot.size();
+    }
+    
+    /**
+     * GETTER: getMediaCount
+     * 
+     * @return media saved by at least one user
+     */
+    public int getMediaCount() {
+        return savers.size();
+    }
+    
+    /**
+     * GETTER: getMemoryBytes
+     * 
+     * @return approximate heap used by the saver sets (not the dictionary)
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (CompressedIntSet set : savers.values()) {
+            synchronized (set) {
+                bytes += set.getMemoryBytes();
+            }
+        }
+        return bytes;
+    }
+    
+    // User id -> number, assigned on first use
+    private int number(String userId) {
+        Integer existing = userNumbers.get(userId);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (dictionaryLock) {
+            existing = userNumbers.get(userId);
+            if (existing != null) {
+                return existing;
+            }
+            String[] ids = userIds;
+            if (userCount == ids.length) {
+                ids = Arrays.copyOf(ids, userCount * 2);
+            }
+            ids[userCount] = userId;
+            userIds = ids; // Publish the id before its number becomes visible
+            userNumbers.put(userId, userCount);
+            return userCount++;
+        }
+    }
+}
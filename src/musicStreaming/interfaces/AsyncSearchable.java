@@ -0,0 +1,50 @@
+package musicstreaming.interfaces;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import musicStreaming.search.SearchResult;
+
+/**
+ * Interface defining a non-blocking, deadline-bounded search contract.
+ * 
+ * WHY THIS INTERFACE EXISTS:
+ * Searchable.search() blocks the calling thread until the whole catalog has
+ * been scanned and only then returns everything it found. Under load a slow
+ * query holds a platform thread for its entire scan. This contract lets the
+ * caller hand the scan off, keep working, and get an answer by a deadline.
+ * 
+ * DESIGN RATIONALE:
+ * - Extends Searchable: anything searchable asynchronously can also be
+ *   searched the old blocking way, so existing callers keep working
+ * - Returns CompletableFuture: standard JDK type, composable with
+ *   thenApply/thenAccept, no extra dependencies
+ * - Accepts a deadline: when it expires the future completes with whatever
+ *   was found so far, marked incomplete (see SearchResult.isComplete())
+ * 
+ * USAGE EXAMPLE:
+ * AsyncSearchable service = new MusicService();
+ * service.searchAsync("Coldplay", Duration.ofMillis(50))
+ *        .thenAccept(result -> show(result.getItems(), result.isComplete()));
+ * 
+ * @author Member 4
+ * @version 1.0
+ */
+public interface AsyncSearchable extends Searchable {
+    
+    /**
+     * Search for media items matching the keyword without blocking the caller.
+     * 
+     * CONTRACT GUARANTEE:
+     * - The returned future never completes exceptionally for a bad keyword;
+     *   null or blank keywords complete immediately with an empty result
+     * - The future completes no later than (roughly) the deadline
+     * - If the scan finished in time, the result is complete
+     * - If the deadline expired first, the result holds the partial matches
+     *   found so far and isComplete() returns false
+     * 
+     * @param keyword the search term to match against titles, artists, etc.
+     * @param deadline how long the caller is willing to wait for results
+     * @return a future completed with the (possibly partial) search result
+     */
+    public abstract CompletableFuture<SearchResult> searchAsync(String keyword, Duration deadline);
+}
@@ -0,0 +1,52 @@
+package musicstreaming.interfaces;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import musicStreaming.downloads.DownloadTask;
+
+/**
+ * Callback interface for following the progress of a download.
+ * 
+ * WHY THIS INTERFACE EXISTS:
+ * Downloads run on the download manager's worker pool, not on the caller's
+ * thread. A UI still wants a progress bar and a "done" notification, so the
+ * manager reports back through this interface.
+ * 
+ * THREADING CONTRACT:
+ * - Methods are called on download worker threads
+ * - Keep them short: a slow listener delays other users' chunks
+ * - All methods have empty defaults; implement only what you need
+ * 
+ * @author Sima
+ * @version 1.0
+ */
+public interface DownloadListener {
+    
+    /**
+     * Called after each completed chunk.
+     * 
+     * @param task the download
+     * @param bytesDone bytes stored so far (including resumed bytes)
+     * @param totalBytes size of the whole file
+     */
+    public default void onProgress(DownloadTask task, long bytesDone, long totalBytes) {
+    }
+    
+    /**
+     * Called once when the file is complete in the offline directory.
+     * 
+     * @param task the download
+     * @param file location of the downloaded file
+     */
+    public default void onComplete(DownloadTask task, Path file) {
+    }
+    
+    /**
+     * Called once when the download stops because of an I/O error.
+     * 
+     * @param task the download
+     * @param error the cause
+     */
+    public default void onFailed(DownloadTask task, IOException error) {
+    }
+}
@@ -0,0 +1,38 @@
+package musicstreaming.interfaces;
+
+import musicStreaming.events.Event;
+
+/**
+ * Interface for destinations of events recorded through EventLog.
+ * 
+ * WHY THIS INTERFACE EXISTS:
+ * Hot paths (adding songs, searching, playing) used to print straight to
+ * System.out. Where those messages end up should be pluggable: the console
+ * for the demo, a file or a metrics system on a server, nothing at all in a
+ * load test.
+ * 
+ * THREADING CONTRACT:
+ * - accept() is only ever called from the single EventLog drain thread,
+ *   so implementations do not need to be thread-safe
+ * - accept() may block (e.g. on I/O); only the drain thread waits, the
+ *   threads that recorded the events never do
+ * 
+ * @author Member 4
+ * @version 1.0
+ */
+public interface EventSink {
+    
+    /**
+     * Deliver one event.
+     * 
+     * @param event the recorded event
+     */
+    public abstract void accept(Event event);
+    
+    /**
+     * Called after each drained batch so buffered sinks can flush.
+     * Default does nothing.
+     */
+    public default void flush() {
+    }
+}
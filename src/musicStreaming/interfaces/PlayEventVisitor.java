@@ -0,0 +1,30 @@
+package musicstreaming.interfaces;
+
+import musicStreaming.enums.PlaybackQuality;
+
+/**
+ * Receives play events read back from the play-event log.
+ * 
+ * WHY THIS INTERFACE EXISTS:
+ * A time-range scan may cover millions of plays. Handing them to a
+ * callback one at a time, instead of building a result list, keeps the scan
+ * at constant memory; royalties, charts and recommendations each aggregate
+ * what they need as the events stream past.
+ * 
+ * @author Sima
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface PlayEventVisitor {
+    
+    /**
+     * Called once per play event in the scanned range.
+     * 
+     * @param userId the listener
+     * @param mediaId the media played
+     * @param timestamp when playback ended, in epoch milliseconds
+     * @param listenedMillis how long the media was actually heard
+     * @param quality the quality it was played at
+     */
+    void visit(String userId, String mediaId, long timestamp, int listenedMillis, PlaybackQuality quality);
+}
@@ -4,10 +4,24 @@
  */
 package musicStreaming.interfaces;
 
+import java.nio.channels.WritableByteChannel;
+import musicStreaming.streaming.AudioStream;
+import musicstreaming.interfaces.StreamListener;
+
 /**
  *
  * @author PREDATOR
  */
 public interface Playable {
     void play();
+    
+    /**
+     * Streams the audio to a sink (socket, pipe or file) in chunks, without
+     * blocking the caller (see StreamingEngine).
+     * 
+     * @param sink where the bytes go; non-blocking channels get back-pressure
+     * @param listener chunk/completion callbacks, may be null
+     * @return handle to follow or stop the stream
+     */
+    AudioStream play(WritableByteChannel sink, StreamListener listener);
 }
\ No newline at end of file
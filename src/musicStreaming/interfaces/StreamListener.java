@@ -0,0 +1,67 @@
+package musicstreaming.interfaces;
+
+import java.io.IOException;
+import musicStreaming.enums.PlaybackQuality;
+import musicStreaming.streaming.AudioStream;
+
+/**
+ * Callback interface for following an audio stream.
+ * 
+ * WHY THIS INTERFACE EXISTS:
+ * Streams are advanced by the streaming engine's event loops, not by the
+ * caller. Players, metrics and bitrate control still need to know when
+ * chunks go out and when the stream ends, so the engine reports back here.
+ * 
+ * THREADING CONTRACT:
+ * - Methods are called on streaming event-loop threads
+ * - Keep them very short: one loop serves thousands of streams
+ * - All methods have empty defaults; implement only what you need
+ * 
+ * @author Sima
+ * @version 1.0
+ */
+public interface StreamListener {
+    
+    /**
+     * Called when a whole chunk has been taken by the sink.
+     * 
+     * @param stream the stream
+     * @param bytes size of the chunk
+     * @param elapsedNanos time from starting the chunk until the sink took
+     *                     its last byte, including back-pressure waits
+     */
+    public default void onChunk(AudioStream stream, long bytes, long elapsedNanos) {
+    }
+    
+    /**
+     * Called when an adaptive stream switches to another quality variant.
+     * Every byte sent after getBytesSent() at this moment is PCM in the new
+     * format; the header sent at the start still describes the first one.
+     * 
+     * @param stream the stream
+     * @param quality the variant now being sent (null = original file)
+     * @param sampleRate frames per second from now on
+     * @param channels channels per frame
+     * @param bitsPerSample bits per sample
+     */
+    public default void onFormatChange(AudioStream stream, PlaybackQuality quality, int sampleRate,
+                                       int channels, int bitsPerSample) {
+    }
+    
+    /**
+     * Called once when the whole file has been sent.
+     * 
+     * @param stream the stream
+     */
+    public default void onComplete(AudioStream stream) {
+    }
+    
+    /**
+     * Called once when the stream stops because of an I/O error.
+     * 
+     * @param stream the stream
+     * @param error the cause
+     */
+    public default void onFailed(AudioStream stream, IOException error) {
+    }
+}
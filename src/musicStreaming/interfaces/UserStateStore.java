@@ -0,0 +1,53 @@
+package musicstreaming.interfaces;
+
+import musicstreaming.users.User;
+
+/**
+ * Hook through which the UserDirectory keeps a user's library and
+ * playlists outside the heap while the account is not in use.
+ * 
+ * WHY THIS INTERFACE EXISTS:
+ * UserDirectory.release() used to throw the library and playlists away
+ * with the User object. The directory should not know how or where user
+ * state is stored, so it only reports the three moments that matter and
+ * the store (see UserStateTiering) does the rest.
+ * 
+ * THREADING CONTRACT:
+ * - restore() runs while the directory builds the User: other callers of
+ *   get() for the same id wait until it returns, so nobody sees the User
+ *   before its state is back
+ * - accessed() runs on every get(); keep it very short
+ * - spill() runs while the directory holds the User as evicting: get()
+ *   for that id waits until it is dropped or kept, so it never reads an
+ *   old copy from disk. spill() must therefore not call get() for the
+ *   same id, and may be called again if the User changed meanwhile
+ * 
+ * @author Sima
+ * @version 1.0
+ */
+public interface UserStateStore {
+    
+    /**
+     * Called once when the directory has built a User from its record,
+     * before anybody else can see it.
+     * 
+     * @param user the new User, with no library or playlists yet
+     */
+    void restore(User user);
+    
+    /**
+     * Called on every lookup of a User through the directory.
+     * 
+     * @param user the User that was returned
+     */
+    void accessed(User user);
+    
+    /**
+     * Called just before the directory drops a User.
+     * 
+     * @param user the User whose state must be kept
+     * @return false if the state could not be kept; release() then keeps
+     *         the User on the heap
+     */
+    boolean spill(User user);
+}
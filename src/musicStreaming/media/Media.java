@@ -1,7 +1,11 @@
 
 package musicStreaming.media;
 
+import java.nio.channels.WritableByteChannel;
 import musicStreaming.interfaces.Playable;
+import musicStreaming.streaming.AudioStream;
+import musicStreaming.streaming.StreamingEngine;
+import musicstreaming.interfaces.StreamListener;
 
 
 public abstract class Media implements Playable {
@@ -16,6 +20,11 @@ public abstract class Media implements Playable {
     
      @Override
      public abstract void play();
+     
+     // streams this item's audio file through the shared engine
+     @Override
+     public AudioStream play(WritableByteChannel sink, StreamListener listener) {
+        return StreamingEngine.getShared().stream(this, sink, listener);}
     
     public String getTitle() {
         return title;
@@ -0,0 +1,437 @@
+package musicStreaming.offline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import musicStreaming.enums.PlaybackQuality;
+
+/**
+ * Byte-quota, content-addressed on-disk cache of media stored for offline
+ * playback on a premium device.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * enableOfflineMode() only flipped a flag; nothing knew which tracks were
+ * actually on the device, how much space they took, or whether the files
+ * were intact. This cache is that knowledge.
+ * 
+ * DESIGN RATIONALE:
+ * - Keyed by Media.getId() + PlaybackQuality: the same track may be stored
+ *   at several qualities
+ * - Content-addressed: files are stored as objects/SHA-256, so identical
+ *   content is stored once (reference counted) and corruption is detectable
+ * - In-memory index (LinkedHashMap in access order): lookups are O(1) and
+ *   NEVER list the directory; the eldest entry is the least recently used
+ * - Byte quota: put() evicts least recently used entries until the new
+ *   file fits
+ * 
+ * JOURNAL (journal.bin):
+ * - Append-only records: PUT(key, hash, size) and REMOVE(key)
+ * - Startup is one sequential read of the journal; no directory scan
+ * - A torn last record (crash mid-append) is ignored
+ * - When the journal holds much more than the live entries it is rewritten
+ *   in LRU order, which also carries the recency order across restarts
+ *   (single accesses are not journaled - a read must not cost a write)
+ * 
+ * THREAD SAFETY:
+ * All public methods synchronize on the cache; each holds the lock only for
+ * index updates and one journal append (hashing on put() happens first).
+ * 
+ * @author Sima
+ */
+public class OfflineCache {
+    
+    private static final String JOURNAL_FILE = "journal.bin";
+    private static final String OBJECTS_DIR = "objects";
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    
+    // WHY 2x (+64): rewrite only when at least half of the journal is stale
+    private static final int COMPACT_FACTOR = 2;
+    private static final int COMPACT_SLACK = 64;
+    
+    private final Path directory;
+    private final Path objectsDir;
+    private final Path journalFile;
+    private final long quotaBytes;
+    
+    private final LinkedHashMap<String, Entry> index =
+            new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final Map<String, Integer> references = new HashMap<String, Integer>();
+    private long usedBytes;
+    private int journalRecords;
+    private DataOutputStream journal;
+    
+    /**
+     * One cached (media, quality) pair.
+     */
+    private static final class Entry {
+        final String hash;
+        final long size;
+        
+        Entry(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+    }
+    
+    private OfflineCache(Path directory, long quotaBytes) {
+        this.directory = directory;
+        this.objectsDir = directory.resolve(OBJECTS_DIR);
+        this.journalFile = directory.resolve(JOURNAL_FILE);
+        this.quotaBytes = quotaBytes;
+    }
+    
+    /**
+     * METHOD: open
+     * 
+     * @param directory cache directory (created if missing)
+     * @param quotaBytes maximum bytes of media to keep
+     * @return the cache, with its index restored from the journal
+     * @throws IOException if the directory or journal cannot be used
+     */
+    public static OfflineCache open(Path directory, long quotaBytes) throws IOException {
+        if (quotaBytes <= 0) {
+            throw new IllegalArgumentException("Quota must be positive");
+        }
+        OfflineCache cache = new OfflineCache(directory, quotaBytes);
+        Files.createDirectories(cache.objectsDir);
+        cache.replayJournal();
+        cache.evictToFit(0);
+        cache.compactJournal();
+        return cache;
+    }
+    
+    /**
+     * METHOD: get
+     * 
+     * @param mediaId id of the media
+     * @param quality stored quality
+     * @return path of the cached file, or null if not cached
+     * 
+     * PURPOSE:
+     * Offline playback lookup; marks the entry as most recently used.
+     */
+    public synchronized Path get(String mediaId, PlaybackQuality quality) throws IOException {
+        String key = key(mediaId, quality);
+        Entry entry = index.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Path file = objectsDir.resolve(entry.hash);
+        if (!Files.isRegularFile(file)) {
+            // Deleted behind our back: forget it instead of failing playback
+            dropEntry(key);
+            return null;
+        }
+        return file;
+    }
+    
+    /**
+     * METHOD: contains
+     * 
+     * @param mediaId id of the media
+     * @param quality stored quality
+     * @return true if cached (does not change LRU order)
+     */
+    public synchronized boolean contains(String mediaId, PlaybackQuality quality) {
+        return index.containsKey(key(mediaId, quality));
+    }
+    
+    /**
+     * METHOD: put
+     * 
+     * @param mediaId id of the media
+     * @param quality quality of the file
+     * @param file finished media file; it is MOVED into the cache
+     * @return path of the cached copy
+     * @throws IOException if the file cannot be read or is larger than the quota
+     * 
+     * PURPOSE:
+     * Adds (or replaces) an entry, evicting least recently used entries
+     * until the quota allows it.
+     */
+    public Path put(String mediaId, PlaybackQuality quality, Path file) throws IOException {
+        String key = key(mediaId, quality);
+        long size = Files.size(file);
+        if (size > quotaBytes) {
+            throw new IOException("File of " + size + " bytes exceeds cache quota of " + quotaBytes);
+        }
+        // Hash outside the lock: it reads the whole file
+        String hash = sha256(file);
+        
+        synchronized (this) {
+            Path object = objectsDir.resolve(hash);
+            if (index.containsKey(key)) {
+                dropEntry(key);
+            }
+            boolean stored = references.containsKey(hash);
+            evictToFit(stored ? 0 : size);
+            stored = references.containsKey(hash); // eviction may have removed it
+            if (stored) {
+                Files.deleteIfExists(file);
+            } else {
+                moveIntoCache(file, object);
+                usedBytes += size;
+            }
+            references.merge(hash, 1, Integer::sum);
+            index.put(key, new Entry(hash, size));
+            appendPut(key, hash, size);
+            return object;
+        }
+    }
+    
+    /**
+     * METHOD: remove
+     * 
+     * @param mediaId id of the media
+     * @param quality stored quality
+     * @return true if an entry was removed
+     */
+    public synchronized boolean remove(String mediaId, PlaybackQuality quality) throws IOException {
+        return dropEntry(key(mediaId, quality));
+    }
+    
+    /**
+     * METHOD: verify
+     * 
+     * @param mediaId id of the media
+     * @param quality stored quality
+     * @return true if the cached file still matches its hash; a corrupt or
+     *         missing file is removed and false is returned
+     */
+    public boolean verify(String mediaId, PlaybackQuality quality) throws IOException {
+        String key = key(mediaId, quality);
+        Entry entry;
+        synchronized (this) {
+            entry = index.get(key);
+        }
+        if (entry == null) {
+            return false;
+        }
+        Path file = objectsDir.resolve(entry.hash);
+        boolean intact = Files.isRegularFile(file) && entry.hash.equals(sha256(file));
+        if (!intact) {
+            synchronized (this) {
+                if (index.get(key) == entry) {
+                    dropEntry(key);
+                }
+            }
+        }
+        return intact;
+    }
+    
+    /**
+     * GETTER: getUsedBytes
+     * 
+     * @return bytes of media currently stored
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+    
+    /**
+     * GETTER: getQuotaBytes
+     * 
+     * @return configured quota
+     */
+    public long getQuotaBytes() {
+        return quotaBytes;
+    }
+    
+    /**
+     * METHOD: size
+     * 
+     * @return number of cached (media, quality) entries
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+    
+    /**
+     * METHOD: close
+     * 
+     * PURPOSE:
+     * Flushes and closes the journal.
+     */
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+    
+    // Caller holds the lock
+    // One atomic rename when the file is on the cache's file system.
+    // Otherwise (download directory on another disk) copy it next to the
+    // object, force it and rename it, so a crash never leaves a half
+    // copied object; the source is deleted afterwards.
+    private void moveIntoCache(Path file, Path object) throws IOException {
+        try {
+            Files.move(file, object, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        } catch (AtomicMoveNotSupportedException e) {
+            // Different file systems: fall through to copy and rename
+        }
+        Path temp = Files.createTempFile(objectsDir, object.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                out.force(true);
+            }
+            Files.move(temp, object, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        Files.delete(file);
+    }
+    
+    private boolean dropEntry(String key) throws IOException {
+        Entry entry = index.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        int left = references.merge(entry.hash, -1, Integer::sum);
+        if (left <= 0) {
+            references.remove(entry.hash);
+            Files.deleteIfExists(objectsDir.resolve(entry.hash));
+            usedBytes -= entry.size;
+        }
+        appendRemove(key);
+        return true;
+    }
+    
+    // Caller holds the lock; evicts eldest (least recently used) first
+    private void evictToFit(long incoming) throws IOException {
+        while (usedBytes + incoming > quotaBytes && !index.isEmpty()) {
+            dropEntry(index.keySet().iterator().next());
+        }
+    }
+    
+    private void replayJournal() throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(journalFile)))) {
+            while (true) {
+                byte op = in.readByte();
+                String key = in.readUTF();
+                if (op == PUT) {
+                    String hash = in.readUTF();
+                    long size = in.readLong();
+                    replayRemove(key);
+                    index.put(key, new Entry(hash, size));
+                    if (references.merge(hash, 1, Integer::sum) == 1) {
+                        usedBytes += size;
+                    }
+                } else if (op == REMOVE) {
+                    replayRemove(key);
+                } else {
+                    break; // Unknown record: treat as end of valid data
+                }
+            }
+        } catch (EOFException tornOrEnd) {
+            // End of journal, possibly in the middle of a torn last record
+        }
+    }
+    
+    private void replayRemove(String key) {
+        Entry old = index.remove(key);
+        if (old != null && references.merge(old.hash, -1, Integer::sum) <= 0) {
+            references.remove(old.hash);
+            usedBytes -= old.size;
+        }
+    }
+    
+    private void appendPut(String key, String hash, long size) throws IOException {
+        DataOutputStream out = journal();
+        out.writeByte(PUT);
+        out.writeUTF(key);
+        out.writeUTF(hash);
+        out.writeLong(size);
+        out.flush();
+        afterAppend();
+    }
+    
+    private void appendRemove(String key) throws IOException {
+        DataOutputStream out = journal();
+        out.writeByte(REMOVE);
+        out.writeUTF(key);
+        out.flush();
+        afterAppend();
+    }
+    
+    private void afterAppend() throws IOException {
+        journalRecords++;
+        if (journalRecords > COMPACT_FACTOR * index.size() + COMPACT_SLACK) {
+            compactJournal();
+        }
+    }
+    
+    private DataOutputStream journal() throws IOException {
+        if (journal == null) {
+            journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        }
+        return journal;
+    }
+    
+    // Rewrites the journal with one PUT per live entry, in LRU order
+    private void compactJournal() throws IOException {
+        close();
+        Path temp = directory.resolve(JOURNAL_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            for (Map.Entry<String, Entry> e : index.entrySet()) {
+                out.writeByte(PUT);
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue().hash);
+                out.writeLong(e.getValue().size);
+            }
+        }
+        Files.move(temp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journalRecords = index.size();
+    }
+    
+    private static String key(String mediaId, PlaybackQuality quality) {
+        return mediaId + "@" + quality.name();
+    }
+    
+    // Streams the file through SHA-256 with a direct buffer
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,374 @@
+package musicStreaming.playback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import musicStreaming.downloads.DownloadManager;
+import musicStreaming.media.Media;
+
+/**
+ * One listener's "up next" queue, with the start of upcoming tracks read
+ * ahead of time.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * Without read-ahead every track change pays the full cost of opening the
+ * source file and reading its first bytes while the listener hears silence.
+ * The queue reads the first buffer (BufferPool size, 64 KB by default) of
+ * the next few items in the background, so the next track can start from
+ * memory.
+ * 
+ * HOW IT WORKS:
+ * - The first "depth" items of the queue are prefetched on a small shared
+ *   I/O pool, each into one buffer borrowed from a bounded BufferPool
+ * - advance() moves to the next item; its prefetched bytes can then be
+ *   taken with takePrefetched() and passed to StreamingEngine.stream, which
+ *   sends them from memory and gives the buffer back once past them. Bytes
+ *   nobody took go back to the pool at the next advance
+ * - clear() (User.stopPlayback, also when the directory releases a user)
+ *   cancels everything and returns every buffer, so idle queues do not
+ *   keep pool buffers checked out
+ * - skip() first cancels prefetches still in flight (a listener who skips
+ *   needs the disk for the track starting now), then advances; the window
+ *   is refilled afterwards
+ * - Pool exhausted or file missing: no prefetch, the track is read normally
+ * 
+ * METRICS:
+ * Each advance counts a HIT (data ready) or a MISS (not ready, not started
+ * or failed); getHitRate() = hits / (hits + misses).
+ * 
+ * THREAD SAFETY:
+ * All queue state is guarded by the queue's own lock, held only for short
+ * bookkeeping; file reads run on the I/O pool without it.
+ * 
+ * @author Sima
+ */
+public class PlayQueue {
+    
+    // WHY 2: covers the next track plus one quick skip
+    private static final int DEFAULT_DEPTH = 2;
+    private static final int IO_THREADS = 4;
+    
+    private static final ExecutorService PREFETCH_EXECUTOR = createExecutor();
+    
+    // One read-ahead: filled by an I/O thread, read under the queue's lock
+    private static final class Prefetch {
+        final Media media;
+        Path file;           // Where the bytes come from; set by load()
+        Future<?> future;
+        ByteBuffer data;     // Flipped, ready to read; null until loaded
+        boolean cancelled;
+        
+        Prefetch(Media media) {
+            this.media = media;
+        }
+    }
+    
+    private final BufferPool pool;
+    private final Function<Media, Path> locator;
+    private final int depth;
+    
+    // Guarded by "this"
+    private final ArrayDeque<Media> upcoming = new ArrayDeque<Media>();
+    private final Map<Media, Prefetch> prefetches = new IdentityHashMap<Media, Prefetch>();
+    private Media current;
+    private PrefetchedAudio currentData;
+    private long hits;
+    private long misses;
+    private long cancelled;
+    
+    /**
+     * CONSTRUCTOR: PlayQueue
+     * 
+     * PURPOSE:
+     * Queue that reads origin files of the shared DownloadManager into the
+     * shared BufferPool, two items ahead.
+     */
+    public PlayQueue() {
+        this(media -> DownloadManager.getShared().getOriginFile(media.getId()));
+    }
+    
+    /**
+     * CONSTRUCTOR: PlayQueue
+     * 
+     * @param locator finds the file a stream of the item will start on
+     *                (see StreamingEngine.locateStart)
+     * 
+     * PURPOSE:
+     * Queue on the shared BufferPool, two items ahead.
+     */
+    public PlayQueue(Function<Media, Path> locator) {
+        this(BufferPool.getShared(), locator, DEFAULT_DEPTH);
+    }
+    
+    /**
+     * CONSTRUCTOR: PlayQueue
+     * 
+     * @param pool buffers to prefetch into
+     * @param locator finds the file holding a media item's audio
+     * @param depth how many upcoming items to prefetch
+     */
+    public PlayQueue(BufferPool pool, Function<Media, Path> locator, int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Prefetch depth must not be negative");
+        }
+        this.pool = pool;
+        this.locator = locator;
+        this.depth = depth;
+    }
+    
+    /**
+     * METHOD: add
+     * 
+     * @param media item to play after everything already queued
+     */
+    public synchronized void add(Media media) {
+        upcoming.add(media);
+        refill();
+    }
+    
+    /**
+     * METHOD: addAll
+     * 
+     * @param items items to queue in order (e.g. a Playlist or Library)
+     */
+    public synchronized void addAll(Iterable<? extends Media> items) {
+        for (Media media : items) {
+            upcoming.add(media);
+        }
+        refill();
+    }
+    
+    /**
+     * METHOD: advance
+     * 
+     * @return the item that is now current, or null if the queue is empty
+     * 
+     * PURPOSE:
+     * Moves to the next item. Its prefetched bytes, if they arrived in time,
+     * are available from takePrefetched() until the next advance.
+     */
+    public synchronized Media advance() {
+        releaseCurrent();
+        current = upcoming.poll();
+        if (current == null) {
+            return null;
+        }
+        Prefetch prefetch = prefetches.remove(current);
+        if (prefetch != null && prefetch.data != null) {
+            hits++;
+            currentData = new PrefetchedAudio(prefetch.file, prefetch.data, pool);
+        } else {
+            misses++;
+            if (prefetch != null) {
+                cancel(prefetch);
+            }
+        }
+        refill();
+        return current;
+    }
+    
+    /**
+     * METHOD: skip
+     * 
+     * @return the item that is now current, or null if the queue is empty
+     * 
+     * PURPOSE:
+     * Like advance(), but first cancels prefetches still in flight so the
+     * track starting now gets the I/O. Finished prefetches are kept.
+     */
+    public synchronized Media skip() {
+        for (Iterator<Prefetch> it = prefetches.values().iterator(); it.hasNext(); ) {
+            Prefetch prefetch = it.next();
+            if (prefetch.data == null) {
+                cancel(prefetch);
+                it.remove();
+            }
+        }
+        return advance();
+    }
+    
+    /**
+     * METHOD: clear
+     * 
+     * PURPOSE:
+     * Empties the queue, cancels all prefetches and returns every buffer.
+     */
+    public synchronized void clear() {
+        upcoming.clear();
+        for (Prefetch prefetch : prefetches.values()) {
+            cancel(prefetch);
+        }
+        prefetches.clear();
+        releaseCurrent();
+        current = null;
+    }
+    
+    /**
+     * METHOD: takePrefetched
+     * 
+     * @param media the item about to be streamed
+     * @return the current item's first bytes if media is the current item
+     *         and they were prefetched, else null. The caller now owns
+     *         them and must release() them (StreamingEngine does)
+     */
+    public synchronized PrefetchedAudio takePrefetched(Media media) {
+        if (currentData == null || media == null || !media.equals(current)) {
+            return null;
+        }
+        PrefetchedAudio taken = currentData;
+        currentData = null;
+        return taken;
+    }
+    
+    /**
+     * GETTER: getCurrent
+     * 
+     * @return the current item, or null
+     */
+    public synchronized Media getCurrent() {
+        return current;
+    }
+    
+    /**
+     * GETTER: size
+     * 
+     * @return number of items waiting after the current one
+     */
+    public synchronized int size() {
+        return upcoming.size();
+    }
+    
+    /**
+     * GETTER: getHitCount
+     * 
+     * @return advances whose item was already prefetched
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+    
+    /**
+     * GETTER: getMissCount
+     * 
+     * @return advances whose item had to be read from scratch
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+    
+    /**
+     * GETTER: getCancelledCount
+     * 
+     * @return prefetches cancelled before they were used
+     */
+    public synchronized long getCancelledCount() {
+        return cancelled;
+    }
+    
+    /**
+     * GETTER: getHitRate
+     * 
+     * @return hits / (hits + misses), or 0 before the first advance
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+    
+    // Caller holds the lock. Starts prefetches for the first "depth" items.
+    private void refill() {
+        int seen = 0;
+        for (Iterator<Media> it = upcoming.iterator(); it.hasNext() && seen < depth; seen++) {
+            Media media = it.next();
+            if (!prefetches.containsKey(media)) {
+                Prefetch prefetch = new Prefetch(media);
+                prefetches.put(media, prefetch);
+                prefetch.future = PREFETCH_EXECUTOR.submit(() -> load(prefetch));
+            }
+        }
+    }
+    
+    // Runs on an I/O thread, without the lock while reading
+    private void load(Prefetch prefetch) {
+        synchronized (this) {
+            if (prefetch.cancelled) {
+                return;
+            }
+        }
+        ByteBuffer buffer = pool.tryAcquire();
+        if (buffer == null) {
+            return; // Pool exhausted: this item will be a miss
+        }
+        Path file;
+        try {
+            file = locator.apply(prefetch.media);
+        } catch (RuntimeException e) {
+            file = null;
+        }
+        if (file == null) {
+            pool.release(buffer);
+            return; // Nothing to read ahead (e.g. no such variant yet)
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            buffer.flip();
+        } catch (IOException | RuntimeException e) {
+            pool.release(buffer);
+            return; // Missing file or bad id: read normally at play time
+        }
+        synchronized (this) {
+            if (prefetch.cancelled) {
+                pool.release(buffer);
+            } else {
+                prefetch.file = file;
+                prefetch.data = buffer;
+            }
+        }
+    }
+    
+    // Caller holds the lock
+    private void cancel(Prefetch prefetch) {
+        prefetch.cancelled = true;
+        cancelled++;
+        if (prefetch.future != null) {
+            prefetch.future.cancel(false);
+        }
+        if (prefetch.data != null) {
+            pool.release(prefetch.data);
+            prefetch.data = null;
+        }
+    }
+    
+    // Caller holds the lock
+    private void releaseCurrent() {
+        if (currentData != null) {
+            currentData.release();
+            currentData = null;
+        }
+    }
+    
+    private static ExecutorService createExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(IO_THREADS, IO_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), runnable -> {
+                    Thread thread = new Thread(runnable, "prefetch-io-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
@@ -0,0 +1,90 @@
+package musicStreaming.playback;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared timer that drives timed playback events (ad breaks ending, tracks
+ * starting) for every session on the node.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * FreeUser.play used to Thread.sleep() through each advertisement, blocking
+ * one server thread per free listener per track. With a scheduler the wait
+ * costs nothing but a queued timer entry; a handful of threads fire the
+ * events when they are due, so 100k+ free sessions can wait on ads at once.
+ * 
+ * DESIGN RATIONALE:
+ * - ONE shared instance (getShared()): timers are cheap, threads are not
+ * - Daemon threads: pending ad breaks never keep the JVM alive
+ * - Remove-on-cancel: a skipped/replaced ad break is removed from the queue
+ *   immediately instead of lingering until its due time
+ * - Scheduled tasks must be short (record an event, start a track); any
+ *   long work belongs on another executor
+ * 
+ * @author Sima
+ */
+public class PlaybackScheduler {
+    
+    // WHY 2 threads: firing a due event is microseconds of work
+    private static final int DEFAULT_THREADS = 2;
+    
+    private static final PlaybackScheduler SHARED = new PlaybackScheduler(DEFAULT_THREADS);
+    
+    private final ScheduledThreadPoolExecutor executor;
+    
+    /**
+     * CONSTRUCTOR: PlaybackScheduler
+     * 
+     * @param threads number of timer threads
+     */
+    public PlaybackScheduler(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "playback-scheduler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+    
+    /**
+     * METHOD: getShared
+     * 
+     * @return the node-wide scheduler used by all playback sessions
+     */
+    public static PlaybackScheduler getShared() {
+        return SHARED;
+    }
+    
+    /**
+     * METHOD: schedule
+     * 
+     * @param delayMillis time to wait before running the task
+     * @param task short task to run when due
+     * @return handle that can cancel the task before it runs
+     */
+    public ScheduledFuture<?> schedule(long delayMillis, Runnable task) {
+        return executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * METHOD: getPendingCount
+     * 
+     * @return number of events waiting to fire
+     */
+    public int getPendingCount() {
+        return executor.getQueue().size();
+    }
+    
+    /**
+     * METHOD: shutdown
+     * 
+     * PURPOSE:
+     * Stops accepting events; already scheduled events still fire.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
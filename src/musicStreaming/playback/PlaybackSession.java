@@ -0,0 +1,122 @@
+package musicStreaming.playback;
+
+import java.util.concurrent.ScheduledFuture;
+import musicStreaming.media.Media;
+
+/**
+ * One listener's playback state: what is playing and whether an ad break is
+ * in progress.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * With ads scheduled instead of slept through, play() returns before the
+ * track starts. The session remembers the pending start so that:
+ * - a new play() replaces the pending one (no two tracks start)
+ * - cancel() can stop a pending start (user closed the app)
+ * - callers can ask whether the listener is currently hearing an ad
+ * 
+ * THREAD SAFETY:
+ * The same account may press play from several devices; all state changes
+ * are made under the session's own lock, which is held only for a few field
+ * updates, never across the wait.
+ * 
+ * @author Sima
+ */
+public class PlaybackSession {
+    
+    private final PlaybackScheduler scheduler;
+    
+    private ScheduledFuture<?> pendingStart; // Start waiting behind an ad break
+    private Media pendingMedia;              // Media that will start when it fires
+    private Media nowPlaying;                // Last media that actually started
+    
+    /**
+     * CONSTRUCTOR: PlaybackSession
+     * 
+     * @param scheduler the shared scheduler that fires timed events
+     */
+    public PlaybackSession(PlaybackScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+    
+    /**
+     * METHOD: startAfterAd
+     * 
+     * @param adMillis length of the ad break (0 = start right away)
+     * @param media the media that starts after the break
+     * @param onStart runs on the scheduler thread when the break ends
+     * 
+     * PURPOSE:
+     * Schedules the start of a track behind an ad break without blocking
+     * the caller. Any start still pending from an earlier call is cancelled.
+     */
+    public synchronized void startAfterAd(long adMillis, Media media, Runnable onStart) {
+        cancelPending();
+        if (adMillis <= 0) {
+            nowPlaying = media;
+            onStart.run();
+            return;
+        }
+        pendingMedia = media;
+        // The task re-checks that it is still the current start: a later
+        // play() may have replaced it between firing and taking the lock
+        final ScheduledFuture<?>[] self = new ScheduledFuture<?>[1];
+        self[0] = scheduler.schedule(adMillis, () -> {
+            synchronized (PlaybackSession.this) {
+                if (pendingStart != self[0]) {
+                    return;
+                }
+                pendingStart = null;
+                pendingMedia = null;
+                nowPlaying = media;
+            }
+            onStart.run();
+        });
+        pendingStart = self[0];
+    }
+    
+    /**
+     * METHOD: cancel
+     * 
+     * PURPOSE:
+     * Drops a pending start, e.g. when the listener leaves during an ad.
+     */
+    public synchronized void cancel() {
+        cancelPending();
+    }
+    
+    /**
+     * METHOD: isInAdBreak
+     * 
+     * @return true while a track is waiting behind an ad break
+     */
+    public synchronized boolean isInAdBreak() {
+        return pendingStart != null;
+    }
+    
+    /**
+     * GETTER: getPendingMedia
+     * 
+     * @return media waiting behind the current ad break, or null
+     */
+    public synchronized Media getPendingMedia() {
+        return pendingMedia;
+    }
+    
+    /**
+     * GETTER: getNowPlaying
+     * 
+     * @return the media that last started playing, or null
+     */
+    public synchronized Media getNowPlaying() {
+        return nowPlaying;
+    }
+    
+    // Caller holds the lock
+    private void cancelPending() {
+        if (pendingStart != null) {
+            pendingStart.cancel(false);
+            pendingStart = null;
+            pendingMedia = null;
+        }
+    }
+}
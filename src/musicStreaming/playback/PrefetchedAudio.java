@@ -0,0 +1,72 @@
+package musicStreaming.playback;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The first bytes of one audio file, read ahead by a PlayQueue.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * The bytes live in a buffer borrowed from a BufferPool. They are only
+ * useful to the stream that starts the track, and that stream usually
+ * outlives the queue's "current" item (the listener queues, skips, moves
+ * on). So the queue hands the buffer over together with the duty to give
+ * it back: whoever holds this object calls release() exactly when done.
+ * 
+ * @author Sima
+ */
+public final class PrefetchedAudio {
+    
+    private final Path file;
+    private final ByteBuffer data; // Flipped: position 0, limit = bytes read
+    private final BufferPool pool;
+    private final AtomicBoolean released = new AtomicBoolean();
+    
+    PrefetchedAudio(Path file, ByteBuffer data, BufferPool pool) {
+        this.file = file;
+        this.data = data;
+        this.pool = pool;
+    }
+    
+    /**
+     * GETTER: getFile
+     * 
+     * @return the file these bytes were read from; they may only stand in
+     *         for the start of this file
+     */
+    public Path getFile() {
+        return file;
+    }
+    
+    /**
+     * GETTER: getData
+     * 
+     * @return a new read-only view of the bytes (position 0); not valid
+     *         after release()
+     */
+    public ByteBuffer getData() {
+        return data.asReadOnlyBuffer();
+    }
+    
+    /**
+     * GETTER: size
+     * 
+     * @return number of bytes read ahead
+     */
+    public int size() {
+        return data.limit();
+    }
+    
+    /**
+     * METHOD: release
+     * 
+     * PURPOSE:
+     * Returns the buffer to its pool. Safe to call more than once.
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            pool.release(data);
+        }
+    }
+}
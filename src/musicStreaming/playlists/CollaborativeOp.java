@@ -0,0 +1,97 @@
+package musicstreaming.playlists;
+
+import musicStreaming.enums.PlaylistOperation;
+
+/**
+ * One edit of a CollaborativePlaylist, made by one replica and sent to all
+ * the others (in any order, any number of times).
+ * 
+ * Identified by (replica, sequence): the replica's sequence numbers run
+ * 1, 2, 3 ... with no gaps, which is how receivers spot duplicates and
+ * missing edits. Operations used: INSERT, REMOVE, MOVE, RENAME.
+ * 
+ * Immutable.
+ * 
+ * @author Arya Ali
+ * @param <T> the type of media items in the playlist
+ */
+public final class CollaborativeOp<T> {
+    private final PlaylistOperation operation;
+    private final int replica;
+    private final int sequence;
+    private final long clock;                // Lamport time, orders MOVE/RENAME
+    private final long itemKey;              // Item inserted, removed or moved
+    private final T item;                    // INSERT only
+    private final SequencePosition position; // INSERT and MOVE
+    private final String name;               // RENAME only
+    
+    CollaborativeOp(PlaylistOperation operation, int replica, int sequence, long clock, long itemKey,
+                    T item, SequencePosition position, String name) {
+        this.operation = operation;
+        this.replica = replica;
+        this.sequence = sequence;
+        this.clock = clock;
+        this.itemKey = itemKey;
+        this.item = item;
+        this.position = position;
+        this.name = name;
+    }
+    
+    /**
+     * method getOperation(): to
+     * @return what kind of edit this is
+     */
+    public PlaylistOperation getOperation() {
+        return operation;
+    }
+    
+    /**
+     * method getReplica(): to
+     * @return the replica (editor) that made the edit
+     */
+    public int getReplica() {
+        return replica;
+    }
+    
+    /**
+     * method getSequence(): to
+     * @return the edit's number at its replica (1, 2, 3 ...)
+     */
+    public int getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * method getItem(): to
+     * @return the inserted item; null for other operations
+     */
+    public T getItem() {
+        return item;
+    }
+    
+    /**
+     * method getName(): to
+     * @return the new name for RENAME; null otherwise
+     */
+    public String getName() {
+        return name;
+    }
+    
+    long getClock() {
+        return clock;
+    }
+    
+    long getItemKey() {
+        return itemKey;
+    }
+    
+    SequencePosition getPosition() {
+        return position;
+    }
+    
+    @Override
+    public String toString() {
+        return operation + " r" + replica + "#" + sequence + (position != null ? " " + position : "")
+                + (item != null ? " " + item : "") + (name != null ? " '" + name + "'" : "");
+    }
+}
@@ -0,0 +1,436 @@
+package musicstreaming.playlists;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import musicStreaming.enums.PlaylistOperation;
+
+/**
+ * Shared playlist that many users edit at the same time, each on their own
+ * replica, without locking each other out (a sequence CRDT).
+ * 
+ * HOW IT WORKS:
+ * - Every editor holds a replica. Local edits (add, insertAt, removeAt,
+ *   move, rename) apply at once and return a CollaborativeOp that the
+ *   caller sends to the other replicas; they apply it with apply()
+ * - Each item has a Logoot-style SequencePosition; the playlist is the
+ *   items sorted by position. Concurrent inserts get distinct positions,
+ *   so every replica sorts them the same way
+ * - move() gives the item a new position; if two editors move the same
+ *   item at once, the later move (Lamport clock, then replica id) wins
+ * - remove wins over a concurrent move; rename is last-writer-wins
+ * 
+ * Once all replicas have applied the same edits (in any order, with
+ * duplicates), they hold the same playlist.
+ * 
+ * DELIVERY:
+ * apply() accepts edits in any order and more than once: an edit whose
+ * predecessors from the same replica (or whose item) have not arrived yet
+ * waits in a pending list, duplicates are recognized by sequence number.
+ * 
+ * TOMBSTONE GARBAGE COLLECTION:
+ * Positions do not depend on neighbours, so a removed item leaves the
+ * list at once. Only a small tombstone (item key -> removing edit) is
+ * kept, to ignore moves of that item still in flight. Replicas exchange
+ * their version vectors (getVersionVector/acknowledge); once every known
+ * replica has seen a removal and this replica has everything they had
+ * sent by then, no edit can mention the item any more and its tombstone
+ * is dropped.
+ * 
+ * Thread safety: a replica is used by one editor, possibly from several
+ * threads, so each method locks the replica (never other replicas).
+ * 
+ * @author Arya Ali
+ * @param <T> the type of media items in the playlist
+ */
+public class CollaborativePlaylist<T> implements Iterable<T> {
+    
+    private static final class Element<T> {
+        final long key;
+        final T item;
+        SequencePosition position;
+        long clock;  // Stamp of the insert or winning move
+        int replica;
+        
+        Element(long key, T item, SequencePosition position, long clock, int replica) {
+            this.key = key;
+            this.item = item;
+            this.position = position;
+            this.clock = clock;
+            this.replica = replica;
+        }
+    }
+    
+    private final int replicaId;
+    private final ArrayList<Element<T>> order = new ArrayList<>(); // Sorted by position
+    private final HashMap<Long, Element<T>> live = new HashMap<>();
+    private final HashMap<Long, long[]> tombstones = new HashMap<>(); // key -> {replica, sequence} of the remove
+    private final HashMap<Integer, Integer> applied = new HashMap<>(); // Version vector
+    private final HashMap<Integer, Map<Integer, Integer>> acknowledged = new HashMap<>();
+    private final ArrayList<CollaborativeOp<T>> pending = new ArrayList<>();
+    private long clock;
+    private int sequence;
+    private String name;
+    private long nameClock;
+    private int nameReplica;
+    
+    /**
+     * Constructor for one replica of a shared playlist.
+     * @param name the initial name (every replica should start with the same)
+     * @param replicaId this editor's id, unique among the replicas
+     */
+    public CollaborativePlaylist(String name, int replicaId) {
+        this.name = name;
+        this.replicaId = replicaId;
+    }
+    
+    // ----------------------------------------------------------- local edits
+    
+    /**
+     * method add(): Appends an item.
+     * @param item the item to add
+     * @return the edit to send to the other replicas
+     */
+    public synchronized CollaborativeOp<T> add(T item) {
+        return insertAt(order.size(), item);
+    }
+    
+    /**
+     * method insertAt(): Inserts an item at a position.
+     * @param index position of the new item (0 = first, size() = last)
+     * @param item the item to insert
+     * @return the edit to send to the other replicas
+     * @throws IndexOutOfBoundsException if index is not in 0..size()
+     */
+    public synchronized CollaborativeOp<T> insertAt(int index, T item) {
+        if (index < 0 || index > order.size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + order.size());
+        }
+        SequencePosition before = index > 0 ? order.get(index - 1).position : null;
+        SequencePosition after = index < order.size() ? order.get(index).position : null;
+        int seq = sequence + 1;
+        return local(new CollaborativeOp<T>(PlaylistOperation.INSERT, replicaId, seq, clock + 1,
+                key(replicaId, seq), item, SequencePosition.between(before, after, replicaId, seq), null));
+    }
+    
+    /**
+     * method removeAt(): Removes the item at a position.
+     * @param index position of the item
+     * @return the edit to send to the other replicas
+     * @throws IndexOutOfBoundsException if index is not in 0..size()-1
+     */
+    public synchronized CollaborativeOp<T> removeAt(int index) {
+        Element<T> element = order.get(index);
+        return local(new CollaborativeOp<T>(PlaylistOperation.REMOVE, replicaId, sequence + 1, clock + 1,
+                element.key, null, null, null));
+    }
+    
+    /**
+     * method move(): Moves an item so that it ends up at index "to".
+     * @param from current position of the item
+     * @param to new position of the item
+     * @return the edit to send to the other replicas, or null if from == to
+     * @throws IndexOutOfBoundsException if either index is not in 0..size()-1
+     */
+    public synchronized CollaborativeOp<T> move(int from, int to) {
+        Element<T> element = order.get(from);
+        if (to < 0 || to >= order.size()) {
+            throw new IndexOutOfBoundsException("Index " + to + ", size " + order.size());
+        }
+        if (from == to) {
+            return null;
+        }
+        // Neighbours at "to" in the list without the moved item
+        SequencePosition before = to > 0 ? order.get(to - 1 < from ? to - 1 : to).position : null;
+        SequencePosition after = to < order.size() - 1 ? order.get(to < from ? to : to + 1).position : null;
+        int seq = sequence + 1;
+        return local(new CollaborativeOp<T>(PlaylistOperation.MOVE, replicaId, seq, clock + 1,
+                element.key, null, SequencePosition.between(before, after, replicaId, seq), null));
+    }
+    
+    /**
+     * method rename(): Renames the playlist.
+     * @param newName the new name
+     * @return the edit to send to the other replicas
+     */
+    public synchronized CollaborativeOp<T> rename(String newName) {
+        return local(new CollaborativeOp<T>(PlaylistOperation.RENAME, replicaId, sequence + 1, clock + 1,
+                0L, null, null, newName));
+    }
+    
+    // ---------------------------------------------------------- remote edits
+    
+    /**
+     * method apply(): Applies an edit received from another replica.
+     * Edits may arrive in any order and more than once.
+     * @param op the edit
+     * @return true if it (and possibly edits waiting for it) took effect now;
+     *         false if it is a duplicate or has to wait for earlier edits
+     */
+    public synchronized boolean apply(CollaborativeOp<T> op) {
+        if (op.getSequence() <= applied.getOrDefault(op.getReplica(), 0)) {
+            return false; // Already applied
+        }
+        if (!integrate(op)) {
+            pending.add(op);
+            return false;
+        }
+        // Edits that were waiting for this one may now go through
+        boolean progress = true;
+        while (progress && !pending.isEmpty()) {
+            progress = false;
+            for (Iterator<CollaborativeOp<T>> it = pending.iterator(); it.hasNext(); ) {
+                CollaborativeOp<T> waiting = it.next();
+                if (waiting.getSequence() <= applied.getOrDefault(waiting.getReplica(), 0)) {
+                    it.remove(); // Duplicate that arrived while waiting
+                } else if (integrate(waiting)) {
+                    it.remove();
+                    progress = true;
+                }
+            }
+        }
+        return true;
+    }
+    
+    // ------------------------------------------------- garbage collection
+    
+    /**
+     * method getVersionVector(): what this replica has applied, to send to
+     * the other replicas (they pass it to acknowledge()).
+     * @return replica id -> number of its edits applied here
+     */
+    public synchronized Map<Integer, Integer> getVersionVector() {
+        return Collections.unmodifiableMap(new HashMap<>(applied));
+    }
+    
+    /**
+     * method addReplica(): Registers an editor. Tombstones are kept until
+     * every registered replica has acknowledged them; register all editors
+     * before they start editing (a replica that knows of no other replica
+     * drops tombstones at once).
+     * @param replica the editor's replica id
+     */
+    public synchronized void addReplica(int replica) {
+        if (replica != replicaId) {
+            acknowledged.putIfAbsent(replica, Collections.emptyMap());
+        }
+    }
+    
+    /**
+     * method acknowledge(): Records another replica's version vector and
+     * drops the tombstones that no edit can refer to any more.
+     * @param replica the replica that sent it (registered if new)
+     * @param versionVector its getVersionVector()
+     * @return how many tombstones were dropped
+     */
+    public synchronized int acknowledge(int replica, Map<Integer, Integer> versionVector) {
+        if (replica != replicaId) {
+            acknowledged.put(replica, new HashMap<>(versionVector));
+        }
+        return collectGarbage();
+    }
+    
+    // -------------------------------------------------------------- reads
+    
+    /**
+     * method get(): to
+     * @param index position in the playlist (0-based)
+     * @return the item at that position
+     */
+    public synchronized T get(int index) {
+        return order.get(index).item;
+    }
+    
+    /**
+     * method size(): to
+     * @return item count
+     */
+    public synchronized int size() {
+        return order.size();
+    }
+    
+    /**
+     * method getName(): to
+     * @return the playlist name
+     */
+    public synchronized String getName() {
+        return name;
+    }
+    
+    /**
+     * method getItems(): to
+     * @return a copy of the items in playlist order
+     */
+    public synchronized List<T> getItems() {
+        List<T> items = new ArrayList<>(order.size());
+        for (Element<T> element : order) {
+            items.add(element.item);
+        }
+        return items;
+    }
+    
+    /**
+     * method iterator(): iterates a copy taken when it is created.
+     * @return iterator over the items
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return getItems().iterator();
+    }
+    
+    /**
+     * method toPlaylist(): a regular Playlist with the current items, e.g.
+     * to play it (items added twice by different editors appear once).
+     * @return a new playlist
+     */
+    public Playlist<T> toPlaylist() {
+        List<T> items = getItems();
+        Playlist<T> playlist = new Playlist<>(getName(), items.size());
+        playlist.addAll(items);
+        return playlist;
+    }
+    
+    /**
+     * method getTombstoneCount(): to
+     * @return removed items still remembered (see acknowledge())
+     */
+    public synchronized int getTombstoneCount() {
+        return tombstones.size();
+    }
+    
+    /**
+     * method getPendingCount(): to
+     * @return received edits waiting for earlier ones
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+    
+    // ------------------------------------------------------------ internals
+    
+    // Caller holds the lock
+    private CollaborativeOp<T> local(CollaborativeOp<T> op) {
+        integrate(op);
+        if (acknowledged.isEmpty()) {
+            collectGarbage(); // Working alone: nobody else can refer to it
+        }
+        return op;
+    }
+    
+    // Applies op if its replica's previous edit and its item are known.
+    // Caller holds the lock.
+    private boolean integrate(CollaborativeOp<T> op) {
+        if (op.getSequence() != applied.getOrDefault(op.getReplica(), 0) + 1) {
+            return false; // An earlier edit of that replica is missing
+        }
+        switch (op.getOperation()) {
+            case INSERT:
+                insert(new Element<T>(op.getItemKey(), op.getItem(), op.getPosition(), op.getClock(), op.getReplica()));
+                break;
+            case REMOVE: {
+                Element<T> element = live.remove(op.getItemKey());
+                if (element != null) {
+                    order.remove(find(element.position));
+                    tombstones.put(op.getItemKey(), new long[] { op.getReplica(), op.getSequence() });
+                } else if (!tombstones.containsKey(op.getItemKey())) {
+                    return false; // Item not inserted here yet
+                }
+                break;
+            }
+            case MOVE: {
+                Element<T> element = live.get(op.getItemKey());
+                if (element == null) {
+                    if (!tombstones.containsKey(op.getItemKey())) {
+                        return false; // Item not inserted here yet
+                    }
+                    break; // Removed: remove wins
+                }
+                if (newer(op.getClock(), op.getReplica(), element.clock, element.replica)) {
+                    order.remove(find(element.position));
+                    element.position = op.getPosition();
+                    element.clock = op.getClock();
+                    element.replica = op.getReplica();
+                    insert(element);
+                }
+                break;
+            }
+            case RENAME:
+                if (newer(op.getClock(), op.getReplica(), nameClock, nameReplica)) {
+                    name = op.getName();
+                    nameClock = op.getClock();
+                    nameReplica = op.getReplica();
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + op.getOperation());
+        }
+        applied.put(op.getReplica(), op.getSequence());
+        clock = Math.max(clock, op.getClock());
+        if (op.getReplica() == replicaId) {
+            sequence = op.getSequence();
+        }
+        return true;
+    }
+    
+    private void insert(Element<T> element) {
+        live.put(element.key, element);
+        int at = find(element.position);
+        order.add(at < 0 ? -at - 1 : at, element);
+    }
+    
+    // Binary search by position: index, or -(insertion point) - 1
+    private int find(SequencePosition position) {
+        int low = 0;
+        int high = order.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int c = order.get(middle).position.compareTo(position);
+            if (c < 0) {
+                low = middle + 1;
+            } else if (c > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+    
+    // A tombstone can go once every replica has seen the remove and we hold
+    // every edit they had made by then. Caller holds the lock.
+    private int collectGarbage() {
+        for (Map.Entry<Integer, Map<Integer, Integer>> entry : acknowledged.entrySet()) {
+            int theirOwn = entry.getValue().getOrDefault(entry.getKey(), 0);
+            if (applied.getOrDefault(entry.getKey(), 0) < theirOwn) {
+                return 0; // Their earlier edits are still on the way here
+            }
+        }
+        int dropped = 0;
+        for (Iterator<long[]> it = tombstones.values().iterator(); it.hasNext(); ) {
+            long[] remove = it.next();
+            boolean seenByAll = true;
+            for (Map<Integer, Integer> seen : acknowledged.values()) {
+                if (seen.getOrDefault((int) remove[0], 0) < remove[1]) {
+                    seenByAll = false;
+                    break;
+                }
+            }
+            if (seenByAll) {
+                it.remove();
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+    
+    private static boolean newer(long clock, int replica, long thanClock, int thanReplica) {
+        return clock > thanClock || (clock == thanClock && replica > thanReplica);
+    }
+    
+    private static long key(int replica, int sequence) {
+        return ((long) replica << 32) | (sequence & 0xFFFFFFFFL);
+    }
+}
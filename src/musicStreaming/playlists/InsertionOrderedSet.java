@@ -0,0 +1,316 @@
+package musicstreaming.playlists;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent insertion-ordered set with O(1) membership, used by Library.
+ * 
+ * Layout (like a compact dictionary):
+ * - entries: append-only array of items in insertion order; a removed item
+ *   leaves a null "tombstone" in its slot
+ * - positions: ConcurrentHashMap item -> slot, for O(1) contains/remove
+ * - ranks: Fenwick tree over the slots (1 per live item), so get(i) finds
+ *   the i-th live item in O(log n) however many tombstones there are
+ * - the array, its used length and the live count are published together
+ *   as one immutable State, so readers never lock and never see a torn view
+ * 
+ * Writers (add/remove/clear) are serialized per set by a StampedLock and do
+ * O(log n) amortized work. When more than half of the used slots are
+ * tombstones the live items are copied into a fresh dense array
+ * (compaction). get() reads the Fenwick tree under an optimistic read and
+ * only takes the read lock if a writer ran at the same moment.
+ * 
+ * Iterators walk the State current when they were created: they see every
+ * item added before that moment and never items added later, skip items
+ * already removed, and never throw ConcurrentModificationException.
+ * 
+ * @author Arya Ali
+ * @param <T> the type of items
+ */
+class InsertionOrderedSet<T> implements Iterable<T> {
+    
+    private static final int INITIAL_CAPACITY = 16;
+    
+    // Immutable snapshot of the layout; entries may only gain tombstones
+    private static final class State {
+        final Object[] entries;
+        final int[] ranks; // Fenwick tree, 1-based, one node per slot of entries
+        final int length;  // slots in use (live + tombstones)
+        final int live;    // items present
+        
+        State(Object[] entries, int[] ranks, int length, int live) {
+            this.entries = entries;
+            this.ranks = ranks;
+            this.length = length;
+            this.live = live;
+        }
+    }
+    
+    private final ConcurrentHashMap<T, Integer> positions = new ConcurrentHashMap<T, Integer>();
+    private final StampedLock lock = new StampedLock();
+    private volatile State state = new State(new Object[INITIAL_CAPACITY], new int[INITIAL_CAPACITY + 1], 0, 0);
+    
+    // add(): append at the end; false if already present
+    boolean add(T item) {
+        if (positions.containsKey(item)) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            State s = state;
+            if (positions.containsKey(item)) {
+                return false;
+            }
+            Object[] entries = s.entries;
+            int[] ranks = s.ranks;
+            if (s.length == entries.length) {
+                // Grow into a copy: iterators on the old array stay valid
+                entries = Arrays.copyOf(entries, entries.length * 2);
+                entries[s.length] = item;
+                ranks = buildRanks(entries, s.length + 1);
+            } else {
+                entries[s.length] = item;
+                updateRank(ranks, s.length, 1);
+            }
+            positions.put(item, s.length);
+            state = new State(entries, ranks, s.length + 1, s.live + 1);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    // remove(): tombstone the slot; false if absent
+    boolean remove(Object item) {
+        if (item == null) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            Integer position = positions.remove(item);
+            if (position == null) {
+                return false;
+            }
+            State s = state;
+            s.entries[position] = null;
+            updateRank(s.ranks, position, -1);
+            state = new State(s.entries, s.ranks, s.length, s.live - 1);
+            if (s.live - 1 < s.length / 2 && s.length > INITIAL_CAPACITY) {
+                compact();
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    boolean contains(Object item) {
+        return item != null && positions.containsKey(item);
+    }
+    
+    int size() {
+        return state.live;
+    }
+    
+    // clear(): returns the items it removed, so callers can account for
+    // exactly those (an add racing with clear is either in it or kept)
+    Object[] clear() {
+        long stamp = lock.writeLock();
+        try {
+            Object[] removed = toArray();
+            positions.clear();
+            state = new State(new Object[INITIAL_CAPACITY], new int[INITIAL_CAPACITY + 1], 0, 0);
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    // get(): index-th item in insertion order; O(1) while there are no
+    // tombstones, otherwise O(log n) through the Fenwick tree. Never
+    // compacts and never takes the write lock.
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        State s = state;
+        if (s.live == s.length) {
+            checkIndex(index, s.live);
+            Object item = s.entries[index];
+            if (item != null) {
+                return (T) item;
+            }
+            // Removed after we read the state: look it up properly below
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                s = state;
+                checkIndex(index, s.live);
+                Object item = s.entries[findSlot(s.ranks, index)];
+                if (lock.validate(stamp) && item != null) {
+                    return (T) item;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+                // Torn read of a tree being updated; fall through
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            s = state;
+            checkIndex(index, s.live);
+            return (T) s.entries[findSlot(s.ranks, index)];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    Object[] toArray() {
+        State s = state;
+        Object[] result = new Object[s.live];
+        int n = 0;
+        for (int i = 0; i < s.length && n < result.length; i++) {
+            Object item = s.entries[i];
+            if (item != null) {
+                result[n++] = item;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+    
+    @Override
+    public Iterator<T> iterator() {
+        final State s = state;
+        return new Iterator<T>() {
+            private int position;
+            private T nextItem = fetch();
+            
+            // Items are never null, so null marks the end
+            @SuppressWarnings("unchecked")
+            private T fetch() {
+                while (position < s.length) {
+                    Object item = s.entries[position++];
+                    if (item != null) {
+                        return (T) item;
+                    }
+                }
+                return null;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return nextItem != null;
+            }
+            
+            @Override
+            public T next() {
+                if (nextItem == null) {
+                    throw new NoSuchElementException();
+                }
+                T item = nextItem;
+                nextItem = fetch();
+                return item;
+            }
+        };
+    }
+    
+    /**
+     * Unmodifiable live List view: reflects later changes, costs no copy.
+     * 
+     * @return view backed by this set
+     */
+    List<T> view() {
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return InsertionOrderedSet.this.get(index);
+            }
+            
+            @Override
+            public int size() {
+                return InsertionOrderedSet.this.size();
+            }
+            
+            @Override
+            public boolean contains(Object o) {
+                return InsertionOrderedSet.this.contains(o);
+            }
+            
+            @Override
+            public Iterator<T> iterator() {
+                return InsertionOrderedSet.this.iterator();
+            }
+            
+            @Override
+            public Object[] toArray() {
+                return InsertionOrderedSet.this.toArray();
+            }
+        };
+    }
+    
+    // Caller holds the write lock. Copies live items into a fresh array and
+    // renumbers their positions; old iterators keep the old array.
+    @SuppressWarnings("unchecked")
+    private void compact() {
+        State s = state;
+        Object[] dense = new Object[Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, s.live)) * 2)];
+        int n = 0;
+        for (int i = 0; i < s.length; i++) {
+            Object item = s.entries[i];
+            if (item != null) {
+                dense[n] = item;
+                positions.put((T) item, n);
+                n++;
+            }
+        }
+        state = new State(dense, buildRanks(dense, n), n, n);
+    }
+    
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+    
+    // Fenwick tree for entries[0, length): O(capacity), no per-slot updates
+    private static int[] buildRanks(Object[] entries, int length) {
+        int[] ranks = new int[entries.length + 1];
+        for (int i = 1; i < ranks.length; i++) {
+            if (i <= length && entries[i - 1] != null) {
+                ranks[i]++;
+            }
+            int parent = i + (i & -i);
+            if (parent < ranks.length) {
+                ranks[parent] += ranks[i];
+            }
+        }
+        return ranks;
+    }
+    
+    private static void updateRank(int[] ranks, int slot, int delta) {
+        for (int i = slot + 1; i < ranks.length; i += i & -i) {
+            ranks[i] += delta;
+        }
+    }
+    
+    // Slot of the index-th (0-based) live item: Fenwick descent
+    private static int findSlot(int[] ranks, int index) {
+        int position = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(ranks.length - 1); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < ranks.length && ranks[next] < remaining) {
+                position = next;
+                remaining -= ranks[next];
+            }
+        }
+        return position; // Node position + 1 (1-based) is that slot
+    }
+}
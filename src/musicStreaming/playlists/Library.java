@@ -1,26 +1,63 @@
 package musicstreaming.playlists;
 
-//import musicStreaming.interfaces.Searchable;
+import musicstreaming.interfaces.Searchable;
+import musicStreaming.events.EventLog;
+import musicStreaming.index.SavedByIndex;
+import musicStreaming.media.Media;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-//import java.util.stream.Collectors;
 
 /**
  * Generic library class for storing and managing a user's saved media collection.
  * This class implements the Searchable interface to provide search functionality
  * across all saved items. The library can store any type of media (songs, podcasts) using Java generics.
  * 
+ * Thread safety: one account may use its library from several devices at once.
+ * Items are kept in an InsertionOrderedSet (hash index + append-only array):
+ * contains() is an O(1) hash lookup, add()/remove() are O(1) amortized and
+ * atomic, and reads and iteration never lock. Power users with 50k+ saved
+ * items no longer pay a list scan per add or a full copy per read.
+ * 
+ * A library that knows its owner (see User.getLibrary) reports every media
+ * added or removed to the SavedByIndex, so "who saved this?" never has to
+ * walk every library.
+ * 
+ * search() uses a per-library token index (LibraryIndex) once the library
+ * holds INDEX_THRESHOLD items. It is built on the first such search and
+ * then kept up to date by add/remove/clear, so searching tens of thousands
+ * of saved items costs about as much as the number of matches.
+ * 
+ * A change to the set and to both indexes happens under the library's
+ * lock (the savedItems monitor): two devices adding and removing the same
+ * item at once cannot leave an index saying the opposite of the library.
+ * 
  * @author Arya Ali  - implemented Library & Generics
  * @param <T> the type of media items stored in this library
  */
 
-public class Library<T> {
+public class Library<T> implements Iterable<T>, Searchable {
+    // Below this many items a plain scan is as fast as the index
+    private static final int INDEX_THRESHOLD = 256;
+    
     //instance variable
-    private List<T> savedItems;
+    private final InsertionOrderedSet<T> savedItems;
+    private final String ownerId; // null: not reported to the SavedByIndex
+    private volatile LibraryIndex index; // null until a search needs it
+    private volatile long modifications; // Written under the savedItems monitor
     
     //constructor
     public Library() {
-        this.savedItems = new ArrayList<>();
+        this(null);
+    }
+    
+    /**
+     * constructor for a user's own library.
+     * @param ownerId the user id reported to the SavedByIndex on every change
+     */
+    public Library(String ownerId) {
+        this.savedItems = new InsertionOrderedSet<>();
+        this.ownerId = ownerId;
     }
     
     
@@ -32,18 +69,51 @@ public class Library<T> {
      */
     public boolean add(T item) {
         if (item == null) {
-            System.out.println("Cannot add null item to library");
+            EventLog.warn("Library", "Cannot add null item to library");
             return false;
         }
         
-        if (savedItems.contains(item)) {
-            System.out.println("Item already exists in library");
+        // Check-and-add in one atomic step: two devices adding the same
+        // item at once cannot both succeed
+        boolean added;
+        synchronized (savedItems) {
+            added = savedItems.add(item);
+            if (added) {
+                saved(item, true);
+            }
+        }
+        if (!added) {
+            EventLog.warn("Library", "Item already exists in library");
             return false;
         }
-        
-        savedItems.add(item);
-                System.out.println("Saved to library");
-                return true;
+        EventLog.info("Library", "Saved to library");
+        return true;
+    }
+    
+    
+    /**
+     * method addAll(): bulk add, e.g. when a stored library is loaded back.
+     * Same as add() for every item, but logs once instead of per item.
+     * 
+     * @param items the items to add (nulls and duplicates are skipped)
+     * @return how many items were added
+     */
+    public int addAll(Iterable<? extends T> items) {
+        int added = 0;
+        for (T item : items) {
+            if (item == null) {
+                continue;
+            }
+            synchronized (savedItems) { // Per item, as in add()
+                if (!savedItems.add(item)) {
+                    continue;
+                }
+                saved(item, true);
+            }
+            added++;
+        }
+        EventLog.info("Library", "Saved {} item(s) to library", added);
+        return added;
     }
     
     
@@ -51,19 +121,53 @@ public class Library<T> {
      *  create method remove()
      * 
      * @param item the item to remove from the library
+     * @return true if the item was in the library
      */
-    public void remove(T item) {
-        savedItems.remove(item);
+    public boolean remove(T item) {
+        boolean removed;
+        synchronized (savedItems) {
+            removed = savedItems.remove(item);
+            if (removed) {
+                saved(item, false);
+            }
+        }
         System.out.println("Removed item from library");
+        return removed;
     }
     
     
     /**
      * create method getSavedItems(): to
-     * @return a new list containing all saved items
+     * @return an unmodifiable live view of all saved items, in the order they
+     *         were saved. No copy is made: the view reflects later changes,
+     *         and its iterator walks a snapshot (no ConcurrentModificationException).
+     *         Copy it yourself (new ArrayList&lt;&gt;(...)) if you need a frozen list.
      */
     public List<T> getSavedItems() {
-        return new ArrayList<>(savedItems); // Return copy for safety
+        return savedItems.view();
+    }
+    
+    /**
+     * method iterator(): iterates the saved items in the order they were saved.
+     * The iterator walks a snapshot taken when it is created; nothing is copied.
+     * 
+     * @return iterator over the saved items
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return savedItems.iterator();
+    }
+    
+    
+    /**
+     * method shuffle(): plays the library in a random order, starting at once.
+     * Nothing is copied or shuffled up front (see ShuffleIterator); items
+     * saved while shuffling are still played.
+     * 
+     * @return a new shuffle over this library
+     */
+    public ShuffleIterator<T> shuffle() {
+        return new ShuffleIterator<>(savedItems.view());
     }
     
     
@@ -81,7 +185,16 @@ public class Library<T> {
      * @return true if the library contains no items, false otherwise
      */
     public boolean isEmpty() {
-        return savedItems.isEmpty();
+        return savedItems.size() == 0;
+    }
+    
+    /**
+     * method getModificationCount(): to
+     * @return how many items were added or removed so far; changes on every
+     *         change, e.g. for storage to notice edits made while it wrote
+     */
+    public long getModificationCount() {
+        return modifications;
     }
     
     /**
@@ -100,31 +213,63 @@ public class Library<T> {
      * After calling this method, the library will be empty.
      */
     public void clear() {
-        // STEP 1: Store the count before clearing (for user feedback)
-        int count = savedItems.size();
-        
-        // STEP 2: Remove all elements from the list
-        savedItems.clear();
+        // STEP 1: Remove all elements and unregister exactly those from
+        // the indexes, with no add() in between
+        Object[] removed;
+        synchronized (savedItems) {
+            removed = savedItems.clear();
+            for (Object item : removed) {
+                saved(item, false);
+            }
+        }
         
-        // STEP 3: Provide feedback on what was cleared
-        System.out.println("Cleared " + count + " items from library");
+        // STEP 2: Provide feedback on what was cleared
+        System.out.println("Cleared " + removed.length + " items from library");
+    }
+    
+    // Reports an item entering or leaving this library to the search index
+    // and the SavedByIndex. Caller holds the savedItems monitor.
+    private void saved(Object item, boolean added) {
+        modifications++;
+        LibraryIndex current = index;
+        if (current != null) {
+            if (added) {
+                current.add(item);
+            } else {
+                current.remove(item);
+            }
+        }
+        if (ownerId == null || !(item instanceof Media)) {
+            return;
+        }
+        String mediaId = ((Media) item).getId();
+        if (mediaId == null) {
+            return;
+        }
+        if (added) {
+            SavedByIndex.getShared().added(ownerId, mediaId);
+        } else {
+            SavedByIndex.getShared().removed(ownerId, mediaId);
+        }
     }
     
     
     
     // method displayLibrary(): Displays all items in the library to the console.
     public void displayLibrary() {
-        // STEP 1: Print header with library size
-        System.out.println(" Library (" + savedItems.size() + " items)");
+        // STEP 1: Take one snapshot so header and items agree even if
+        // another device changes the library meanwhile
+        Object[] snapshot = savedItems.toArray();
+        System.out.println(" Library (" + snapshot.length + " items)");
         System.out.println("------------------------------------------");        
         // STEP 2: Check if library is empty
-        if (savedItems.isEmpty()) {
+        if (snapshot.length == 0) {
             System.out.println("   (empty library)");
         } else {
             // STEP 3: Display each item with index (1-based for user readability)
-            for (int i = 0; i < savedItems.size(); i++) {
+            for (int i = 0; i < snapshot.length; i++) {
                 // i + 1 converts 0-based index to 1-based position
-                System.out.println("   " + (i + 1) + ". " + savedItems.get(i));
+                System.out.println("   " + (i + 1) + ". " + snapshot[i]);
             }
         }
         
@@ -134,62 +279,59 @@ public class Library<T> {
     
     
     
-//     public void search(String keyword) {
-//        System.out.println("Searching library for: " + keyword);
-//        // Actual search logic to be added
-//    }
-//   
-//    
-//    /**
-//     * Searches for items in the library that match the given keyword.
-//     * This method implements the Searchable interface contract.
-//     * 
-//     * <p><b>Search Behavior:</b></p>
-//     * <ul>
-//     *   <li>Case-insensitive - "ROCK" will match "rock" and "Rock"</li>
-//     *   <li>Partial matching - "beat" will match "Beatles"</li>
-//     *   <li>Searches against toString() representation of items</li>
-//     *   <li>Returns empty list if keyword is null or empty</li>
-//     * </ul>
-//     * 
-//     * <p><b>Implementation Details:</b></p>
-//     * Uses Java Streams API for functional-style filtering:
-//     * <ol>
-//     *   <li>Convert list to stream</li>
-//     *   <li>Filter items containing keyword</li>
-//     *   <li>Collect results back to list</li>
-//     * </ol>
-//     * 
-//     * <p><b>Time Complexity:</b> O(n) - must check every item</p>
-//     * 
-//     * @param keyword the search term to look for (case-insensitive)
-//     * @return a new list of items that contain the keyword; empty list if no matches
-//     * 
-//     * @see Searchable#search(String)
-//     */
-//    @Override // Indicates this method implements the Searchable interface
-//    public List<T> search(String keyword) {
-//        // STEP 1: Validate the keyword
-//        if (keyword == null || keyword.trim().isEmpty()) {
-//            System.out.println("⚠️ Search keyword cannot be empty");
-//            return new ArrayList<>(); // Return empty list
-//        }
-//        
-//        // STEP 2: Convert keyword to lowercase and remove extra spaces
-//        String lowerKeyword = keyword.toLowerCase().trim();
-//        
-//        // STEP 3: Use Java Streams to filter matching items
-//        List<T> results = savedItems.stream()
-//            // Filter: keep only items whose string representation contains the keyword
-//            .filter(item -> item.toString().toLowerCase().contains(lowerKeyword))
-//            // Collect: gather all matching items into a new List
-//            .collect(Collectors.toList());
-//        
-//        // STEP 4: Provide feedback on search results
-//        System.out.println("Found " + results.size() + " item(s) matching '" + keyword + "'");
-//        
-//        // STEP 5: Return the results
-//        return results;
-//    }
+    /**
+     * method search(): Searches the library for items matching the keyword.
+     * This method implements the Searchable interface contract.
+     * 
+     * Search behavior (see LibraryIndex):
+     * - Case-insensitive - "ROCK" will match "rock" and "Rock"
+     * - Partial matching - "beat" will match "Beatles"; every word of the
+     *   keyword must start a word of the title (or of a song's artist)
+     * - Results are in the order the items were saved
+     * - Returns an empty list if keyword is null or empty
+     * 
+     * @param keyword the search term to look for (case-insensitive)
+     * @return a new list of the matching media; empty list if no matches
+     * 
+     * @see Searchable#search(String)
+     */
+    @Override
+    public ArrayList<Media> search(String keyword) {
+        // STEP 1: Validate the keyword
+        if (keyword == null || keyword.trim().isEmpty()) {
+            EventLog.warn("Library", "Search keyword cannot be empty");
+            return new ArrayList<>();
+        }
+        
+        // STEP 2: Use the token index for big libraries, a scan otherwise
+        LibraryIndex current = index;
+        if (current == null && savedItems.size() >= INDEX_THRESHOLD) {
+            current = buildIndex();
+        }
+        ArrayList<Media> results = current != null
+                ? current.search(keyword)
+                : LibraryIndex.scan(savedItems.view(), keyword);
+        
+        // STEP 3: Provide feedback on search results
+        EventLog.info("Library", "Found {} item(s) matching '{}'", results.size(), keyword);
+        return results;
+    }
+    
+    // Builds the index once. Changes wait on the same monitor, so the fill
+    // sees every earlier change and every later one updates the index.
+    private LibraryIndex buildIndex() {
+        synchronized (savedItems) {
+            LibraryIndex current = index;
+            if (current != null) {
+                return current;
+            }
+            current = new LibraryIndex();
+            for (Object item : savedItems.toArray()) {
+                current.add(item);
+            }
+            index = current;
+            return current;
+        }
+    }
     
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package musicstreaming.playlists;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import musicStreaming.media.Media;
+import musicStreaming.media.Song;
+
+/**
+ * Token index behind Library.search.
+ * 
+ * Layout:
+ * - postings: sorted map token -> the media having that token, so all
+ *   tokens starting with a prefix are one contiguous range
+ * - entries: media -> its tokens and save order, for remove() and for
+ *   checking the other words of a query without another map lookup
+ * 
+ * MATCHING RULES (same for the index and for scan()):
+ * - The title (and a song's artist) is split into words at anything that
+ *   is not a letter or digit, lowercased
+ * - Every word of the keyword must be the start of some word of the item:
+ *   "beat" finds "The Beatles", "lov you" finds "Love You Too"
+ * - Results come back in the order the items were saved
+ * 
+ * A search reads the range of its longest (most selective) word, then
+ * filters those candidates by the other words: the cost depends on the
+ * number of matches, not on the library size.
+ * 
+ * Thread safety: searches share a read lock, add/remove take the write lock.
+ * 
+ * @author Arya Ali
+ */
+final class LibraryIndex {
+    
+    private static final class Entry {
+        final String[] tokens;
+        final long order;
+        
+        Entry(String[] tokens, long order) {
+            this.tokens = tokens;
+            this.order = order;
+        }
+    }
+    
+    private final TreeMap<String, Set<Media>> postings = new TreeMap<String, Set<Media>>();
+    private final Map<Media, Entry> entries = new HashMap<Media, Entry>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long nextOrder;
+    
+    // add(): indexes one item; adding an indexed item again does nothing
+    void add(Object item) {
+        if (!(item instanceof Media)) {
+            return;
+        }
+        Media media = (Media) item;
+        lock.writeLock().lock();
+        try {
+            if (entries.containsKey(media)) {
+                return;
+            }
+            String[] tokens = tokenize(media);
+            entries.put(media, new Entry(tokens, nextOrder++));
+            for (String token : tokens) {
+                postings.computeIfAbsent(token, t -> new HashSet<Media>()).add(media);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    void remove(Object item) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(item);
+            if (entry == null) {
+                return;
+            }
+            for (String token : entry.tokens) {
+                Set<Media> holders = postings.get(token);
+                holders.remove(item);
+                if (holders.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    ArrayList<Media> search(String keyword) {
+        String[] words = tokenize(keyword);
+        if (words.length == 0) {
+            return new ArrayList<Media>();
+        }
+        int longest = 0;
+        for (int i = 1; i < words.length; i++) {
+            if (words[i].length() > words[longest].length()) {
+                longest = i;
+            }
+        }
+        String first = words[longest];
+        ArrayList<Media> results = new ArrayList<Media>();
+        lock.readLock().lock();
+        try {
+            // Every token starting with "first" sorts in [first, first + MAX_VALUE)
+            Set<Media> seen = new HashSet<Media>();
+            for (Set<Media> holders : postings.subMap(first, first + Character.MAX_VALUE).values()) {
+                for (Media media : holders) {
+                    if (seen.add(media) && matchesAll(entries.get(media).tokens, words)) {
+                        results.add(media);
+                    }
+                }
+            }
+            results.sort(Comparator.comparingLong(media -> entries.get(media).order));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results;
+    }
+    
+    // Same rules without an index, for small libraries
+    static ArrayList<Media> scan(Collection<?> items, String keyword) {
+        ArrayList<Media> results = new ArrayList<Media>();
+        String[] words = tokenize(keyword);
+        if (words.length == 0) {
+            return results;
+        }
+        for (Object item : items) {
+            if (item instanceof Media && matchesAll(tokenize((Media) item), words)) {
+                results.add((Media) item);
+            }
+        }
+        return results;
+    }
+    
+    private static boolean matchesAll(String[] tokens, String[] words) {
+        for (String word : words) {
+            boolean found = false;
+            for (String token : tokens) {
+                if (token.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static String[] tokenize(Media media) {
+        String text = media.getTitle() == null ? "" : media.getTitle();
+        if (media instanceof Song && ((Song) media).getArtist() != null) {
+            text = text + " " + ((Song) media).getArtist();
+        }
+        return tokenize(text);
+    }
+    
+    // Distinct lowercase words of the text
+    static String[] tokenize(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        ArrayList<String> tokens = new ArrayList<String>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = text.substring(start, i).toLowerCase();
+                if (!tokens.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+}
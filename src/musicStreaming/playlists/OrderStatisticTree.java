@@ -0,0 +1,487 @@
+package musicstreaming.playlists;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent indexed sequence of distinct items, used by Playlist.
+ * 
+ * Structure:
+ * - A treap (randomized balanced binary search tree) ordered by a long
+ *   "order key" per item; every node also stores its subtree size, so the
+ *   i-th item and the position of a key are found in O(log n)
+ * - A side hash (item -> order key) for O(1) contains and for finding an
+ *   item's node in O(log n) when removing it by value
+ * - New keys are picked between the neighbours' keys; when two neighbours
+ *   have no gap left, all keys are spread out again (rare, O(n))
+ * 
+ * Concurrency:
+ * - Nodes are immutable; every change builds new nodes along one path
+ *   (O(log n)) and publishes a new root through a volatile field
+ * - Readers and iterators never lock and always see one consistent version
+ * - Writers are serialized per sequence by a small lock
+ * 
+ * Operation costs: add/insertAt/removeAt/remove/move/get/indexOf O(log n),
+ * contains O(1), iteration over any range O(log n + length), no copying;
+ * addAll of m items O(m + log n) (builds a balanced subtree and merges it).
+ * 
+ * @author Arya Ali
+ * @param <T> the type of items
+ */
+class OrderStatisticTree<T> implements Iterable<T> {
+    
+    // WHY 2^20: ~20 inserts at the same spot before keys must be spread out
+    private static final long GAP = 1L << 20;
+    
+    private static final class Node<T> {
+        final T item;
+        final long key;
+        final int priority;
+        final int size;
+        final Node<T> left;
+        final Node<T> right;
+        
+        Node(T item, long key, int priority, Node<T> left, Node<T> right) {
+            this.item = item;
+            this.key = key;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+        
+        Node<T> with(Node<T> newLeft, Node<T> newRight) {
+            return new Node<T>(item, key, priority, newLeft, newRight);
+        }
+    }
+    
+    private final ConcurrentHashMap<T, Long> keys;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Node<T> root;
+    
+    OrderStatisticTree() {
+        this.keys = new ConcurrentHashMap<T, Long>();
+    }
+    
+    // Sized for expectedSize items: bulk loads skip the rehashing steps
+    OrderStatisticTree(int expectedSize) {
+        this.keys = new ConcurrentHashMap<T, Long>(Math.max(16, expectedSize));
+    }
+    
+    // ---------------------------------------------------------------- reads
+    
+    int size() {
+        return size(root);
+    }
+    
+    boolean contains(Object item) {
+        return item != null && keys.containsKey(item);
+    }
+    
+    T get(int index) {
+        Node<T> node = root;
+        checkIndex(index, size(node));
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.item;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+    
+    int indexOf(Object item) {
+        Long key = item == null ? null : keys.get(item);
+        if (key == null) {
+            return -1;
+        }
+        return rank(root, key);
+    }
+    
+    @Override
+    public Iterator<T> iterator() {
+        Node<T> snapshot = root;
+        return new RangeIterator<T>(snapshot, 0, size(snapshot));
+    }
+    
+    Iterator<T> iterator(int from, int to) {
+        Node<T> snapshot = root;
+        if (from < 0 || to > size(snapshot) || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + ".." + to + ", size " + size(snapshot));
+        }
+        return new RangeIterator<T>(snapshot, from, to);
+    }
+    
+    Object[] toArray() {
+        Node<T> snapshot = root;
+        Object[] result = new Object[size(snapshot)];
+        int i = 0;
+        for (Iterator<T> it = new RangeIterator<T>(snapshot, 0, result.length); it.hasNext(); ) {
+            result[i++] = it.next();
+        }
+        return result;
+    }
+    
+    // Unmodifiable frozen view of the current version: O(1), no copy, later
+    // edits do not show (nodes are immutable)
+    List<T> snapshot() {
+        Node<T> frozen = root;
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                checkIndex(index, OrderStatisticTree.size(frozen));
+                return nodeAt(frozen, index).item;
+            }
+            
+            @Override
+            public int size() {
+                return OrderStatisticTree.size(frozen);
+            }
+            
+            @Override
+            public Iterator<T> iterator() {
+                return new RangeIterator<T>(frozen, 0, OrderStatisticTree.size(frozen));
+            }
+        };
+    }
+    
+    // Unmodifiable live view; get() is O(log n), iteration walks a snapshot
+    List<T> view() {
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return OrderStatisticTree.this.get(index);
+            }
+            
+            @Override
+            public int size() {
+                return OrderStatisticTree.this.size();
+            }
+            
+            @Override
+            public boolean contains(Object o) {
+                return OrderStatisticTree.this.contains(o);
+            }
+            
+            @Override
+            public int indexOf(Object o) {
+                return OrderStatisticTree.this.indexOf(o);
+            }
+            
+            @Override
+            public Iterator<T> iterator() {
+                return OrderStatisticTree.this.iterator();
+            }
+            
+            @Override
+            public Object[] toArray() {
+                return OrderStatisticTree.this.toArray();
+            }
+        };
+    }
+    
+    // --------------------------------------------------------------- writes
+    
+    // insertAt(): false if the item is already present
+    boolean insertAt(int index, T item) {
+        writeLock.lock();
+        try {
+            if (keys.containsKey(item)) {
+                return false;
+            }
+            checkIndex(index, size(root) + 1);
+            insertLocked(index, item);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    boolean add(T item) {
+        writeLock.lock();
+        try {
+            if (keys.containsKey(item)) {
+                return false;
+            }
+            insertLocked(size(root), item);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    // addAll(): appends the items that are not present yet, in O(n + log n)
+    // instead of n separate inserts; returns how many were added
+    int addAll(Iterable<? extends T> items) {
+        writeLock.lock();
+        try {
+            int size = size(root);
+            long firstKey = size == 0 ? 0 : nodeAt(root, size - 1).key + GAP;
+            ArrayList<T> fresh = new ArrayList<T>();
+            for (T item : items) {
+                if (item != null && keys.putIfAbsent(item, firstKey + fresh.size() * GAP) == null) {
+                    fresh.add(item); // Skips nulls, present items and repeats
+                }
+            }
+            root = merge(root, build(fresh, firstKey, 0, fresh.size(), 0));
+            return fresh.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    T removeAt(int index) {
+        writeLock.lock();
+        try {
+            checkIndex(index, size(root));
+            T item = get(index);
+            removeLocked(item);
+            return item;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    boolean remove(Object item) {
+        writeLock.lock();
+        try {
+            return item != null && keys.containsKey(item) && removeLocked(item);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    // move(): item at "from" ends up at index "to" (indices of the result)
+    void move(int from, int to) {
+        writeLock.lock();
+        try {
+            int size = size(root);
+            checkIndex(from, size);
+            checkIndex(to, size);
+            if (from == to) {
+                return;
+            }
+            T item = get(from);
+            removeLocked(item);
+            insertLocked(to, item);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    void clear() {
+        writeLock.lock();
+        try {
+            root = null;
+            keys.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    // Caller holds the lock
+    private void insertLocked(int index, T item) {
+        long key = keyBetween(index);
+        if (key == Long.MIN_VALUE) {
+            respread();
+            key = keyBetween(index);
+        }
+        Node<T> node = new Node<T>(item, key, ThreadLocalRandom.current().nextInt(), null, null);
+        Split<T> parts = split(root, key);
+        root = merge(merge(parts.lower, node), parts.upper);
+        keys.put(item, key);
+    }
+    
+    // Caller holds the lock
+    private boolean removeLocked(Object item) {
+        Long key = keys.remove(item);
+        if (key == null) {
+            return false;
+        }
+        Split<T> lower = split(root, key);
+        Split<T> upper = split(lower.upper, key + 1);
+        root = merge(lower.lower, upper.upper);
+        return true;
+    }
+    
+    // A key strictly between the neighbours of position index, or
+    // Long.MIN_VALUE if there is no room left
+    private long keyBetween(int index) {
+        int size = size(root);
+        if (size == 0) {
+            return 0;
+        }
+        long before = index > 0 ? nodeAt(root, index - 1).key : nodeAt(root, 0).key - 2 * GAP;
+        long after = index < size ? nodeAt(root, index).key : nodeAt(root, size - 1).key + 2 * GAP;
+        // after - before overflows only after ~2^42 end inserts; treat as full
+        if (after - before < 2) {
+            return Long.MIN_VALUE;
+        }
+        return before + (after - before) / 2;
+    }
+    
+    // Gives every item a fresh, evenly spaced key; O(n), rare
+    private void respread() {
+        Object[] items = toArray();
+        Node<T> rebuilt = null;
+        // Keys ascend, so every new node is merged onto the right spine
+        keys.clear();
+        for (int i = 0; i < items.length; i++) {
+            @SuppressWarnings("unchecked")
+            T item = (T) items[i];
+            long key = i * GAP;
+            rebuilt = merge(rebuilt, new Node<T>(item, key, ThreadLocalRandom.current().nextInt(), null, null));
+            keys.put(item, key);
+        }
+        root = rebuilt;
+    }
+    
+    // -------------------------------------------------------- treap helpers
+    
+    // Perfectly balanced treap over items[from, to), item i keyed
+    // firstKey + i * GAP. Priorities fall with depth, so the heap order holds
+    // without drawing random numbers; later random inserts settle around them.
+    private static <T> Node<T> build(List<T> items, long firstKey, int from, int to, int depth) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node<T>(items.get(middle), firstKey + middle * GAP, Integer.MAX_VALUE - depth,
+                build(items, firstKey, from, middle, depth + 1),
+                build(items, firstKey, middle + 1, to, depth + 1));
+    }
+    
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+    
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+    
+    private static <T> Node<T> nodeAt(Node<T> node, int index) {
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+    
+    // Number of keys smaller than key
+    private static <T> int rank(Node<T> node, long key) {
+        int rank = 0;
+        while (node != null) {
+            if (key <= node.key) {
+                if (key == node.key) {
+                    return rank + size(node.left);
+                }
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+    
+    // (keys < key, keys >= key), copying only the nodes on the split path
+    private static <T> Split<T> split(Node<T> node, long key) {
+        if (node == null) {
+            return new Split<T>(null, null);
+        }
+        if (node.key < key) {
+            Split<T> parts = split(node.right, key);
+            return new Split<T>(node.with(node.left, parts.lower), parts.upper);
+        }
+        Split<T> parts = split(node.left, key);
+        return new Split<T>(parts.lower, node.with(parts.upper, node.right));
+    }
+    
+    // The two halves returned by split()
+    private static final class Split<T> {
+        final Node<T> lower;
+        final Node<T> upper;
+        
+        Split(Node<T> lower, Node<T> upper) {
+            this.lower = lower;
+            this.upper = upper;
+        }
+    }
+    
+    // All keys of a are smaller than all keys of b
+    private static <T> Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            return a.with(a.left, merge(a.right, b));
+        }
+        return b.with(merge(a, b.left), b.right);
+    }
+    
+    // In-order iteration of positions [from, to) of one immutable version
+    private static final class RangeIterator<T> implements Iterator<T> {
+        private final ArrayDeque<Node<T>> stack = new ArrayDeque<Node<T>>();
+        private int remaining;
+        
+        RangeIterator(Node<T> root, int from, int to) {
+            this.remaining = to - from;
+            // Descend to the from-th node, stacking the nodes still to visit
+            Node<T> node = root;
+            int index = from;
+            while (node != null && remaining > 0) {
+                int leftSize = size(node.left);
+                if (index < leftSize) {
+                    stack.push(node);
+                    node = node.left;
+                } else if (index == leftSize) {
+                    stack.push(node);
+                    break;
+                } else {
+                    index -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return remaining > 0 && !stack.isEmpty();
+        }
+        
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<T> node = stack.pop();
+            for (Node<T> n = node.right; n != null; n = n.left) {
+                stack.push(n);
+            }
+            remaining--;
+            return node.item;
+        }
+    }
+}
@@ -1,19 +1,38 @@
 package musicstreaming.playlists;
 
-import java.util.ArrayList;
+import musicStreaming.enums.PlaylistOperation;
+import musicStreaming.events.EventLog;
+import java.util.Iterator;
 import java.util.List;
 
 /**
  * Generic playlist class that can hold any type of media.
  * Uses generics to allow type-safe collections of songs or podcasts.
  * 
+ * Items are kept in an OrderStatisticTree (balanced tree indexed by position
+ * plus a hash for membership), so very large playlists support positional
+ * edits - insertAt(), removeAt(), move(), get() - in O(log n), contains()
+ * in O(1), and iteration over any range without copying.
+ * 
+ * Thread safety: reads and iteration never lock and see a consistent
+ * snapshot; each edit (including the duplicate check in add) is atomic.
+ * 
+ * Sync: every edit is also recorded in a versioned PlaylistChangeLog, so a
+ * client that has version V asks changesSince(V) and receives only the
+ * edits made since (or a snapshot if it is too far behind) instead of the
+ * whole playlist on every refresh. Versions are only meaningful to the
+ * Playlist object that issued them: one rebuilt from storage starts at a
+ * new random epoch, so clients of the old one resync by snapshot.
+ * 
  * @author Arya Ali  - Playlist & Generics
  * @param <T> the type of media items in this playlist
  */
  
-public class Playlist<T> {
-    private String name;
-    private List<T> items;
+public class Playlist<T> implements Iterable<T> {
+    private volatile String name;
+    private final OrderStatisticTree<T> items;
+    // Edits lock this monitor so the log version always matches the items
+    private final PlaylistChangeLog<T> changes = new PlaylistChangeLog<>();
     
     /**
      * Constructor for a new empty playlist.
@@ -21,7 +40,18 @@ public class Playlist<T> {
      */
     public Playlist(String name) {
         this.name = name;
-        this.items = new ArrayList<>();
+        this.items = new OrderStatisticTree<>();
+    }
+    
+    /**
+     * Constructor for a playlist about to be filled with about expectedSize
+     * items (e.g. when loading a stored playlist).
+     * @param name the playlist name
+     * @param expectedSize how many items it will hold
+     */
+    public Playlist(String name, int expectedSize) {
+        this.name = name;
+        this.items = new OrderStatisticTree<>(expectedSize);
     }
     
     
@@ -40,7 +70,10 @@ public class Playlist<T> {
      * @param name the new name
      */
     public void setName(String name) {
-        this.name= name;
+        synchronized (changes) {
+            this.name= name;
+            changes.record(PlaylistOperation.RENAME, -1, -1, null, name, items.size());
+        }
     }
     
     
@@ -64,36 +97,225 @@ public boolean contains(T item) {
      */
     public boolean add(T item) {
     if (item == null) {
-        System.out.println("Cannot add null item to playlist '" + name + "'");
+        EventLog.warn("Playlist", "Cannot add null item to playlist '{}'", name);
         return false;
     }
     
-    if (items.contains(item)) {
-        System.out.println("Item already exists in playlist '" + name + "'");
-        return false;
+    synchronized (changes) {
+        int index = items.size();
+        if (!items.add(item)) {
+            EventLog.warn("Playlist", "Item already exists in playlist '{}'", name);
+            return false;
+        }
+        changes.record(PlaylistOperation.INSERT, index, -1, item, null, index + 1);
     }
     
-    items.add(item);
-    System.out.println("Added to playlist '" + name );
+    EventLog.info("Playlist", "Added to playlist '{}'", name);
     return true;
 }    
     
     
+    /**
+     * method addAll(): Appends many items at once (e.g. loading a stored
+     * playlist) in O(n) instead of one insert per item. Null and duplicate
+     * items are skipped.
+     * 
+     * @param newItems the items to append, in order
+     * @return how many items were added
+     */
+    public int addAll(Iterable<? extends T> newItems) {
+        int added;
+        synchronized (changes) {
+            added = items.addAll(newItems);
+            if (added > 0) {
+                changes.reset(); // Too big to log: clients resync by snapshot
+            }
+        }
+        EventLog.info("Playlist", "Added {} items to playlist '{}'", added, name);
+        return added;
+    }
+    
+    
+    /**
+     * method insertAt(): Inserts an item at a position, shifting later items.
+     * 
+     * @param index position of the new item (0 = first, size() = last)
+     * @param item the item to insert
+     * @return false if item is null or already in the playlist
+     * @throws IndexOutOfBoundsException if index is not in 0..size()
+     */
+    public boolean insertAt(int index, T item) {
+        if (item == null) {
+            EventLog.warn("Playlist", "Cannot add null item to playlist '{}'", name);
+            return false;
+        }
+        synchronized (changes) {
+            if (!items.insertAt(index, item)) {
+                EventLog.warn("Playlist", "Item already exists in playlist '{}'", name);
+                return false;
+            }
+            changes.record(PlaylistOperation.INSERT, index, -1, item, null, items.size());
+        }
+        EventLog.info("Playlist", "Added to playlist '{}' at position {}", name, index + 1);
+        return true;
+    }
+    
+    
     /**
      * method remove()
      * @param item removes item from the playlist
      */
     public void remove(T item) {
-        items.remove(item);
-        System.out.println("Removed from playlist '" + name + "'");
+        int index;
+        synchronized (changes) {
+            index = items.indexOf(item);
+            if (index >= 0) {
+                items.removeAt(index);
+                changes.record(PlaylistOperation.REMOVE, index, -1, item, null, items.size());
+            }
+        }
+        if (index >= 0) {
+            EventLog.info("Playlist", "Removed from playlist '{}'", name);
+        }
+    }
+    
+    
+    /**
+     * method removeAt(): Removes the item at a position, shifting later items.
+     * 
+     * @param index position of the item to remove
+     * @return the removed item
+     * @throws IndexOutOfBoundsException if index is not in 0..size()-1
+     */
+    public T removeAt(int index) {
+        T removed;
+        synchronized (changes) {
+            removed = items.removeAt(index);
+            changes.record(PlaylistOperation.REMOVE, index, -1, removed, null, items.size());
+        }
+        EventLog.info("Playlist", "Removed from playlist '{}' at position {}", name, index + 1);
+        return removed;
+    }
+    
+    
+    /**
+     * method move(): Moves an item to a new position (drag and drop).
+     * Afterwards the item is at index "to"; items in between shift by one.
+     * 
+     * @param from current position of the item
+     * @param to new position of the item
+     * @throws IndexOutOfBoundsException if either index is not in 0..size()-1
+     */
+    public void move(int from, int to) {
+        synchronized (changes) {
+            items.move(from, to);
+            if (from != to) {
+                changes.record(PlaylistOperation.MOVE, from, to, null, null, items.size());
+            }
+        }
+    }
+    
+    
+    /**
+     * method getVersion(): the version changes so far have brought the
+     * playlist to; a client stores it and passes it to changesSince() later.
+     * @return the current version; opaque, and never reused by another
+     *         Playlist object (e.g. the same playlist loaded again)
+     */
+    public long getVersion() {
+        synchronized (changes) {
+            return changes.getVersion();
+        }
+    }
+    
+    
+    /**
+     * method changesSince(): what a client holding version fromVersion must
+     * apply to catch up. Costs O(number of edits), not O(playlist size);
+     * a client too far behind, new (pass -1) or holding a version of an
+     * earlier incarnation of this playlist gets an O(1) snapshot.
+     * 
+     * @param fromVersion the version the client has
+     * @return the edits since then, or a snapshot
+     */
+    public PlaylistDelta<T> changesSince(long fromVersion) {
+        synchronized (changes) {
+            long version = changes.getVersion();
+            List<PlaylistChange<T>> edits = changes.since(fromVersion);
+            if (edits != null) {
+                return new PlaylistDelta<>(fromVersion, version, edits, null, null);
+            }
+            return new PlaylistDelta<>(fromVersion, version, null,
+                    items.snapshot(), name);
+        }
+    }
+    
+    
+    /**
+     * method get(): to
+     * @param index position in the playlist (0-based)
+     * @return the item at that position
+     * @throws IndexOutOfBoundsException if index is not in 0..size()-1
+     */
+    public T get(int index) {
+        return items.get(index);
+    }
+    
+    
+    /**
+     * method indexOf(): to
+     * @param item the item to look for
+     * @return its position (0-based), or -1 if it is not in the playlist
+     */
+    public int indexOf(T item) {
+        return items.indexOf(item);
     }
     
         /**
          *  method getAll(): to
-         * @return list of all items in the playlist
+         * @return an unmodifiable live view of all items in the playlist. No copy
+         *         is made: get(i) is O(log n), and iteration walks a snapshot
+         *         (no ConcurrentModificationException). Copy it yourself
+         *         (new ArrayList&lt;&gt;(...)) if you need a frozen list.
          */
     public List<T> getItems() {
-        return new ArrayList<>(items); // Return copy for safety
+        return items.view();
+    }
+    
+    /**
+     * method iterator(): iterates the items in playlist order, over a snapshot
+     * taken when it is created; nothing is copied.
+     * 
+     * @return iterator over the items
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return items.iterator();
+    }
+    
+    /**
+     * method shuffle(): plays the playlist in a random order, starting at once.
+     * Nothing is copied or shuffled up front (see ShuffleIterator); items
+     * added while shuffling are still played.
+     * 
+     * @return a new shuffle over this playlist
+     */
+    public ShuffleIterator<T> shuffle() {
+        return new ShuffleIterator<>(items.view());
+    }
+    
+    /**
+     * method iterator(from, to): iterates positions from (inclusive) to
+     * (exclusive), e.g. one screen of a huge playlist. Costs O(log n) to
+     * start, then O(1) per item; nothing is copied.
+     * 
+     * @param from first position
+     * @param to position after the last one
+     * @return iterator over the range
+     * @throws IndexOutOfBoundsException if the range is not within 0..size()
+     */
+    public Iterator<T> iterator(int from, int to) {
+        return items.iterator(from, to);
     }
     
     /**
@@ -111,31 +333,37 @@ public boolean contains(T item) {
  * @return true if the playlist contains no items
  */
 public boolean isEmpty() {
-    return items.isEmpty();
+    return items.size() == 0;
 }
-
+    
 // method displayPlaylist(): displays all items in the playlist to the console
 public void displayPlaylist(){
-        System.out.println("Playlist: '"+name+"' ("+items.size()+"items)");
+        // One snapshot so header and items agree under concurrent edits
+        Object[] snapshot = items.toArray();
+        System.out.println("Playlist: '"+name+"' ("+snapshot.length+"items)");
         System.out.println("--------------------------------------");
     
-    if(items.isEmpty()){
+    if(snapshot.length == 0){
         System.out.println("(empty playlist)");
     }
     else {
-        for (int i = 0; i < items.size(); i++) {
-            System.out.println("  "+(i+1)+". "+items.get(i)); 
+        for (int i = 0; i < snapshot.length; i++) {
+            System.out.println("  "+(i+1)+". "+snapshot[i]); 
         }
     }
     System.out.println("--------------------------------------");
-
+    
     }
-
-
+    
+    
 // method clear(): Clear all items from the playlist.
 public void clear() {
-    int count = items.size();
-    items.clear();
+    int count;
+    synchronized (changes) {
+        count = items.size();
+        items.clear();
+        changes.record(PlaylistOperation.CLEAR, -1, -1, null, null, 0);
+    }
     System.out.println("Cleared " + count + " items from playlist '" + name + "'");
 }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package musicstreaming.playlists;
+
+import musicStreaming.enums.PlaylistOperation;
+
+/**
+ * One edit of a playlist, as sent to syncing clients.
+ * 
+ * Fields used per operation:
+ * - INSERT: index, item
+ * - REMOVE: index, item (the item that was there)
+ * - MOVE:   index (from), toIndex
+ * - RENAME: name
+ * - CLEAR:  nothing
+ * 
+ * Immutable.
+ * 
+ * @author Arya Ali
+ * @param <T> the type of media items in the playlist
+ */
+public final class PlaylistChange<T> {
+    private final long version;
+    private final PlaylistOperation operation;
+    private final int index;
+    private final int toIndex;
+    private final T item;
+    private final String name;
+    
+    PlaylistChange(long version, PlaylistOperation operation, int index, int toIndex, T item, String name) {
+        this.version = version;
+        this.operation = operation;
+        this.index = index;
+        this.toIndex = toIndex;
+        this.item = item;
+        this.name = name;
+    }
+    
+    /**
+     * method getVersion(): to
+     * @return the playlist version this edit produced
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * method getOperation(): to
+     * @return what kind of edit this is
+     */
+    public PlaylistOperation getOperation() {
+        return operation;
+    }
+    
+    /**
+     * method getIndex(): to
+     * @return the position inserted at, removed from or moved from; -1 if unused
+     */
+    public int getIndex() {
+        return index;
+    }
+    
+    /**
+     * method getToIndex(): to
+     * @return the position moved to; -1 if unused
+     */
+    public int getToIndex() {
+        return toIndex;
+    }
+    
+    /**
+     * method getItem(): to
+     * @return the inserted or removed item; null if unused
+     */
+    public T getItem() {
+        return item;
+    }
+    
+    /**
+     * method getName(): to
+     * @return the new name for RENAME; null otherwise
+     */
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public String toString() {
+        return "v" + version + " " + operation
+                + (index >= 0 ? " @" + index : "")
+                + (toIndex >= 0 ? " -> " + toIndex : "")
+                + (item != null ? " " + item : "")
+                + (name != null ? " '" + name + "'" : "");
+    }
+}
@@ -0,0 +1,76 @@
+package musicstreaming.playlists;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import musicStreaming.enums.PlaylistOperation;
+
+/**
+ * Versioned log of a playlist's edits, used by Playlist.changesSince.
+ * 
+ * - Every edit gets the next version number and is appended
+ * - The log keeps the newest edits only: once it is longer than the
+ *   playlist itself (or MIN_RETAINED), the older half is dropped. A client
+ *   behind that point gets a snapshot, which is then no bigger than the
+ *   edits would have been
+ * - Bulk changes (addAll) reset the log: everyone syncs by snapshot
+ * - Versions are not stored with the playlist, so a playlist loaded back
+ *   from storage starts a new log. Each log therefore starts at a random
+ *   epoch (epoch << 32, then + 1 per edit): a version handed out by an
+ *   earlier incarnation of the playlist is outside this log's range and
+ *   gets a snapshot instead of wrong edits
+ * 
+ * Memory is O(playlist size); a delta costs O(number of edits in it).
+ * 
+ * Not thread-safe: Playlist holds the log's monitor while it edits and
+ * records, so the version always matches the items.
+ * 
+ * @author Arya Ali
+ * @param <T> the type of media items in the playlist
+ */
+final class PlaylistChangeLog<T> {
+    private static final int MIN_RETAINED = 64;
+    
+    private final ArrayList<PlaylistChange<T>> changes = new ArrayList<>();
+    private long baseVersion; // version before the oldest retained edit
+    private long version;
+    
+    PlaylistChangeLog() {
+        // Epoch in [1, 2^30): versions stay positive, and -1 or 0 from a
+        // client is never a version of any log
+        version = (long) ThreadLocalRandom.current().nextInt(1, 1 << 30) << 32;
+        baseVersion = version;
+    }
+    
+    // record(): appends one edit made to a playlist now holding playlistSize items
+    void record(PlaylistOperation operation, int index, int toIndex, T item, String name, int playlistSize) {
+        version++;
+        changes.add(new PlaylistChange<T>(version, operation, index, toIndex, item, name));
+        if (changes.size() > Math.max(MIN_RETAINED, playlistSize)) {
+            int drop = changes.size() / 2;
+            changes.subList(0, drop).clear();
+            baseVersion += drop;
+        }
+    }
+    
+    // reset(): a change too big to log; the new version is only reachable by snapshot
+    void reset() {
+        version++;
+        changes.clear();
+        baseVersion = version;
+    }
+    
+    long getVersion() {
+        return version;
+    }
+    
+    // since(): edits after fromVersion, or null if only a snapshot can help
+    List<PlaylistChange<T>> since(long fromVersion) {
+        if (fromVersion < baseVersion || fromVersion > version) {
+            return null;
+        }
+        int from = (int) (fromVersion - baseVersion);
+        return Collections.unmodifiableList(new ArrayList<>(changes.subList(from, changes.size())));
+    }
+}
@@ -0,0 +1,81 @@
+package musicstreaming.playlists;
+
+import java.util.List;
+
+/**
+ * Answer to "what changed in this playlist since version V".
+ * 
+ * Normally a list of edits (getChanges()) to replay in order. If the
+ * client's version is too old (the log was compacted past it) or unknown
+ * (e.g. issued before the playlist was reloaded from storage), it is a
+ * snapshot instead: the whole playlist as of getVersion().
+ * A client that is up to date gets an empty list of changes.
+ * 
+ * Immutable; the snapshot is an O(1) frozen view, not a copy.
+ * 
+ * @author Arya Ali
+ * @param <T> the type of media items in the playlist
+ */
+public final class PlaylistDelta<T> {
+    private final long fromVersion;
+    private final long version;
+    private final List<PlaylistChange<T>> changes; // null for a snapshot
+    private final List<T> items;                   // null unless a snapshot
+    private final String name;                     // null unless a snapshot
+    
+    PlaylistDelta(long fromVersion, long version, List<PlaylistChange<T>> changes, List<T> items, String name) {
+        this.fromVersion = fromVersion;
+        this.version = version;
+        this.changes = changes;
+        this.items = items;
+        this.name = name;
+    }
+    
+    /**
+     * method getFromVersion(): to
+     * @return the version the client asked from
+     */
+    public long getFromVersion() {
+        return fromVersion;
+    }
+    
+    /**
+     * method getVersion(): to
+     * @return the version the client has after applying this delta
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * method isSnapshot(): to
+     * @return true if this is the full playlist instead of a list of edits
+     */
+    public boolean isSnapshot() {
+        return changes == null;
+    }
+    
+    /**
+     * method getChanges(): to
+     * @return the edits to replay in order (unmodifiable); null for a snapshot
+     */
+    public List<PlaylistChange<T>> getChanges() {
+        return changes;
+    }
+    
+    /**
+     * method getItems(): to
+     * @return all items as of getVersion() (unmodifiable); null unless a snapshot
+     */
+    public List<T> getItems() {
+        return items;
+    }
+    
+    /**
+     * method getName(): to
+     * @return the playlist name as of getVersion(); null unless a snapshot
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,121 @@
+package musicstreaming.playlists;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logoot-style position of one item in a CollaborativePlaylist.
+ * 
+ * A position is a path of identifiers (digit, replica, sequence), compared
+ * level by level (digit first, then replica, then sequence; a shorter path
+ * that is a prefix of a longer one comes first). Between any two positions
+ * there is always room for another, and the last identifier carries the
+ * creating replica and its operation number, so positions are unique
+ * without asking anybody.
+ * 
+ * Because an item's place depends only on its own position, never on its
+ * neighbours, removed items need no placeholder to keep the order: this is
+ * what lets CollaborativePlaylist drop deletions for good.
+ * 
+ * Immutable.
+ * 
+ * @author Arya Ali
+ */
+final class SequencePosition implements Comparable<SequencePosition> {
+    
+    private static final int BASE = 1 << 16;   // Digits per level
+    private static final int BOUNDARY = 64;     // Max step from the left neighbour
+    
+    // Triples: digit, replica, sequence for each level
+    private final int[] ids;
+    
+    private SequencePosition(int[] ids) {
+        this.ids = ids;
+    }
+    
+    int depth() {
+        return ids.length / 3;
+    }
+    
+    /**
+     * A new position strictly between p and q (null = start / end).
+     * Steps at most BOUNDARY past p, so appends stay short for a long time.
+     */
+    static SequencePosition between(SequencePosition p, SequencePosition q, int replica, int sequence) {
+        int pDepth = p == null ? 0 : p.depth();
+        boolean unbounded = q == null; // Once our prefix is below q's, q no longer limits us
+        int[] out = new int[3 * (pDepth + 1)];
+        for (int depth = 0; ; depth++) {
+            if (3 * depth + 3 > out.length) {
+                out = Arrays.copyOf(out, out.length + 3);
+            }
+            int lo = depth < pDepth ? p.ids[3 * depth] : 0;
+            int hi = unbounded ? BASE : q.ids[3 * depth]; // q is longer than the common prefix
+            if (hi - lo > 1) {
+                int step = 1 + ThreadLocalRandom.current().nextInt(Math.min(hi - lo - 1, BOUNDARY));
+                set(out, depth, lo + step, replica, sequence);
+                return new SequencePosition(Arrays.copyOf(out, 3 * depth + 3));
+            }
+            // No room at this level: keep an existing identifier and go deeper
+            if (depth < pDepth) {
+                System.arraycopy(p.ids, 3 * depth, out, 3 * depth, 3);
+            } else if (!unbounded && hi == 0) {
+                System.arraycopy(q.ids, 3 * depth, out, 3 * depth, 3); // Cannot go below q's 0
+            } else {
+                set(out, depth, lo, replica, sequence);
+            }
+            if (!unbounded && compareLevel(out, depth, q.ids) < 0) {
+                unbounded = true;
+            }
+        }
+    }
+    
+    @Override
+    public int compareTo(SequencePosition other) {
+        int levels = Math.min(depth(), other.depth());
+        for (int depth = 0; depth < levels; depth++) {
+            int c = compareLevel(ids, depth, other.ids);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(depth(), other.depth());
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SequencePosition && Arrays.equals(ids, ((SequencePosition) o).ids);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ids);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("<");
+        for (int depth = 0; depth < depth(); depth++) {
+            text.append(depth == 0 ? "" : ".").append(ids[3 * depth]);
+        }
+        return text.append('>').toString();
+    }
+    
+    private static void set(int[] ids, int depth, int digit, int replica, int sequence) {
+        ids[3 * depth] = digit;
+        ids[3 * depth + 1] = replica;
+        ids[3 * depth + 2] = sequence;
+    }
+    
+    private static int compareLevel(int[] a, int depth, int[] b) {
+        int i = 3 * depth;
+        int c = Integer.compare(a[i], b[i]);
+        if (c == 0) {
+            c = Integer.compare(a[i + 1], b[i + 1]);
+        }
+        if (c == 0) {
+            c = Integer.compare(a[i + 2], b[i + 2]);
+        }
+        return c;
+    }
+}
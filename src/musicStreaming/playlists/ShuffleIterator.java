@@ -0,0 +1,266 @@
+package musicstreaming.playlists;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lazy shuffle over a playlist or library: plays every item once in a
+ * pseudo-random order without copying or shuffling the list up front.
+ * 
+ * How it works:
+ * - Step s of the shuffle plays list position perm(s), where perm is a
+ *   random permutation of 0..n-1 computed on demand by a small Feistel
+ *   network (4 rounds on the bits of s) with "cycle walking": results
+ *   outside 0..n-1 are permuted again until they land inside
+ * - Nothing is stored per item: memory is O(1) and the first track starts
+ *   immediately; each step costs O(1) expected plus one list get()
+ * - Because perm(s) is a pure function, the iterator can move back
+ *   (previous) or jump to any step (seek) and replay the same order
+ * 
+ * Changes during the shuffle:
+ * - Items added (at the end, as add() does) are not lost: when the current
+ *   order runs out, the new tail gets its own shuffled "round"
+ * - Positions that no longer exist because items were removed are skipped.
+ *   Removals shift later items, so an item may then be skipped or repeated
+ * 
+ * Used through Playlist.shuffle() and Library.shuffle(). Step numbers
+ * (nextIndex/previousIndex/seek) count shuffle steps, not list positions.
+ * Not thread-safe: each listener/device uses its own iterator.
+ * 
+ * @author Arya Ali
+ * @param <T> the type of items
+ */
+public class ShuffleIterator<T> implements ListIterator<T> {
+    
+    private static final int ROUNDS = 4;
+    private static final int MIN_HALF_BITS = 1;
+    
+    private final List<T> items; // live view, read with get(i)
+    private final long seed;
+    
+    // Rounds: round r shuffles list positions [base[r], base[r] + length[r])
+    // at steps [start[r], start[r] + length[r]); normally there is just one
+    private int[] start = new int[1];
+    private int[] base = new int[1];
+    private int[] length = new int[1];
+    private int rounds;
+    private int totalSteps;
+    
+    private int cursor; // next step to play
+    
+    /**
+     * Constructor: shuffle with a random order.
+     * @param items live view of the items (e.g. Playlist.getItems())
+     */
+    public ShuffleIterator(List<T> items) {
+        this(items, ThreadLocalRandom.current().nextLong());
+    }
+    
+    /**
+     * Constructor: shuffle with a reproducible order.
+     * @param items live view of the items
+     * @param seed the same seed over the same list gives the same order
+     */
+    public ShuffleIterator(List<T> items, long seed) {
+        this.items = items;
+        this.seed = seed;
+        extend();
+    }
+    
+    // ------------------------------------------------------------- ListIterator
+    
+    @Override
+    public boolean hasNext() {
+        return findForward(cursor) >= 0;
+    }
+    
+    @Override
+    public T next() {
+        for (int step = findForward(cursor); step >= 0; step = findForward(step + 1)) {
+            T item = fetch(step);
+            if (item != null) {
+                cursor = step + 1;
+                return item;
+            }
+        }
+        throw new NoSuchElementException();
+    }
+    
+    @Override
+    public boolean hasPrevious() {
+        return findBackward(cursor - 1) >= 0;
+    }
+    
+    @Override
+    public T previous() {
+        for (int step = findBackward(cursor - 1); step >= 0; step = findBackward(step - 1)) {
+            T item = fetch(step);
+            if (item != null) {
+                cursor = step;
+                return item;
+            }
+        }
+        throw new NoSuchElementException();
+    }
+    
+    @Override
+    public int nextIndex() {
+        return cursor;
+    }
+    
+    @Override
+    public int previousIndex() {
+        return cursor - 1;
+    }
+    
+    /**
+     * method seek(): jumps to a step; next() then plays that step.
+     * @param step 0 = start of the shuffle, up to length()
+     * @throws IndexOutOfBoundsException if step is outside 0..length()
+     */
+    public void seek(int step) {
+        if (step > totalSteps) {
+            extend();
+        }
+        if (step < 0 || step > totalSteps) {
+            throw new IndexOutOfBoundsException("Step " + step + ", length " + totalSteps);
+        }
+        cursor = step;
+    }
+    
+    /**
+     * method length(): to
+     * @return number of steps planned so far (grows when items are added)
+     */
+    public int length() {
+        return totalSteps;
+    }
+    
+    /**
+     * method positionAt(): list position played at a step.
+     * @param step a step in 0..length()-1
+     * @return the list position (may be past the end if items were removed)
+     */
+    public int positionAt(int step) {
+        if (step < 0 || step >= totalSteps) {
+            throw new IndexOutOfBoundsException("Step " + step + ", length " + totalSteps);
+        }
+        int r = roundOf(step);
+        return base[r] + permute(step - start[r], length[r], mix(seed + r * 0x9E3779B97F4A7C15L));
+    }
+    
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Shuffle is read-only");
+    }
+    
+    @Override
+    public void set(T item) {
+        throw new UnsupportedOperationException("Shuffle is read-only");
+    }
+    
+    @Override
+    public void add(T item) {
+        throw new UnsupportedOperationException("Shuffle is read-only");
+    }
+    
+    // ------------------------------------------------------------------ helpers
+    
+    // First step >= from whose position still exists, or -1
+    private int findForward(int from) {
+        int size = items.size();
+        for (int step = from; ; step++) {
+            if (step >= totalSteps && !extend()) {
+                return -1;
+            }
+            if (positionAt(step) < size) {
+                return step;
+            }
+        }
+    }
+    
+    // Last step <= from whose position still exists, or -1
+    private int findBackward(int from) {
+        int size = items.size();
+        for (int step = Math.min(from, totalSteps - 1); step >= 0; step--) {
+            if (positionAt(step) < size) {
+                return step;
+            }
+        }
+        return -1;
+    }
+    
+    // Item at a step, or null if it was removed concurrently
+    private T fetch(int step) {
+        try {
+            return items.get(positionAt(step));
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+    
+    // Adds a round for items appended after the last round; false if none
+    private boolean extend() {
+        int covered = rounds == 0 ? 0 : base[rounds - 1] + length[rounds - 1];
+        int size = items.size();
+        if (size <= covered) {
+            return false;
+        }
+        if (rounds == start.length) {
+            start = Arrays.copyOf(start, rounds * 2);
+            base = Arrays.copyOf(base, rounds * 2);
+            length = Arrays.copyOf(length, rounds * 2);
+        }
+        start[rounds] = totalSteps;
+        base[rounds] = covered;
+        length[rounds] = size - covered;
+        rounds++;
+        totalSteps += size - covered;
+        return true;
+    }
+    
+    // Round containing a step: O(1) for the usual single round
+    private int roundOf(int step) {
+        int lo = 0;
+        int hi = rounds - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (start[mid] <= step) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+    
+    // Bijection on 0..n-1: Feistel network on the smallest even number of
+    // bits covering n (domain < 4n), cycle-walking out-of-range values
+    static int permute(int index, int n, long key) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(n - 1, 1));
+        int halfBits = Math.max(MIN_HALF_BITS, (bits + 1) / 2);
+        int mask = (1 << halfBits) - 1;
+        int value = index;
+        do {
+            int left = value >>> halfBits;
+            int right = value & mask;
+            for (int round = 0; round < ROUNDS; round++) {
+                int next = left ^ ((int) mix(key + round * 0xBF58476D1CE4E5B9L + right) & mask);
+                left = right;
+                right = next;
+            }
+            value = (left << halfBits) | right;
+        } while (value >= n);
+        return value;
+    }
+    
+    // SplitMix64 finalizer: a cheap, well-mixed round function
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
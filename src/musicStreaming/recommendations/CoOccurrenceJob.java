@@ -0,0 +1,340 @@
+package musicStreaming.recommendations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import musicStreaming.media.Media;
+import musicStreaming.media.Song;
+import musicstreaming.playlists.Library;
+import musicstreaming.playlists.Playlist;
+import musicstreaming.users.User;
+
+/**
+ * One run of the item-to-item batch job: users in, NeighborTable out.
+ * 
+ * A "basket" is one library or one playlist. Two songs co-occur once for
+ * every basket holding both; their similarity is the cosine
+ * co / sqrt(baskets(a) * baskets(b)), so songs that are everywhere do not
+ * become everybody's neighbor.
+ * 
+ * PHASES (each a fork-join pass split over the pool):
+ * 1. BasketTask: walk users' libraries and playlists, number each song
+ *    once, turn each basket into a sorted int[] of song numbers
+ * 2. (sequential) inverted index: song number -> baskets containing it
+ * 3. RowTask: for a range of songs, compute each song's co-occurrence row
+ *    (postings x baskets) in a dense accumulator, keep only its top-N in
+ *    a small heap and write them to the table. Accumulators belong to
+ *    the job, not to the task: a leaf takes one from the job's free list
+ *    and hands it back when done, so there are never more of them than
+ *    leaves running at once (at most one per thread), instead of two
+ *    int[songs] arrays per leaf. Nothing is left on the pool's threads
+ *    once the job is dropped
+ * 
+ * MEMORY:
+ * The co-occurrence matrix is never stored: one row exists at a time per
+ * worker. The job holds the baskets (one int per saved item), the
+ * postings (the same again), one accumulator per busy thread and the result
+ * (songs x N). Baskets longer than MAX_BASKET are sampled down, which
+ * also bounds the work per row.
+ * 
+ * @author Sima
+ */
+final class CoOccurrenceJob {
+    
+    // A row costs sum(basket sizes) over the song's baskets; huge
+    // libraries are sampled so one user cannot dominate the job
+    private static final int MAX_BASKET = 1000;
+    private static final int USERS_PER_TASK = 256;
+    
+    private final ForkJoinPool pool;
+    private final int width;
+    
+    // Song numbering, filled concurrently by phase 1
+    private final ConcurrentHashMap<String, Integer> numbers = new ConcurrentHashMap<String, Integer>();
+    private final ConcurrentHashMap<Integer, Song> byNumber = new ConcurrentHashMap<Integer, Song>();
+    private final AtomicInteger nextNumber = new AtomicInteger();
+    
+    // Phases 2-3
+    private int[][] baskets;
+    private int[][] postings;
+    private Song[] songs;
+    private int[] neighbors;
+    private float[] scores;
+    
+    // Phase 3: accumulators not in use by a leaf, reused by the next one
+    private final ConcurrentLinkedQueue<Accumulator> accumulators = new ConcurrentLinkedQueue<Accumulator>();
+    
+    CoOccurrenceJob(ForkJoinPool pool, int width) {
+        this.pool = pool;
+        this.width = width;
+    }
+    
+    NeighborTable run(User[] users) {
+        baskets = pool.invoke(new BasketTask(users, 0, users.length)).toArray(new int[0][]);
+        
+        int count = nextNumber.get();
+        songs = new Song[count];
+        for (int i = 0; i < count; i++) {
+            songs[i] = byNumber.get(i);
+        }
+        buildPostings(count);
+        
+        neighbors = new int[count * width];
+        scores = new float[count * width];
+        Arrays.fill(neighbors, -1);
+        int perTask = Math.max(64, count / (pool.getParallelism() * 8) + 1);
+        pool.invoke(new RowTask(0, count, perTask));
+        return new NeighborTable(songs, numbers, width, neighbors, scores);
+    }
+    
+    int getBasketCount() {
+        return baskets == null ? 0 : baskets.length;
+    }
+    
+    // Phase 2: postings[s] = indexes of the baskets holding song s
+    private void buildPostings(int count) {
+        int[] sizes = new int[count];
+        for (int[] basket : baskets) {
+            for (int song : basket) {
+                sizes[song]++;
+            }
+        }
+        postings = new int[count][];
+        for (int s = 0; s < count; s++) {
+            postings[s] = new int[sizes[s]];
+        }
+        Arrays.fill(sizes, 0);
+        for (int b = 0; b < baskets.length; b++) {
+            for (int song : baskets[b]) {
+                postings[song][sizes[song]++] = b;
+            }
+        }
+    }
+    
+    private int number(Song song) {
+        Integer existing = numbers.get(song.getId());
+        if (existing != null) {
+            return existing;
+        }
+        return numbers.computeIfAbsent(song.getId(), id -> {
+            int n = nextNumber.getAndIncrement();
+            byNumber.put(n, song);
+            return n;
+        });
+    }
+    
+    // Songs of one library or playlist as sorted, distinct numbers;
+    // null if fewer than two (nothing can co-occur)
+    private int[] toBasket(Iterable<? extends Media> items) {
+        int[] basket = new int[16];
+        int size = 0;
+        for (Media item : items) {
+            if (item instanceof Song && item.getId() != null) {
+                if (size == basket.length) {
+                    basket = Arrays.copyOf(basket, size * 2);
+                }
+                basket[size++] = number((Song) item);
+            }
+        }
+        if (size > MAX_BASKET) {
+            // Evenly spaced sample: deterministic, keeps the basket's spread
+            int[] sample = new int[MAX_BASKET];
+            for (int i = 0; i < MAX_BASKET; i++) {
+                sample[i] = basket[(int) ((long) i * size / MAX_BASKET)];
+            }
+            basket = sample;
+            size = MAX_BASKET;
+        }
+        Arrays.sort(basket, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || basket[distinct - 1] != basket[i]) {
+                basket[distinct++] = basket[i];
+            }
+        }
+        return distinct < 2 ? null : Arrays.copyOf(basket, distinct);
+    }
+    
+    // Phase 1: users[from, to) -> their baskets
+    // ForkJoinTask is Serializable, but these tasks only live inside run()
+    // and are never serialized, so the serial lint does not apply
+    @SuppressWarnings("serial")
+    private final class BasketTask extends RecursiveTask<List<int[]>> {
+        private final User[] users;
+        private final int from;
+        private final int to;
+        
+        BasketTask(User[] users, int from, int to) {
+            this.users = users;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected List<int[]> compute() {
+            if (to - from > USERS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                BasketTask left = new BasketTask(users, from, middle);
+                left.fork();
+                List<int[]> right = new BasketTask(users, middle, to).compute();
+                List<int[]> result = left.join();
+                result.addAll(right);
+                return result;
+            }
+            List<int[]> result = new ArrayList<int[]>();
+            for (int u = from; u < to; u++) {
+                User user = users[u];
+                // The IfCreated getters: asking a user who saved nothing
+                // for a library would create (and index) an empty one
+                Library<Media> library = user.getLibraryIfCreated();
+                if (library != null) {
+                    addBasket(result, toBasket(library));
+                }
+                List<Playlist<? extends Media>> playlists = user.getPlaylistsIfCreated();
+                if (playlists != null) {
+                    for (Playlist<? extends Media> playlist : playlists) {
+                        addBasket(result, toBasket(playlist));
+                    }
+                }
+            }
+            return result;
+        }
+        
+        private void addBasket(List<int[]> result, int[] basket) {
+            if (basket != null) {
+                result.add(basket);
+            }
+        }
+    }
+    
+    // Phase 3: neighbor rows for songs [from, to); never serialized (see BasketTask)
+    @SuppressWarnings("serial")
+    private final class RowTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int perTask;
+        
+        RowTask(int from, int to, int perTask) {
+            this.from = from;
+            this.to = to;
+            this.perTask = perTask;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > perTask) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(from, middle, perTask), new RowTask(middle, to, perTask));
+                return;
+            }
+            Accumulator accumulator = accumulators.poll();
+            if (accumulator == null) {
+                accumulator = new Accumulator(songs.length, width);
+            }
+            computeRows(accumulator);
+            // Only after a clean run (counts all zero again); handing it
+            // back also publishes those zeros to the next taker
+            accumulators.offer(accumulator);
+        }
+        
+        private void computeRows(Accumulator accumulator) {
+            int[] counts = accumulator.counts; // Co-occurrences with the current song
+            int[] touched = accumulator.touched;
+            int[] heapSongs = accumulator.heapSongs;
+            float[] heapScores = accumulator.heapScores;
+            for (int song = from; song < to; song++) {
+                int touchedCount = 0;
+                for (int b : postings[song]) {
+                    for (int other : baskets[b]) {
+                        if (other != song && counts[other]++ == 0) {
+                            touched[touchedCount++] = other;
+                        }
+                    }
+                }
+                int heapSize = 0;
+                double own = postings[song].length;
+                for (int t = 0; t < touchedCount; t++) {
+                    int other = touched[t];
+                    float score = (float) (counts[other] / Math.sqrt(own * postings[other].length));
+                    counts[other] = 0;
+                    if (heapSize < width) {
+                        heapSongs[heapSize] = other;
+                        heapScores[heapSize] = score;
+                        siftUp(heapSongs, heapScores, heapSize++);
+                    } else if (score > heapScores[0]) {
+                        heapSongs[0] = other;
+                        heapScores[0] = score;
+                        siftDown(heapSongs, heapScores, 0, heapSize);
+                    }
+                }
+                // Pop the min-heap from the back: best neighbor ends up first
+                int base = song * width;
+                for (int k = heapSize - 1; k >= 0; k--) {
+                    neighbors[base + k] = heapSongs[0];
+                    scores[base + k] = heapScores[0];
+                    heapSongs[0] = heapSongs[k];
+                    heapScores[0] = heapScores[k];
+                    siftDown(heapSongs, heapScores, 0, k);
+                }
+            }
+        }
+    }
+    
+    // Scratch of one running RowTask leaf; counts is all zero between two songs
+    private static final class Accumulator {
+        final int[] counts;
+        final int[] touched;
+        final int[] heapSongs;
+        final float[] heapScores;
+        
+        Accumulator(int songCount, int width) {
+            counts = new int[songCount];
+            touched = new int[songCount];
+            heapSongs = new int[width];
+            heapScores = new float[width];
+        }
+    }
+    
+    private static void siftUp(int[] ids, float[] keys, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (keys[parent] <= keys[index]) {
+                break;
+            }
+            swap(ids, keys, parent, index);
+            index = parent;
+        }
+    }
+    
+    private static void siftDown(int[] ids, float[] keys, int index, int size) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[index] <= keys[child]) {
+                break;
+            }
+            swap(ids, keys, index, child);
+            index = child;
+        }
+    }
+    
+    private static void swap(int[] ids, float[] keys, int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+    }
+}
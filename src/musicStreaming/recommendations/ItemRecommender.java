@@ -0,0 +1,122 @@
+package musicStreaming.recommendations;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import musicStreaming.events.EventLog;
+import musicStreaming.media.Media;
+import musicStreaming.media.Song;
+import musicstreaming.users.User;
+
+/**
+ * "More like this": item-to-item song recommendations learned from what
+ * users keep together in their libraries and playlists.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * Libraries and playlists are the only data that links media to each
+ * other, and nothing used it. Songs that many people save or list together
+ * are a strong "you may also like" signal, and it needs no audio analysis.
+ * 
+ * HOW IT WORKS:
+ * - rebuild() is the batch job: it runs a CoOccurrenceJob on a fork-join
+ *   pool over the given users and produces a NeighborTable holding the
+ *   top-N most similar songs of every saved song
+ * - The new table replaces the old one in a single volatile write; lookups
+ *   never wait for a rebuild and never see a half-built table
+ * - moreLikeThis() is a hash probe and an array slice
+ * 
+ * MEMORY:
+ * The full co-occurrence matrix is never materialized (see
+ * CoOccurrenceJob); what stays resident is songs x neighbors ints and
+ * floats.
+ * 
+ * @author Sima
+ */
+public final class ItemRecommender {
+    
+    private static final int DEFAULT_NEIGHBORS = 20;
+    
+    private static ItemRecommender shared;
+    
+    private final int neighbors;
+    private final ForkJoinPool pool;
+    private volatile NeighborTable table = NeighborTable.EMPTY;
+    
+    /**
+     * CONSTRUCTOR: ItemRecommender
+     * 
+     * @param neighbors similar songs kept per song (longest answer)
+     * @param parallelism worker threads used by rebuild()
+     */
+    public ItemRecommender(int neighbors, int parallelism) {
+        if (neighbors <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Neighbors and parallelism must be positive");
+        }
+        this.neighbors = neighbors;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+    
+    /**
+     * METHOD: getShared
+     * 
+     * @return the node-wide recommender
+     */
+    public static synchronized ItemRecommender getShared() {
+        if (shared == null) {
+            shared = new ItemRecommender(DEFAULT_NEIGHBORS, Runtime.getRuntime().availableProcessors());
+        }
+        return shared;
+    }
+    
+    /**
+     * METHOD: rebuild
+     * 
+     * @param users the users whose libraries and playlists are learned from
+     * 
+     * PURPOSE:
+     * Runs the batch job and publishes its result. Blocks until done; call
+     * it from a scheduled job, not from a request. Concurrent rebuilds run
+     * one after the other.
+     */
+    public synchronized void rebuild(Collection<? extends User> users) {
+        long start = System.nanoTime();
+        CoOccurrenceJob job = new CoOccurrenceJob(pool, neighbors);
+        NeighborTable built = job.run(users.toArray(new User[0]));
+        table = built;
+        EventLog.info("Recommender", "Neighbor table rebuilt: {} songs from {} libraries and playlists",
+                built.size(), job.getBasketCount());
+        EventLog.info("Recommender", "Rebuild took {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    /**
+     * METHOD: moreLikeThis
+     * 
+     * @param media the song to find similar songs for
+     * @param n how many (at most the neighbors given at construction)
+     * @return similar songs, most similar first; empty for podcasts and
+     *         songs nobody has saved yet
+     */
+    public List<Song> moreLikeThis(Media media, int n) {
+        return table.lookup(media.getId(), n);
+    }
+    
+    /**
+     * METHOD: similarity
+     * 
+     * @param media a song
+     * @param rank position in its moreLikeThis() answer (0 = most similar)
+     * @return cosine similarity (0..1] of that neighbor, 0 if there is none
+     */
+    public float similarity(Media media, int rank) {
+        return table.score(media.getId(), rank);
+    }
+    
+    /**
+     * GETTER: getSongCount
+     * 
+     * @return songs covered by the current table
+     */
+    public int getSongCount() {
+        return table.size();
+    }
+}
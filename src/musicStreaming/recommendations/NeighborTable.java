@@ -0,0 +1,67 @@
+package musicStreaming.recommendations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import musicStreaming.media.Song;
+
+/**
+ * Precomputed "more like this" answers: the top-N most similar songs of
+ * every song, most similar first.
+ * 
+ * Layout: song i's neighbors are neighbors[i * width .. (i + 1) * width),
+ * as song numbers, padded with -1. Two primitive arrays, no per-entry
+ * objects; a lookup is one hash probe plus an array slice.
+ * 
+ * Immutable once built, so it is shared by all readers without locking.
+ * 
+ * @author Sima
+ */
+final class NeighborTable {
+    
+    static final NeighborTable EMPTY = new NeighborTable(new Song[0], new HashMap<String, Integer>(), 0, new int[0], new float[0]);
+    
+    private final Song[] songs;
+    private final Map<String, Integer> numbers; // Media id -> song number
+    private final int width;
+    private final int[] neighbors;
+    private final float[] scores;
+    
+    NeighborTable(Song[] songs, Map<String, Integer> numbers, int width, int[] neighbors, float[] scores) {
+        this.songs = songs;
+        this.numbers = numbers;
+        this.width = width;
+        this.neighbors = neighbors;
+        this.scores = scores;
+    }
+    
+    // Up to n songs most similar to mediaId; empty if it was never saved
+    List<Song> lookup(String mediaId, int n) {
+        Integer number = numbers.get(mediaId);
+        if (number == null || n <= 0) {
+            return Collections.emptyList();
+        }
+        int base = number * width;
+        int limit = Math.min(n, width);
+        List<Song> result = new ArrayList<Song>(limit);
+        for (int k = 0; k < limit && neighbors[base + k] >= 0; k++) {
+            result.add(songs[neighbors[base + k]]);
+        }
+        return result;
+    }
+    
+    // Similarity (0..1] of the k-th neighbor of mediaId, or 0
+    float score(String mediaId, int k) {
+        Integer number = numbers.get(mediaId);
+        if (number == null || k < 0 || k >= width) {
+            return 0f;
+        }
+        return scores[number * width + k];
+    }
+    
+    int size() {
+        return songs.length;
+    }
+}
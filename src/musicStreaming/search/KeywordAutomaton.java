@@ -0,0 +1,234 @@
+package musicStreaming.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Aho-Corasick automaton that finds many keywords in one pass over a text.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * Checking N keywords against a title with String.contains() reads the title
+ * N times. When a batch job asks thousands of questions against the whole
+ * catalog, that is thousands of full catalog scans. The automaton reads every
+ * character once and reports every keyword that occurs, no matter how many
+ * keywords there are.
+ * 
+ * HOW IT WORKS:
+ * - All keywords are inserted into a trie (one state per prefix)
+ * - Each state gets a failure link: the longest proper suffix of its prefix
+ *   that is also a prefix in the trie
+ * - Each state's output lists every keyword ending there, including those
+ *   inherited through failure links
+ * - Matching follows goto edges, falls back along failure links on a
+ *   mismatch, and reports the outputs of every state it reaches
+ * 
+ * MATCHING RULES:
+ * - Case-insensitive, same as MusicService search: keywords and text are
+ *   both folded one char at a time with Character.toLowerCase (keywords
+ *   when built, text while matching, with no temporary lowercase String per
+ *   title). Both sides fold the same way, independent of the default
+ *   locale and without changing lengths
+ * - Duplicate keywords share one pattern id
+ * - Null or blank keywords never match
+ * 
+ * Instances are immutable after construction and safe to share across threads.
+ * 
+ * @author Member 4
+ * @version 1.0
+ */
+public class KeywordAutomaton {
+    
+    // Per-state arrays, indexed by state number (0 = root)
+    // WHY sorted char arrays for edges: compact, binary-searchable,
+    // and they work for any Unicode alphabet
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] failure;
+    private final int[][] outputs;
+    
+    // Lowercased, de-duplicated keywords; index = pattern id
+    private final List<String> patterns;
+    private final Map<String, Integer> ids;
+    
+    /**
+     * Build the automaton for the given keywords.
+     * 
+     * @param keywords the search terms (null and blank entries are ignored)
+     */
+    public KeywordAutomaton(List<String> keywords) {
+        this.ids = new LinkedHashMap<String, Integer>();
+        for (String keyword : keywords) {
+            if (keyword != null && !keyword.trim().isEmpty()) {
+                String lower = fold(keyword);
+                if (!ids.containsKey(lower)) {
+                    ids.put(lower, ids.size());
+                }
+            }
+        }
+        this.patterns = new ArrayList<String>(ids.keySet());
+        
+        // STEP 1: build the trie with growable per-state child maps
+        List<Map<Character, Integer>> children = new ArrayList<Map<Character, Integer>>();
+        List<List<Integer>> ends = new ArrayList<List<Integer>>();
+        children.add(new HashMap<Character, Integer>());
+        ends.add(new ArrayList<Integer>());
+        for (int id = 0; id < patterns.size(); id++) {
+            String pattern = patterns.get(id);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Character c = pattern.charAt(i);
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(c, next);
+                    children.add(new HashMap<Character, Integer>());
+                    ends.add(new ArrayList<Integer>());
+                }
+                state = next;
+            }
+            ends.get(state).add(id);
+        }
+        
+        // STEP 2: freeze edges into sorted arrays
+        int stateCount = children.size();
+        this.edgeChars = new char[stateCount][];
+        this.edgeTargets = new int[stateCount][];
+        for (int s = 0; s < stateCount; s++) {
+            Map<Character, Integer> map = children.get(s);
+            char[] chars = new char[map.size()];
+            int k = 0;
+            for (Character c : map.keySet()) {
+                chars[k++] = c;
+            }
+            Arrays.sort(chars);
+            int[] targets = new int[chars.length];
+            for (int j = 0; j < chars.length; j++) {
+                targets[j] = map.get(chars[j]);
+            }
+            edgeChars[s] = chars;
+            edgeTargets[s] = targets;
+        }
+        
+        // STEP 3: breadth-first failure links and merged outputs
+        this.failure = new int[stateCount];
+        this.outputs = new int[stateCount][];
+        outputs[0] = toArray(ends.get(0));
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        for (int target : edgeTargets[0]) {
+            failure[target] = 0;
+            outputs[target] = toArray(ends.get(target));
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int j = 0; j < edgeChars[state].length; j++) {
+                char c = edgeChars[state][j];
+                int target = edgeTargets[state][j];
+                int f = failure[state];
+                while (f != 0 && step(f, c) < 0) {
+                    f = failure[f];
+                }
+                int fallback = step(f, c);
+                failure[target] = (fallback < 0 || fallback == target) ? 0 : fallback;
+                outputs[target] = merge(ends.get(target), outputs[failure[target]]);
+                queue.add(target);
+            }
+        }
+    }
+    
+    /**
+     * Report every keyword occurring in the text.
+     * 
+     * A keyword occurring several times is reported several times; callers
+     * that only care about "does it occur" should de-duplicate by pattern id.
+     * 
+     * @param text the text to scan (case-insensitive)
+     * @param onMatch receives the pattern id of each occurrence
+     */
+    public void match(CharSequence text, IntConsumer onMatch) {
+        if (text == null || patterns.isEmpty()) {
+            return;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = step(state, c);
+            while (next < 0 && state != 0) {
+                state = failure[state];
+                next = step(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            for (int id : outputs[state]) {
+                onMatch.accept(id);
+            }
+        }
+    }
+    
+    /**
+     * Get the number of distinct keywords.
+     * 
+     * @return pattern count
+     */
+    public int getPatternCount() {
+        return patterns.size();
+    }
+    
+    /**
+     * Get the lowercased keyword for a pattern id.
+     * 
+     * @param id pattern id as reported by match()
+     * @return the keyword
+     */
+    public String getPattern(int id) {
+        return patterns.get(id);
+    }
+    
+    /**
+     * Look up the id of a keyword.
+     * 
+     * @param keyword the keyword as passed to the constructor
+     * @return its pattern id, or -1 if it is null, blank or unknown
+     */
+    public int idOf(String keyword) {
+        if (keyword == null) {
+            return -1;
+        }
+        Integer id = ids.get(fold(keyword));
+        return id == null ? -1 : id;
+    }
+    
+    // Lowercases exactly as match() does, one char at a time
+    private static String fold(String keyword) {
+        char[] chars = keyword.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+    
+    // Follow a goto edge; -1 if there is none
+    private int step(int state, char c) {
+        int j = Arrays.binarySearch(edgeChars[state], c);
+        return j < 0 ? -1 : edgeTargets[state][j];
+    }
+    
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+    
+    private static int[] merge(List<Integer> own, int[] inherited) {
+        int[] array = Arrays.copyOf(toArray(own), own.size() + inherited.length);
+        System.arraycopy(inherited, 0, array, own.size(), inherited.length);
+        return array;
+    }
+}
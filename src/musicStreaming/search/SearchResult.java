@@ -0,0 +1,85 @@
+package musicStreaming.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import musicStreaming.media.Media;
+
+/**
+ * Immutable result of an asynchronous, deadline-bounded search.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * A plain ArrayList cannot tell the caller whether the scan finished or was
+ * cut short by its deadline. SearchResult carries the matches together with
+ * that completeness flag, so a UI can show "showing first results..." instead
+ * of silently presenting a partial list as the full answer.
+ * 
+ * WHY IMMUTABLE:
+ * - The result is handed across threads (scan thread to caller)
+ * - A copy is taken once at construction, so later scanning cannot change it
+ * 
+ * @author Member 4
+ * @version 1.0
+ */
+public class SearchResult {
+    
+    private final String keyword;
+    private final List<Media> items;
+    private final boolean complete;
+    
+    /**
+     * Constructor copies the matches so the result cannot change afterwards.
+     * 
+     * @param keyword the keyword that was searched for
+     * @param items the matches found (copied)
+     * @param complete true if the whole catalog was scanned, false if the
+     *                 deadline expired first
+     */
+    public SearchResult(String keyword, List<? extends Media> items, boolean complete) {
+        this.keyword = keyword;
+        this.items = Collections.unmodifiableList(new ArrayList<Media>(items));
+        this.complete = complete;
+    }
+    
+    /**
+     * Get the keyword this result belongs to.
+     * 
+     * @return the searched keyword
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+    
+    /**
+     * Get the matching items.
+     * 
+     * @return unmodifiable list of matching media
+     */
+    public List<Media> getItems() {
+        return items;
+    }
+    
+    /**
+     * Check whether the search covered the whole catalog.
+     * 
+     * @return true if complete, false if these are partial results
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    /**
+     * Get the number of matches.
+     * 
+     * @return match count
+     */
+    public int size() {
+        return items.size();
+    }
+    
+    @Override
+    public String toString() {
+        return "Search '" + keyword + "': " + items.size() + " results" +
+               (complete ? "" : " (partial)");
+    }
+}
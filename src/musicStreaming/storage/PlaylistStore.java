@@ -0,0 +1,368 @@
+package musicStreaming.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import musicStreaming.enums.LogLevel;
+import musicStreaming.events.EventLog;
+import musicStreaming.media.Media;
+import musicstreaming.playlists.Library;
+import musicstreaming.playlists.Playlist;
+import musicstreaming.users.User;
+
+/**
+ * Compact on-disk storage of users' playlists and libraries.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * Playlists only lived in User.playlists and were lost on restart. Java
+ * serialization or JSON would repeat every media id string in every
+ * playlist: millions of playlists would take gigabytes and load slowly.
+ * 
+ * FORMAT (one file per user, "userId.pls", all of their playlists):
+ * - int magic "PLS1", varint playlist count
+ * - per playlist: varint name number, varint item count, then the items'
+ *   media numbers as zigzag varint deltas from the previous item
+ * A user's library is stored the same way in "userId.lib" (magic "LIB1",
+ * then its items encoded like one playlist without a name).
+ * Names and media ids are numbers in one shared StringTable
+ * ("strings.dict"), so each id string is stored once for the whole node.
+ * Songs saved from the same album or catalog page get nearby numbers, so
+ * most deltas fit in one or two bytes: a 10k-item playlist is ~10 KB.
+ * 
+ * I/O:
+ * - save() streams the encoding through one 64 KB buffer into a temp file
+ *   of its own, forces it and renames it over the old file (a crash never
+ *   leaves a half-written playlist file, two saves of one user never share
+ *   a temp file); new strings are persisted first
+ * - A user with no playlists (or no library) has no file: save() and
+ *   saveLibrary() delete it instead of creating an empty collection
+ * - load()/restore() read the whole file with one sequential read and
+ *   decode it from memory; items are appended with Playlist.addAll
+ * 
+ * Media numbers are turned back into objects by the resolver given to the
+ * constructor (the catalog); items it no longer knows are dropped.
+ * 
+ * @author Sima
+ */
+public final class PlaylistStore {
+    
+    private static final int MAGIC = 0x504C5331; // "PLS1"
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LIBRARY_MAGIC = 0x4C494231; // "LIB1"
+    private static final String FILE_SUFFIX = ".pls";
+    private static final String LIBRARY_SUFFIX = ".lib";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String TABLE_FILE = "strings.dict";
+    
+    private final Path directory;
+    private final Function<String, ? extends Media> resolver;
+    private final StringTable strings;
+    
+    /**
+     * CONSTRUCTOR: PlaylistStore
+     * 
+     * @param directory where playlist files and the string table live
+     *                  (created if missing)
+     * @param resolver media id -> media (the catalog); may return null
+     * @throws IOException if the directory or string table cannot be opened
+     */
+    public PlaylistStore(Path directory, Function<String, ? extends Media> resolver) throws IOException {
+        this.directory = directory;
+        this.resolver = resolver;
+        Files.createDirectories(directory);
+        this.strings = new StringTable(directory.resolve(TABLE_FILE));
+    }
+    
+    /**
+     * METHOD: save
+     * 
+     * @param user the user whose playlists are written
+     * @throws IOException if writing fails (the previous file is kept)
+     * 
+     * PURPOSE:
+     * Replaces the stored playlists of this user with the current ones.
+     */
+    public void save(User user) throws IOException {
+        Path target = fileFor(user.getUserId(), FILE_SUFFIX);
+        List<Playlist<? extends Media>> current = user.getPlaylistsIfCreated();
+        if (current == null || current.isEmpty()) {
+            Files.deleteIfExists(target); // Do not create an empty playlist list
+            return;
+        }
+        // Snapshot each playlist once: numbering and writing must agree
+        List<Playlist<? extends Media>> playlists = new ArrayList<Playlist<? extends Media>>(current);
+        List<int[]> numbered = new ArrayList<int[]>(playlists.size());
+        int[] names = new int[playlists.size()];
+        for (int p = 0; p < playlists.size(); p++) {
+            Playlist<? extends Media> playlist = playlists.get(p);
+            names[p] = strings.intern(playlist.getName() == null ? "" : playlist.getName());
+            numbered.add(number(playlist, playlist.size()));
+        }
+        strings.persist(); // Before any file can refer to the new numbers
+        
+        Path temp = tempFor(target);
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                buffer.putInt(MAGIC);
+                VarInts.putUnsigned(buffer, playlists.size());
+                for (int p = 0; p < playlists.size(); p++) {
+                    VarInts.putUnsigned(buffer, names[p]);
+                    putItems(out, buffer, numbered.get(p));
+                }
+                drain(out, buffer);
+                out.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp); // Only left over if writing failed
+        }
+    }
+    
+    /**
+     * METHOD: saveLibrary
+     * 
+     * @param user the user whose library is written
+     * @throws IOException if writing fails (the previous file is kept)
+     * 
+     * PURPOSE:
+     * Replaces the stored library of this user with the current one
+     * ("userId.lib": magic "LIB1", then the items encoded like one playlist).
+     */
+    public void saveLibrary(User user) throws IOException {
+        Path target = fileFor(user.getUserId(), LIBRARY_SUFFIX);
+        Library<Media> library = user.getLibraryIfCreated();
+        if (library == null || library.isEmpty()) {
+            Files.deleteIfExists(target); // Do not create a library
+            return;
+        }
+        int[] items = number(library, library.size());
+        strings.persist();
+        
+        Path temp = tempFor(target);
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                buffer.putInt(LIBRARY_MAGIC);
+                putItems(out, buffer, items);
+                drain(out, buffer);
+                out.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp); // Only left over if writing failed
+        }
+    }
+    
+    /**
+     * METHOD: load
+     * 
+     * @param userId the user
+     * @return the stored playlists, in their saved order (empty if none)
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    public List<Playlist<Media>> load(String userId) throws IOException {
+        Path file = fileFor(userId, FILE_SUFFIX);
+        if (!Files.exists(file)) {
+            return new ArrayList<Playlist<Media>>();
+        }
+        ByteBuffer data = readFully(file);
+        if (data.remaining() < 4 || data.getInt() != MAGIC) {
+            throw new IOException("Not a playlist file: " + file);
+        }
+        int count = VarInts.getUnsigned(data);
+        List<Playlist<Media>> playlists = new ArrayList<Playlist<Media>>(count);
+        int missing = 0;
+        for (int p = 0; p < count; p++) {
+            String name = strings.get(VarInts.getUnsigned(data));
+            List<Media> items = new ArrayList<Media>();
+            missing += getItems(data, items);
+            Playlist<Media> playlist = new Playlist<Media>(name, items.size());
+            playlist.addAll(items);
+            playlists.add(playlist);
+        }
+        if (missing > 0) {
+            EventLog.log(LogLevel.WARN, "PlaylistStore", "Dropped {} unknown media from playlists of {}",
+                    missing, userId);
+        }
+        return playlists;
+    }
+    
+    /**
+     * METHOD: restore
+     * 
+     * @param user the user to restore
+     * @return how many playlists were restored
+     * @throws IOException if the file cannot be read or is corrupt
+     * 
+     * PURPOSE:
+     * Bulk loader: reads all of the user's stored playlists in one
+     * sequential read and adds them to getPlaylists() in one step.
+     */
+    public int restore(User user) throws IOException {
+        List<Playlist<Media>> playlists = load(user.getUserId());
+        if (playlists.isEmpty()) {
+            return 0; // Do not create an empty playlist list
+        }
+        user.getPlaylists().addAll(playlists);
+        return playlists.size();
+    }
+    
+    /**
+     * METHOD: loadLibrary
+     * 
+     * @param userId the user
+     * @return the stored library items, in the order they were saved
+     *         (empty if none)
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    public List<Media> loadLibrary(String userId) throws IOException {
+        Path file = fileFor(userId, LIBRARY_SUFFIX);
+        List<Media> items = new ArrayList<Media>();
+        if (!Files.exists(file)) {
+            return items;
+        }
+        ByteBuffer data = readFully(file);
+        if (data.remaining() < 4 || data.getInt() != LIBRARY_MAGIC) {
+            throw new IOException("Not a library file: " + file);
+        }
+        int missing = getItems(data, items);
+        if (missing > 0) {
+            EventLog.log(LogLevel.WARN, "PlaylistStore", "Dropped {} unknown media from library of {}",
+                    missing, userId);
+        }
+        return items;
+    }
+    
+    /**
+     * METHOD: restoreLibrary
+     * 
+     * @param user the user to restore
+     * @return how many items were added to the library
+     * @throws IOException if the file cannot be read or is corrupt
+     * 
+     * PURPOSE:
+     * Bulk loader for the library, like restore() for playlists. A user
+     * with nothing stored keeps a lazily created (absent) library.
+     */
+    public int restoreLibrary(User user) throws IOException {
+        List<Media> items = loadLibrary(user.getUserId());
+        return items.isEmpty() ? 0 : user.getLibrary().addAll(items);
+    }
+    
+    /**
+     * METHOD: delete
+     * 
+     * @param userId the user
+     * @return true if stored playlists or a stored library existed
+     * @throws IOException if a file cannot be removed
+     */
+    public boolean delete(String userId) throws IOException {
+        boolean playlists = Files.deleteIfExists(fileFor(userId, FILE_SUFFIX));
+        return Files.deleteIfExists(fileFor(userId, LIBRARY_SUFFIX)) || playlists;
+    }
+    
+    /**
+     * GETTER: getStringCount
+     * 
+     * @return distinct media ids and names stored so far
+     */
+    public int getStringCount() {
+        return strings.size();
+    }
+    
+    // Media numbers of a playlist or library, in order (items without an
+    // id are skipped)
+    private int[] number(Iterable<? extends Media> source, int sizeHint) {
+        int[] numbers = new int[Math.max(16, sizeHint)];
+        int count = 0;
+        for (Media media : source) {
+            if (media != null && media.getId() != null) {
+                if (count == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, count * 2);
+                }
+                numbers[count++] = strings.intern(media.getId());
+            }
+        }
+        return Arrays.copyOf(numbers, count);
+    }
+    
+    // varint item count, then zigzag varint deltas of the media numbers
+    private static void putItems(FileChannel out, ByteBuffer buffer, int[] items) throws IOException {
+        VarInts.putUnsigned(buffer, items.length);
+        int previous = 0;
+        for (int item : items) {
+            if (buffer.remaining() < 3 * VarInts.MAX_BYTES) {
+                drain(out, buffer);
+            }
+            VarInts.putSigned(buffer, item - previous);
+            previous = item;
+        }
+        if (buffer.remaining() < 3 * VarInts.MAX_BYTES) {
+            drain(out, buffer);
+        }
+    }
+    
+    // Reverse of putItems; returns how many media the resolver did not know
+    private int getItems(ByteBuffer data, List<Media> into) throws IOException {
+        int size = VarInts.getUnsigned(data);
+        int number = 0;
+        int missing = 0;
+        for (int i = 0; i < size; i++) {
+            number += VarInts.getSigned(data);
+            Media media = resolver.apply(strings.get(number));
+            if (media != null) {
+                into.add(media);
+            } else {
+                missing++;
+            }
+        }
+        return missing;
+    }
+    
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    private static ByteBuffer readFully(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Playlist file too large: " + file);
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) size);
+            while (data.hasRemaining() && in.read(data) >= 0) {
+                // One sequential read of the whole file
+            }
+            data.flip();
+            return data;
+        }
+    }
+    
+    // A new, uniquely named temp file next to target: concurrent saves of
+    // one user each write their own
+    private Path tempFor(Path target) throws IOException {
+        return Files.createTempFile(directory, target.getFileName() + ".", TEMP_SUFFIX);
+    }
+    
+    // Ids become file names: refuse anything that could escape the directory
+    private Path fileFor(String userId, String suffix) {
+        if (userId == null || userId.isEmpty() || userId.contains("/") || userId.contains("\\")
+                || userId.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid id for file name: " + userId);
+        }
+        return directory.resolve(userId + suffix);
+    }
+}
@@ -0,0 +1,151 @@
+package musicStreaming.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only string <-> int dictionary shared by every stored playlist:
+ * each media id and playlist name is written once, files refer to it by
+ * number.
+ * 
+ * File: a sequence of [varint byte length][UTF-8 bytes]; a string's number
+ * is its position in the file. New strings are appended by persist(), which
+ * must run before any file that uses their numbers is written. A torn last
+ * entry (crash during persist) is cut off when the table is opened. A
+ * persist() that fails part way counts nothing as written: the next one
+ * writes the same entries again at the same offset and cuts off the rest,
+ * so a string's number never moves.
+ * 
+ * Thread safety: lookups are lock-free; numbering and persisting lock.
+ * 
+ * @author Sima
+ */
+final class StringTable {
+    
+    private final FileChannel file;
+    private final ConcurrentHashMap<String, Integer> numbers = new ConcurrentHashMap<String, Integer>();
+    private volatile String[] strings = new String[1024]; // Grown under "this"
+    private volatile int count;
+    private int persisted; // Guarded by "this"
+    private long length; // Bytes of the persisted entries; guarded by "this"
+    
+    StringTable(Path path) throws IOException {
+        this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+    }
+    
+    // Number of the string, assigning the next one on first use
+    int intern(String value) {
+        Integer existing = numbers.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (this) {
+            existing = numbers.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            return append(value);
+        }
+    }
+    
+    String get(int number) {
+        if (number < 0 || number >= count) {
+            throw new IllegalArgumentException("Unknown string number " + number);
+        }
+        return strings[number];
+    }
+    
+    // Appends the strings numbered since the last call and forces them to disk
+    synchronized void persist() throws IOException {
+        if (persisted == count) {
+            return;
+        }
+        int end = count;
+        long position = length; // Over whatever a failed call left behind
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        for (int i = persisted; i < end; i++) {
+            byte[] bytes = strings[i].getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < bytes.length + VarInts.MAX_BYTES) {
+                position = drain(buffer, position);
+                if (buffer.capacity() < bytes.length + VarInts.MAX_BYTES) {
+                    buffer = ByteBuffer.allocate(bytes.length + VarInts.MAX_BYTES);
+                }
+            }
+            VarInts.putUnsigned(buffer, bytes.length);
+            buffer.put(bytes);
+        }
+        position = drain(buffer, position);
+        file.truncate(position);
+        file.force(false);
+        length = position;
+        persisted = end;
+    }
+    
+    int size() {
+        return count;
+    }
+    
+    void close() throws IOException {
+        file.close();
+    }
+    
+    // Caller holds the lock
+    private int append(String value) {
+        String[] current = strings;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, count * 2);
+        }
+        current[count] = value;
+        strings = current;
+        numbers.put(value, count);
+        return count++;
+    }
+    
+    // Writes the buffer at position; returns the position after it
+    private long drain(ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += file.write(buffer, position);
+        }
+        buffer.clear();
+        return position;
+    }
+    
+    private synchronized void load() throws IOException {
+        long size = file.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("String table too large: " + size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && file.read(buffer, buffer.position()) >= 0) {
+            // Read the whole table in one pass
+        }
+        buffer.flip();
+        int valid = 0;
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            try {
+                int length = VarInts.getUnsigned(buffer);
+                if (length > buffer.remaining()) {
+                    break; // Torn last entry
+                }
+                append(new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8));
+                buffer.position(buffer.position() + length);
+                valid = buffer.position();
+            } catch (IOException torn) {
+                buffer.position(start);
+                break;
+            }
+        }
+        file.truncate(valid);
+        length = valid;
+        persisted = count;
+    }
+}
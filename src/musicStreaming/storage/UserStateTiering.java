@@ -0,0 +1,335 @@
+package musicStreaming.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import musicStreaming.enums.LogLevel;
+import musicStreaming.events.EventLog;
+import musicstreaming.interfaces.UserStateStore;
+import musicstreaming.users.User;
+import musicstreaming.users.UserDirectory;
+
+/**
+ * Hot/cold tiering of user state: recently active users keep their library
+ * and playlists on the heap, idle ones keep them on local disk.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * A materialized User stays on the heap until someone calls release(),
+ * together with everything it saved - tens of thousands of items for a
+ * power user. Most accounts are idle at any moment, so the heap filled up
+ * with state nobody was using, and release() threw that state away.
+ * 
+ * HOW IT WORKS:
+ * - Set as the directory's UserStateStore. Every get() counts as an access
+ *   and a User built by get() gets its stored state back (PlaylistStore
+ *   restoreLibrary/restore: one sequential read per file) before anybody
+ *   can see it
+ * - sweep() releases, through UserDirectory.release(), every user not
+ *   accessed for idleMillis; the directory hands each one to spill(),
+ *   which writes the library and playlists to the PlaylistStore
+ * - If the estimated resident state is still above heapBudgetBytes, the
+ *   least recently accessed users are released too until it fits
+ * - start() runs sweep() on a daemon thread at a fixed period, so the
+ *   budget holds between sweeps up to what was loaded meanwhile
+ * 
+ * HEAP ESTIMATE:
+ * USER_BYTES per resident user plus ITEM_BYTES per library or playlist
+ * entry (see User.getResidentItemCount). Media objects are shared with the
+ * catalog and are not counted.
+ * 
+ * SAFETY:
+ * - A user whose stored state could not be read is never spilled over it:
+ *   its file is kept as it is, and the user stays resident
+ * - A user whose state cannot be written stays resident as well
+ * - As for release() in general, callers should get users from the
+ *   directory per request instead of holding on to User objects
+ * 
+ * Example:
+ *   UserStateTiering tiering = new UserStateTiering(directory, store,
+ *           512L * 1024 * 1024, TimeUnit.MINUTES.toMillis(10));
+ *   directory.setStateStore(tiering);
+ *   tiering.start(TimeUnit.SECONDS.toMillis(30));
+ * 
+ * @author Sima
+ */
+public final class UserStateTiering implements UserStateStore {
+    
+    // Rough heap cost of a materialized User without its collections, and
+    // of one library or playlist entry (set slot or tree node + references)
+    private static final long USER_BYTES = 512;
+    private static final long ITEM_BYTES = 48;
+    
+    private final UserDirectory directory;
+    private final PlaylistStore store;
+    private final long heapBudgetBytes;
+    private final long idleMillis;
+    
+    // One entry per resident user: time of its last access
+    private final ConcurrentHashMap<String, Resident> residents = new ConcurrentHashMap<String, Resident>();
+    // Users whose stored state could not be read; their files are kept
+    private final Set<String> unreadable = ConcurrentHashMap.newKeySet();
+    
+    private final AtomicLong spillCount = new AtomicLong();
+    private final AtomicLong restoreCount = new AtomicLong();
+    private volatile long residentBytes;
+    
+    private ScheduledExecutorService sweeper; // Guarded by "this"
+    
+    /**
+     * CONSTRUCTOR: UserStateTiering
+     * 
+     * @param directory where users are materialized and released
+     * @param store where idle users' libraries and playlists are kept
+     * @param heapBudgetBytes estimated heap allowed for resident user state
+     * @param idleMillis time without access after which a user is spilled
+     */
+    public UserStateTiering(UserDirectory directory, PlaylistStore store, long heapBudgetBytes, long idleMillis) {
+        if (heapBudgetBytes <= 0 || idleMillis <= 0) {
+            throw new IllegalArgumentException("Heap budget and idle time must be positive");
+        }
+        this.directory = directory;
+        this.store = store;
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.idleMillis = idleMillis;
+    }
+    
+    /**
+     * METHOD: restore
+     * 
+     * @param user a User just built by the directory
+     * 
+     * PURPOSE:
+     * Faults the stored library and playlists back in.
+     */
+    @Override
+    public void restore(User user) {
+        String userId = user.getUserId();
+        try {
+            int items = store.restoreLibrary(user);
+            int playlists = store.restore(user);
+            if (items > 0 || playlists > 0) {
+                restoreCount.incrementAndGet();
+                EventLog.log(LogLevel.DEBUG, "UserStateTiering", "Restored {} library item(s) and {} playlist(s) of {}",
+                        items, playlists, userId);
+            }
+        } catch (IOException | RuntimeException e) {
+            unreadable.add(userId);
+            EventLog.log(LogLevel.ERROR, "UserStateTiering", "Could not restore state of {}: {}",
+                    userId, e.getMessage());
+        }
+    }
+    
+    /**
+     * METHOD: accessed
+     * 
+     * @param user a User just returned by the directory
+     */
+    @Override
+    public void accessed(User user) {
+        Resident resident = residents.get(user.getUserId());
+        if (resident == null) {
+            resident = residents.computeIfAbsent(user.getUserId(), id -> new Resident());
+        }
+        resident.lastAccess = System.currentTimeMillis();
+    }
+    
+    /**
+     * METHOD: spill
+     * 
+     * @param user a User the directory is about to drop
+     * @return false if its state could not be stored (the User is kept)
+     */
+    @Override
+    public boolean spill(User user) {
+        String userId = user.getUserId();
+        if (unreadable.contains(userId)) {
+            EventLog.warn("UserStateTiering", "Keeping {} resident: its stored state is unreadable", userId);
+            return false;
+        }
+        try {
+            store.saveLibrary(user);
+            store.save(user);
+        } catch (IOException | RuntimeException e) {
+            EventLog.log(LogLevel.ERROR, "UserStateTiering", "Could not spill state of {}: {}",
+                    userId, e.getMessage());
+            return false;
+        }
+        residents.remove(userId);
+        spillCount.incrementAndGet();
+        return true;
+    }
+    
+    /**
+     * METHOD: sweep
+     * 
+     * @return how many users were moved to disk
+     * 
+     * PURPOSE:
+     * Spills idle users, then the least recently accessed ones until the
+     * estimated resident state fits the heap budget.
+     */
+    public synchronized int sweep() {
+        long now = System.currentTimeMillis();
+        List<Candidate> active = new ArrayList<Candidate>();
+        long total = 0;
+        int spilled = 0;
+        for (Map.Entry<String, Resident> entry : residents.entrySet()) {
+            String userId = entry.getKey();
+            User user = directory.getIfMaterialized(userId);
+            if (user == null) {
+                residents.remove(userId, entry.getValue()); // Released elsewhere
+                continue;
+            }
+            long lastAccess = entry.getValue().lastAccess;
+            if (now - lastAccess >= idleMillis && release(userId)) {
+                spilled++;
+                continue;
+            }
+            long bytes = estimate(user);
+            active.add(new Candidate(userId, lastAccess, bytes));
+            total += bytes;
+        }
+    
+        if (total > heapBudgetBytes) {
+            active.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+            for (Candidate candidate : active) {
+                if (total <= heapBudgetBytes) {
+                    break;
+                }
+                if (release(candidate.userId)) {
+                    total -= candidate.bytes;
+                    spilled++;
+                }
+            }
+        }
+        residentBytes = total;
+        if (spilled > 0) {
+            EventLog.info("UserStateTiering", "Spilled {} user(s), ~{} bytes resident", spilled, total);
+        }
+        return spilled;
+    }
+    
+    /**
+     * METHOD: start
+     * 
+     * @param periodMillis time between two sweeps
+     * 
+     * PURPOSE:
+     * Runs sweep() in the background on one daemon thread.
+     */
+    public synchronized void start(long periodMillis) {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-state-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException e) {
+                // Keep sweeping; one bad user must not stop the tiering
+                EventLog.log(LogLevel.ERROR, "UserStateTiering", "Sweep failed: {}", e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * METHOD: stop
+     * 
+     * PURPOSE:
+     * Stops background sweeps; users stay where they are.
+     */
+    public synchronized void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+    
+    /**
+     * GETTER: getResidentCount
+     * 
+     * @return users currently tracked as resident
+     */
+    public int getResidentCount() {
+        return residents.size();
+    }
+    
+    /**
+     * GETTER: getResidentBytes
+     * 
+     * @return estimated heap of resident user state after the last sweep
+     */
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+    
+    /**
+     * GETTER: getHeapBudgetBytes
+     * 
+     * @return the configured heap budget
+     */
+    public long getHeapBudgetBytes() {
+        return heapBudgetBytes;
+    }
+    
+    /**
+     * GETTER: getSpillCount
+     * 
+     * @return users moved to disk so far
+     */
+    public long getSpillCount() {
+        return spillCount.get();
+    }
+    
+    /**
+     * GETTER: getRestoreCount
+     * 
+     * @return users whose stored state was faulted back in so far
+     */
+    public long getRestoreCount() {
+        return restoreCount.get();
+    }
+    
+    // Releases through the directory (which calls spill); true if dropped
+    private boolean release(String userId) {
+        directory.release(userId);
+        if (directory.getIfMaterialized(userId) == null) {
+            return true;
+        }
+        // Kept after a spill (e.g. edited meanwhile): still resident
+        residents.computeIfAbsent(userId, id -> new Resident());
+        return false;
+    }
+    
+    private static long estimate(User user) {
+        return USER_BYTES + ITEM_BYTES * user.getResidentItemCount();
+    }
+    
+    private static final class Resident {
+        volatile long lastAccess = System.currentTimeMillis();
+    }
+    
+    private static final class Candidate {
+        final String userId;
+        final long lastAccess;
+        final long bytes;
+    
+        Candidate(String userId, long lastAccess, long bytes) {
+            this.userId = userId;
+            this.lastAccess = lastAccess;
+            this.bytes = bytes;
+        }
+    }
+}
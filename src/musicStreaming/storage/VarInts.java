@@ -0,0 +1,53 @@
+package musicStreaming.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * LEB128 variable-length ints: 7 bits per byte, high bit = "more follows".
+ * Values below 128 take one byte, below 16384 two, at most five.
+ * Signed values (deltas) are zigzag-mapped first so small negatives stay
+ * small: 0, -1, 1, -2, 2 ... become 0, 1, 2, 3, 4 ...
+ * 
+ * @author Sima
+ */
+final class VarInts {
+    
+    // Longest encoding of an int
+    static final int MAX_BYTES = 5;
+    
+    private VarInts() {
+    }
+    
+    static void putUnsigned(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+    
+    static void putSigned(ByteBuffer buffer, int value) {
+        putUnsigned(buffer, (value << 1) ^ (value >> 31));
+    }
+    
+    static int getUnsigned(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Truncated varint");
+            }
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+    
+    static int getSigned(ByteBuffer buffer) throws IOException {
+        int raw = getUnsigned(buffer);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+}
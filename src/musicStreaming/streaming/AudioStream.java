@@ -0,0 +1,177 @@
+package musicStreaming.streaming;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import musicStreaming.enums.PlaybackQuality;
+import musicStreaming.enums.StreamState;
+import musicStreaming.media.Media;
+import musicStreaming.playback.PrefetchedAudio;
+import musicstreaming.interfaces.StreamListener;
+
+/**
+ * Handle for one audio stream running on a StreamingEngine.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * Like a download, a stream is not a thread: it is a small state object
+ * (open file, position, sink) that an event loop advances one chunk at a
+ * time. Callers use this handle to watch progress, wait for the end, or
+ * stop the stream.
+ * 
+ * @author Sima
+ */
+public class AudioStream {
+    
+    private final Media media;
+    private final WritableByteChannel sink;
+    private final StreamListener listener;
+    private final BitrateController bitrate; // null = fixed file, no adaptation
+    private final CompletableFuture<Void> completion = new CompletableFuture<Void>();
+    
+    // WHY volatile: written by the event loop, read by any caller
+    private volatile StreamState state = StreamState.PENDING;
+    private volatile long bytesSent;
+    private volatile long totalBytes = -1;
+    private volatile boolean cancelRequested;
+    private volatile PlaybackQuality quality; // Variant being sent, null = original file
+    
+    // Only touched by the event loop that owns this stream
+    final StreamingEngine.EventLoop loop;
+    Path file;
+    FileChannel source;
+    long position;        // Read position in the current file
+    SelectionKey key;     // Sink registration, only for selectable sinks
+    long chunkStart;      // Position where the current chunk starts
+    long chunkEnd;        // Position where the current chunk ends
+    long chunkStartNanos; // When the current chunk was started
+    PrefetchedAudio head; // Read-ahead start of the file, sent from memory
+    WavDecimator.Format format; // Of the current file; null = not WAV, no switching
+    
+    AudioStream(Media media, Path file, WritableByteChannel sink, StreamListener listener,
+                BitrateController bitrate, StreamingEngine.EventLoop loop) {
+        this.media = media;
+        this.file = file;
+        this.sink = sink;
+        this.listener = listener;
+        this.bitrate = bitrate;
+        this.loop = loop;
+    }
+    
+    /**
+     * GETTER: getMedia
+     * 
+     * @return the media being streamed
+     */
+    public Media getMedia() {
+        return media;
+    }
+    
+    /**
+     * GETTER: getSink
+     * 
+     * @return where the bytes go (socket, pipe or file)
+     */
+    public WritableByteChannel getSink() {
+        return sink;
+    }
+    
+    /**
+     * GETTER: getState
+     * 
+     * @return current lifecycle state
+     */
+    public StreamState getState() {
+        return state;
+    }
+    
+    /**
+     * GETTER: getQuality
+     * 
+     * @return quality variant being sent, or null for the original file
+     */
+    public PlaybackQuality getQuality() {
+        return quality;
+    }
+    
+    /**
+     * GETTER: getBitrateController
+     * 
+     * @return the adaptive bitrate controller, or null if the quality is fixed
+     */
+    public BitrateController getBitrateController() {
+        return bitrate;
+    }
+    
+    /**
+     * GETTER: getBytesSent
+     * 
+     * @return bytes taken by the sink so far (all variants together)
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+    
+    /**
+     * GETTER: getTotalBytes
+     * 
+     * @return size of the file currently sent, or -1 while the stream has
+     *         not started (changes when the quality variant changes)
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+    
+    /**
+     * METHOD: getCompletion
+     * 
+     * @return future completed when the whole file was sent, or completed
+     *         exceptionally when the stream fails or is cancelled
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+    
+    /**
+     * METHOD: cancel
+     * 
+     * PURPOSE:
+     * Stops the stream (skip, stop). Takes effect at the next step of the
+     * event loop, also while the stream is waiting on a full sink.
+     */
+    public void cancel() {
+        cancelRequested = true;
+        loop.requestCancel(this);
+    }
+    
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+    
+    StreamListener getListener() {
+        return listener;
+    }
+    
+    void setState(StreamState state) {
+        this.state = state;
+    }
+    
+    void setQuality(PlaybackQuality quality) {
+        this.quality = quality;
+    }
+    
+    void setBytesSent(long bytesSent) {
+        this.bytesSent = bytesSent;
+    }
+    
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+    
+    @Override
+    public String toString() {
+        return "Stream{" + media.getId() + ", " + state +
+               ", " + bytesSent + "/" + totalBytes + " bytes}";
+    }
+}
@@ -0,0 +1,151 @@
+package musicStreaming.streaming;
+
+import musicStreaming.enums.PlaybackQuality;
+import musicStreaming.enums.UserType;
+
+/**
+ * Adaptive bitrate control for one audio stream.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * A fixed quality either rebuffers on a slow connection or wastes bytes a
+ * slow client cannot use. The controller watches how fast the sink really
+ * takes chunks and picks the quality for the next chunk accordingly, never
+ * above what the listener's tier allows (UserType.getMaxQuality()).
+ * 
+ * HOW IT WORKS:
+ * - Throughput estimate: exponentially weighted moving average (EWMA) over
+ *   completed chunks, each new chunk with weight ALPHA. The average is
+ *   taken of seconds PER BYTE (a harmonic mean of throughput): one slow
+ *   chunk pulls the estimate down at once, while chunks that vanish into an
+ *   empty socket buffer cannot inflate it
+ * - Target: the highest quality whose bitrate fits in SAFETY x estimate
+ * - Down-switch right away (avoid rebuffering); up-switch one level at a
+ *   time and only with extra HEADROOM (avoid flapping between two levels)
+ * - Before the first measurement: NORMAL, or the cap if that is lower
+ * 
+ * The engine asks select() at every chunk boundary and reports each
+ * finished chunk to onChunk(), both on the stream's event-loop thread.
+ * 
+ * @author Sima
+ */
+public class BitrateController {
+    
+    private static final double ALPHA = 0.3;    // Weight of the newest chunk
+    private static final double SAFETY = 0.8;   // Use at most 80% of the estimate
+    private static final double HEADROOM = 1.25; // Extra margin to switch up
+    private static final PlaybackQuality START_QUALITY = PlaybackQuality.NORMAL;
+    
+    private static final PlaybackQuality[] LEVELS = PlaybackQuality.values(); // Ascending bitrate
+    
+    private final PlaybackQuality cap;
+    
+    private double secondsPerByte = -1; // EWMA, -1 = no measurement yet
+    private PlaybackQuality current;
+    private int switches;
+    
+    /**
+     * CONSTRUCTOR: BitrateController
+     * 
+     * @param tier the listener's account type (sets the quality cap)
+     */
+    public BitrateController(UserType tier) {
+        this(tier.getMaxQuality());
+    }
+    
+    /**
+     * CONSTRUCTOR: BitrateController
+     * 
+     * @param cap highest quality this stream may use
+     */
+    public BitrateController(PlaybackQuality cap) {
+        this.cap = cap;
+        this.current = START_QUALITY.compareTo(cap) <= 0 ? START_QUALITY : cap;
+    }
+    
+    /**
+     * METHOD: onChunk
+     * 
+     * @param bytes size of the finished chunk
+     * @param elapsedNanos time the sink needed for it (incl. back-pressure)
+     */
+    public synchronized void onChunk(long bytes, long elapsedNanos) {
+        if (bytes <= 0) {
+            return;
+        }
+        double sample = Math.max(elapsedNanos, 1) / 1e9 / bytes;
+        secondsPerByte = secondsPerByte < 0 ? sample : ALPHA * sample + (1 - ALPHA) * secondsPerByte;
+    }
+    
+    /**
+     * METHOD: select
+     * 
+     * @return quality to use for the next chunk
+     */
+    public synchronized PlaybackQuality select() {
+        if (secondsPerByte < 0) {
+            return current;
+        }
+        double bytesPerSecond = 1 / secondsPerByte;
+        PlaybackQuality target = LEVELS[0];
+        for (PlaybackQuality level : LEVELS) {
+            if (level.compareTo(cap) <= 0 && bytesOf(level) <= SAFETY * bytesPerSecond) {
+                target = level;
+            }
+        }
+        PlaybackQuality next = current;
+        if (target.compareTo(current) < 0) {
+            next = target;
+        } else if (target.compareTo(current) > 0) {
+            PlaybackQuality up = LEVELS[current.ordinal() + 1];
+            if (bytesOf(up) * HEADROOM <= SAFETY * bytesPerSecond) {
+                next = up;
+            }
+        }
+        if (next != current) {
+            current = next;
+            switches++;
+        }
+        return current;
+    }
+    
+    /**
+     * GETTER: getQuality
+     * 
+     * @return quality chosen for the current chunk
+     */
+    public synchronized PlaybackQuality getQuality() {
+        return current;
+    }
+    
+    /**
+     * GETTER: getThroughput
+     * 
+     * @return estimated sink throughput in bytes per second, -1 if unknown
+     */
+    public synchronized double getThroughput() {
+        return secondsPerByte < 0 ? -1 : 1 / secondsPerByte;
+    }
+    
+    /**
+     * GETTER: getSwitchCount
+     * 
+     * @return number of quality changes so far
+     */
+    public synchronized int getSwitchCount() {
+        return switches;
+    }
+    
+    /**
+     * GETTER: getCap
+     * 
+     * @return highest quality this stream may use
+     */
+    public PlaybackQuality getCap() {
+        return cap;
+    }
+    
+    // kbps -> bytes per second
+    private static double bytesOf(PlaybackQuality quality) {
+        return quality.getBitrate() * 1000 / 8.0;
+    }
+}
@@ -0,0 +1,539 @@
+package musicStreaming.streaming;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import musicStreaming.downloads.DownloadManager;
+import musicStreaming.enums.PlaybackQuality;
+import musicStreaming.enums.StreamState;
+import musicStreaming.events.EventLog;
+import musicStreaming.media.Media;
+import musicStreaming.playback.PrefetchedAudio;
+import musicstreaming.interfaces.StreamListener;
+
+/**
+ * Chunked, zero-copy audio streaming behind Playable.play(sink, listener).
+ * 
+ * WHY THIS CLASS EXISTS:
+ * play() used to print a line. Real playback sends a media file to a client
+ * (socket), a local player (pipe) or a file, for many thousands of
+ * listeners per node at once. One thread per stream would not survive that,
+ * and copying every byte through the Java heap wastes CPU and memory.
+ * 
+ * HOW IT WORKS:
+ * - A few event-loop threads (one per core by default) each own many
+ *   streams; a new stream is assigned to a loop round robin
+ * - A loop advances its ready streams one CHUNK at a time, round robin,
+ *   so a fast client cannot starve the others
+ * - Bytes move with FileChannel.transferTo: the kernel copies file pages
+ *   straight into the socket/pipe/file (sendfile/splice); they never
+ *   enter the Java heap
+ * 
+ * BACK-PRESSURE:
+ * - Selectable sinks in non-blocking mode (SocketChannel, Pipe.SinkChannel)
+ *   take only what fits in their buffer. When a transfer comes up short,
+ *   the stream stops being scheduled (state WAITING) and its sink is
+ *   registered with the loop's Selector; it resumes when the sink is
+ *   writable again. A slow client costs nothing while it is not reading
+ * - Blocking sinks (files, blocking channels) simply block the loop for
+ *   the rest of one chunk; use non-blocking channels for network clients
+ * 
+ * READ-AHEAD:
+ * A stream may be given the first bytes of its file, read ahead by a
+ * PlayQueue (PrefetchedAudio). If the stream really starts on that file,
+ * those bytes are written from memory instead of the disk; the buffer goes
+ * back to its pool as soon as the stream is past it, switches variant or
+ * ends. Queues find the file a stream will start on with locateStart().
+ * 
+ * ADAPTIVE BITRATE:
+ * A stream started with a BitrateController may change quality at every
+ * chunk boundary. The locator gives one WAV file per PlaybackQuality
+ * variant (null = the original file). Switching:
+ * - Chunk boundaries inside the data chunk fall on whole frames, so a
+ *   switch never cuts a frame in two
+ * - The read position moves to the same frame in time: frame index in
+ *   the old data chunk, scaled by the ratio of the sample rates, placed
+ *   after the new file's header (WavDecimator.Format.dataOffset)
+ * - The listener gets onFormatChange() with the new sample rate: all bytes
+ *   after that point are in the new format
+ * - No switch before the first header has been sent, and none for files
+ *   that are not PCM WAV
+ * If a variant is not available yet (locator returns null or a missing
+ * file), the stream stays on what it has and asks again at the next
+ * boundary.
+ * 
+ * @author Sima
+ */
+public class StreamingEngine {
+    
+    // WHY 64 KB: a few seconds of audio, and a good sendfile() size
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    
+    private static StreamingEngine shared;
+    
+    private final BiFunction<Media, PlaybackQuality, Path> locator;
+    private final int chunkSize;
+    private final EventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    
+    /**
+     * CONSTRUCTOR: StreamingEngine
+     * 
+     * @param locator finds the local audio file of a media item in a quality
+     *                (null quality = the original file)
+     * @param chunkSize bytes sent per step
+     * @param threads number of event-loop threads
+     * @throws IOException if a selector cannot be opened
+     */
+    public StreamingEngine(BiFunction<Media, PlaybackQuality, Path> locator, int chunkSize, int threads)
+            throws IOException {
+        if (chunkSize <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Streaming limits must be positive");
+        }
+        this.locator = locator;
+        this.chunkSize = chunkSize;
+        this.loops = new EventLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new EventLoop("stream-loop-" + (i + 1));
+        }
+    }
+    
+    /**
+     * METHOD: getShared
+     * 
+     * @return the node-wide engine, one loop per core: origin files of the
+     *         shared DownloadManager, quality variants from the shared
+     *         VariantStore (made on first request)
+     */
+    public static synchronized StreamingEngine getShared() {
+        if (shared == null) {
+            try {
+                shared = new StreamingEngine(
+                        (media, quality) -> quality == null
+                                ? DownloadManager.getShared().getOriginFile(media.getId())
+                                : VariantStore.getShared().locate(media.getId(), quality),
+                        DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot start streaming engine", e);
+            }
+        }
+        return shared;
+    }
+    
+    /**
+     * METHOD: stream
+     * 
+     * @param media the media to play (its file is found by the locator)
+     * @param sink where the bytes go
+     * @param listener chunk/completion callbacks, may be null
+     * @return handle for the stream; nothing runs on the caller's thread
+     */
+    public AudioStream stream(Media media, WritableByteChannel sink, StreamListener listener) {
+        return start(media, null, sink, listener, null, null);
+    }
+    
+    /**
+     * METHOD: stream (adaptive)
+     * 
+     * @param media the media to play
+     * @param sink where the bytes go
+     * @param listener chunk/completion callbacks, may be null
+     * @param bitrate picks the quality variant for each chunk
+     * @return handle for the stream; nothing runs on the caller's thread
+     */
+    public AudioStream stream(Media media, WritableByteChannel sink, StreamListener listener,
+                              BitrateController bitrate) {
+        return start(media, null, sink, listener, bitrate, null);
+    }
+    
+    /**
+     * METHOD: stream (adaptive, with read-ahead)
+     * 
+     * @param media the media to play
+     * @param sink where the bytes go
+     * @param listener chunk/completion callbacks, may be null
+     * @param bitrate picks the quality variant for each chunk
+     * @param head first bytes of the file read ahead (see PlayQueue), or
+     *             null; the stream takes ownership and releases them
+     * @return handle for the stream; nothing runs on the caller's thread
+     */
+    public AudioStream stream(Media media, WritableByteChannel sink, StreamListener listener,
+                              BitrateController bitrate, PrefetchedAudio head) {
+        return start(media, null, sink, listener, bitrate, head);
+    }
+    
+    /**
+     * METHOD: stream (from a given file)
+     * 
+     * @param media the media to play
+     * @param file local audio file to send as is (e.g. an offline copy)
+     * @param sink where the bytes go
+     * @param listener chunk/completion callbacks, may be null
+     * @return handle for the stream; nothing runs on the caller's thread
+     */
+    public AudioStream stream(Media media, Path file, WritableByteChannel sink, StreamListener listener) {
+        return start(media, file, sink, listener, null, null);
+    }
+    
+    /**
+     * METHOD: locateStart
+     * 
+     * @param media the media
+     * @param quality the quality a stream would start at (null = original)
+     * @return the file a stream of this media would start on right now:
+     *         the variant if it exists, else the original file
+     */
+    public Path locateStart(Media media, PlaybackQuality quality) {
+        if (quality != null) {
+            Path variant = locator.apply(media, quality);
+            if (variant != null && Files.exists(variant)) {
+                return variant;
+            }
+        }
+        return locator.apply(media, null);
+    }
+    
+    private AudioStream start(Media media, Path file, WritableByteChannel sink, StreamListener listener,
+                              BitrateController bitrate, PrefetchedAudio head) {
+        EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        AudioStream stream = new AudioStream(media, file, sink,
+                listener != null ? listener : new StreamListener() { }, bitrate, loop);
+        stream.head = head; // Published to the loop by submit()
+        loop.submit(stream);
+        return stream;
+    }
+    
+    /**
+     * GETTER: getChunkSize
+     * 
+     * @return bytes sent per step
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    
+    /**
+     * GETTER: getActiveCount
+     * 
+     * @return streams started and not finished, on all loops
+     */
+    public int getActiveCount() {
+        int total = 0;
+        for (EventLoop loop : loops) {
+            total += loop.active.get();
+        }
+        return total;
+    }
+    
+    /**
+     * One event-loop thread: a queue of ready streams plus a Selector for
+     * streams waiting on a full sink.
+     */
+    final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<AudioStream> ready = new ConcurrentLinkedQueue<AudioStream>();
+        private final ConcurrentLinkedQueue<AudioStream> cancels = new ConcurrentLinkedQueue<AudioStream>();
+        private final AtomicInteger active = new AtomicInteger();
+        
+        EventLoop(String name) throws IOException {
+            this.selector = Selector.open();
+            Thread thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        void submit(AudioStream stream) {
+            active.incrementAndGet();
+            ready.add(stream);
+            selector.wakeup();
+        }
+        
+        void requestCancel(AudioStream stream) {
+            cancels.add(stream);
+            selector.wakeup();
+        }
+        
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    // One round: every stream ready now gets one chunk
+                    for (int n = ready.size(); n > 0; n--) {
+                        AudioStream stream = ready.poll();
+                        if (stream == null) {
+                            break;
+                        }
+                        step(stream);
+                    }
+                    for (AudioStream stream; (stream = cancels.poll()) != null; ) {
+                        if (!stream.getState().isFinished()) {
+                            finish(stream, StreamState.CANCELLED, null);
+                        }
+                    }
+                    if (ready.isEmpty()) {
+                        selector.select();
+                    } else {
+                        selector.selectNow();
+                    }
+                    // Sinks that drained: schedule their streams again
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (key.isValid()) {
+                            key.interestOps(0);
+                            AudioStream stream = (AudioStream) key.attachment();
+                            stream.setState(StreamState.STREAMING);
+                            ready.add(stream);
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Keep the loop alive; single-stream errors are handled in step()
+                    EventLog.warn("StreamingEngine", "Event loop error: {}", e);
+                }
+            }
+        }
+        
+        // Sends (up to) the rest of the current chunk, then re-queues, waits
+        // for the sink, or finishes
+        private void step(AudioStream stream) {
+            if (stream.getState().isFinished()) {
+                return;
+            }
+            try {
+                if (stream.isCancelRequested()) {
+                    finish(stream, StreamState.CANCELLED, null);
+                    return;
+                }
+                if (stream.source == null) {
+                    open(stream);
+                }
+                if (stream.position == stream.chunkEnd) {
+                    // Chunk boundary: the only place the quality may change
+                    if (stream.getBitrateController() != null) {
+                        switchVariant(stream, stream.getBitrateController().select());
+                    }
+                    stream.chunkStart = stream.position;
+                    stream.chunkEnd = frameAligned(stream,
+                            Math.min(stream.position + chunkSize, stream.getTotalBytes()));
+                    stream.chunkStartNanos = System.nanoTime();
+                }
+                long position = stream.position;
+                long total = stream.getTotalBytes();
+                long wanted = stream.chunkEnd - position;
+                long moved;
+                if (wanted == 0) {
+                    moved = 0;
+                } else if (stream.head != null && position < stream.head.size()) {
+                    moved = sendHead(stream, position, wanted);
+                } else {
+                    moved = stream.source.transferTo(position, wanted, stream.getSink());
+                }
+                position += moved;
+                if (stream.head != null && position >= stream.head.size()) {
+                    dropHead(stream); // Past the read-ahead: back to the pool
+                }
+                stream.position = position;
+                stream.setBytesSent(stream.getBytesSent() + moved);
+                
+                if (position == stream.chunkEnd && wanted > 0) {
+                    long bytes = stream.chunkEnd - stream.chunkStart;
+                    long elapsed = System.nanoTime() - stream.chunkStartNanos;
+                    if (stream.getBitrateController() != null) {
+                        stream.getBitrateController().onChunk(bytes, elapsed);
+                    }
+                    stream.getListener().onChunk(stream, bytes, elapsed);
+                }
+                if (position >= total) {
+                    finish(stream, StreamState.COMPLETED, null);
+                } else if (moved < wanted && isNonBlocking(stream.getSink())) {
+                    waitForSink(stream);
+                } else {
+                    ready.add(stream);
+                }
+            } catch (IOException e) {
+                finish(stream, StreamState.FAILED, e);
+            } catch (RuntimeException e) {
+                // Bad id or broken listener: fail this stream, keep the loop
+                finish(stream, StreamState.FAILED, new IOException(e));
+            }
+        }
+        
+        private void open(AudioStream stream) throws IOException {
+            if (stream.file == null) {
+                BitrateController bitrate = stream.getBitrateController();
+                PlaybackQuality quality = bitrate == null ? null : bitrate.getQuality();
+                if (quality != null && !tryOpen(stream, quality)) {
+                    quality = null; // No such variant: send the original
+                }
+                if (quality == null) {
+                    stream.file = locator.apply(stream.getMedia(), null);
+                }
+                stream.setQuality(quality);
+            }
+            if (stream.source == null) {
+                stream.source = FileChannel.open(stream.file, StandardOpenOption.READ);
+            }
+            if (stream.head != null && !stream.head.getFile().equals(stream.file)) {
+                dropHead(stream); // Read ahead for another variant
+            }
+            stream.setTotalBytes(stream.source.size());
+            if (stream.getBitrateController() != null) {
+                stream.format = readFormat(stream.source);
+            }
+            stream.position = 0;
+            stream.chunkEnd = 0;
+            stream.setState(StreamState.STREAMING);
+        }
+        
+        // Moves to another quality variant at the same frame in time
+        private void switchVariant(AudioStream stream, PlaybackQuality quality) throws IOException {
+            WavDecimator.Format from = stream.format;
+            if (quality == stream.getQuality() || from == null || stream.position < from.dataOffset) {
+                return; // Same variant, not PCM WAV, or header not sent yet
+            }
+            FileChannel old = stream.source;
+            Path oldFile = stream.file;
+            if (!tryOpen(stream, quality)) {
+                return; // Variant missing: keep sending the current one
+            }
+            WavDecimator.Format to = readFormat(stream.source);
+            if (to == null || to.channels != from.channels || to.bitsPerSample != from.bitsPerSample) {
+                stream.source.close(); // Not a variant we can splice in
+                stream.source = old;
+                stream.file = oldFile;
+                return;
+            }
+            old.close();
+            dropHead(stream); // It holds the start of the old file
+            long frame = (stream.position - from.dataOffset) / from.blockAlign();
+            long frames = to.dataSize / to.blockAlign();
+            long target = Math.min(frames, frame * to.sampleRate / from.sampleRate);
+            stream.position = to.dataOffset + target * to.blockAlign();
+            stream.setTotalBytes(stream.source.size());
+            stream.format = to;
+            stream.setQuality(quality);
+            stream.getListener().onFormatChange(stream, quality, to.sampleRate, to.channels, to.bitsPerSample);
+        }
+        
+        // Inside the data chunk, chunks end on whole frames (see switchVariant)
+        private long frameAligned(AudioStream stream, long end) {
+            WavDecimator.Format format = stream.format;
+            if (format == null || end >= stream.getTotalBytes() || end <= format.dataOffset) {
+                return end;
+            }
+            long aligned = format.dataOffset + (end - format.dataOffset) / format.blockAlign() * format.blockAlign();
+            return aligned > stream.position ? aligned : end;
+        }
+        
+        // Format of a PCM WAV file, or null for anything else
+        private WavDecimator.Format readFormat(FileChannel source) {
+            try {
+                return WavDecimator.readFormat(source);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        
+        // Opens a variant into stream.file/source; false if it is not available
+        private boolean tryOpen(AudioStream stream, PlaybackQuality quality) throws IOException {
+            Path file = locator.apply(stream.getMedia(), quality);
+            if (file == null) {
+                return false;
+            }
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+            stream.file = file;
+            stream.source = channel;
+            return true;
+        }
+        
+        // Writes read-ahead bytes [position, position + wanted) from memory
+        private long sendHead(AudioStream stream, long position, long wanted) throws IOException {
+            ByteBuffer data = stream.head.getData();
+            data.limit((int) Math.min(data.limit(), position + wanted));
+            data.position((int) position);
+            return stream.getSink().write(data);
+        }
+        
+        private void dropHead(AudioStream stream) {
+            if (stream.head != null) {
+                stream.head.release();
+                stream.head = null;
+            }
+        }
+        
+        // Back-pressure: park the stream until its sink can take more bytes
+        private void waitForSink(AudioStream stream) throws ClosedChannelException {
+            stream.setState(StreamState.WAITING);
+            if (stream.key == null) {
+                stream.key = ((SelectableChannel) stream.getSink()).register(selector, SelectionKey.OP_WRITE, stream);
+            } else {
+                stream.key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+        
+        // Runs once per stream: a second call (e.g. step()'s catch after a
+        // listener threw in here) is ignored, so active never drops twice
+        private void finish(AudioStream stream, StreamState state, IOException error) {
+            if (stream.getState().isFinished()) {
+                return;
+            }
+            dropHead(stream);
+            if (stream.key != null) {
+                stream.key.cancel();
+                stream.key = null;
+            }
+            if (stream.source != null) {
+                try {
+                    stream.source.close();
+                } catch (IOException ignored) {
+                    // Read-only file: nothing is lost
+                }
+                stream.source = null;
+            }
+            stream.setState(state);
+            active.decrementAndGet();
+            try {
+                if (state == StreamState.COMPLETED) {
+                    stream.getListener().onComplete(stream);
+                } else if (state == StreamState.FAILED) {
+                    stream.getListener().onFailed(stream, error);
+                }
+            } catch (RuntimeException e) {
+                // The outcome is decided; a broken listener cannot change it
+                EventLog.warn("StreamingEngine", "Stream listener failed: {}", e);
+            }
+            if (state == StreamState.COMPLETED) {
+                stream.getCompletion().complete(null);
+            } else if (state == StreamState.FAILED) {
+                stream.getCompletion().completeExceptionally(error);
+            } else {
+                stream.getCompletion().completeExceptionally(
+                        new CancellationException("Stream cancelled: " + stream.getMedia().getId()));
+            }
+        }
+    }
+    
+    private static boolean isNonBlocking(WritableByteChannel sink) {
+        return sink instanceof SelectableChannel && !((SelectableChannel) sink).isBlocking();
+    }
+}
@@ -0,0 +1,318 @@
+package musicStreaming.streaming;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import musicStreaming.downloads.DownloadManager;
+import musicStreaming.enums.PlaybackQuality;
+import musicStreaming.events.EventLog;
+
+/**
+ * Per-quality copies ("variants") of each track, made on demand and kept in
+ * a size-bounded cache.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * Adaptive bitrate needs every track at several PlaybackQuality levels, but
+ * the origin store holds one file per track. Making every variant up front
+ * would multiply storage for tracks nobody plays; instead a variant is made
+ * the first time it is asked for and dropped again when space runs out.
+ * 
+ * HOW IT WORKS:
+ * - Origin files are PCM WAV; a variant is the WAV decimated by the
+ *   smallest whole factor that brings its bitrate down to the quality's
+ *   (see WavDecimator). If the origin is already small enough, the
+ *   variant is a plain copy
+ * - Generation runs on a small bounded worker pool; when its queue is full
+ *   new requests fail fast instead of piling up (the stream just stays on
+ *   the variant it has)
+ * - A variant that could not be made (e.g. origin is not PCM WAV) is not
+ *   retried for RETRY_MILLIS, so streams asking at every chunk stay cheap
+ * - Coalescing: requests for a variant that is being made share one
+ *   future, so it is made once however many listeners ask at the same time
+ * - Cache: variants live as cacheDir/mediaId.quality.wav; an in-memory
+ *   index in LRU order tracks their sizes, and the least recently used
+ *   variants are deleted once the total exceeds the byte budget. Streams
+ *   already reading an evicted file keep their open handle
+ * 
+ * THREAD SAFETY:
+ * The index is guarded by the store's lock (held for map updates only);
+ * in-flight requests are tracked in a ConcurrentHashMap.
+ * 
+ * @author Sima
+ */
+public class VariantStore {
+    
+    // Defaults for the shared instance; the directory can be overridden
+    // with -Dmusicstreaming.variant.dir=...
+    private static final long DEFAULT_MAX_BYTES = 1L << 30; // 1 GB
+    private static final int DEFAULT_WORKERS = 2;
+    private static final int MAX_QUEUED = 256;
+    private static final String SUFFIX = ".wav";
+    private static final long RETRY_MILLIS = 60_000; // After a failed attempt
+    
+    private static VariantStore shared;
+    
+    private final Function<String, Path> origin;
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final ThreadPoolExecutor workers;
+    
+    // Guarded by "this": key -> size, eldest = least recently used
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long usedBytes;
+    
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight =
+            new ConcurrentHashMap<String, CompletableFuture<Path>>();
+    private final ConcurrentHashMap<String, Long> failedAt = new ConcurrentHashMap<String, Long>();
+    
+    /**
+     * CONSTRUCTOR: VariantStore
+     * 
+     * @param origin finds the origin (WAV) file of a media id
+     * @param cacheDir directory for generated variants (created if missing)
+     * @param maxBytes byte budget for all variants together
+     * @param workers number of generation threads
+     * @throws IOException if the directory cannot be read or created
+     */
+    public VariantStore(Function<String, Path> origin, Path cacheDir, long maxBytes, int workers)
+            throws IOException {
+        if (maxBytes <= 0 || workers <= 0) {
+            throw new IllegalArgumentException("Variant store limits must be positive");
+        }
+        this.origin = origin;
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED), runnable -> {
+                    Thread thread = new Thread(runnable, "variant-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Files.createDirectories(cacheDir);
+        loadIndex();
+    }
+    
+    /**
+     * METHOD: getShared
+     * 
+     * @return the node-wide store, made from the shared DownloadManager's
+     *         origin files
+     */
+    public static synchronized VariantStore getShared() {
+        if (shared == null) {
+            try {
+                shared = new VariantStore(
+                        mediaId -> DownloadManager.getShared().getOriginFile(mediaId),
+                        Paths.get(System.getProperty("musicstreaming.variant.dir", "media/variants")),
+                        DEFAULT_MAX_BYTES, DEFAULT_WORKERS);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open variant store", e);
+            }
+        }
+        return shared;
+    }
+    
+    /**
+     * METHOD: request
+     * 
+     * @param mediaId the media id
+     * @param quality the wanted quality
+     * @return future completed with the variant file (right away if cached),
+     *         or exceptionally if it cannot be made (not a PCM WAV, busy)
+     */
+    public CompletableFuture<Path> request(String mediaId, PlaybackQuality quality) {
+        String key;
+        try {
+            key = keyOf(mediaId, quality);
+        } catch (IllegalArgumentException e) {
+            CompletableFuture<Path> refused = new CompletableFuture<Path>();
+            refused.completeExceptionally(e);
+            return refused;
+        }
+        Path cached = lookup(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        Long failed = failedAt.get(key);
+        if (failed != null && System.currentTimeMillis() - failed < RETRY_MILLIS) {
+            CompletableFuture<Path> refused = new CompletableFuture<Path>();
+            refused.completeExceptionally(new IOException("Variant recently failed: " + key));
+            return refused;
+        }
+        CompletableFuture<Path> created = new CompletableFuture<Path>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing; // Coalesced with the request already running
+        }
+        // It may have been finished between lookup() and putIfAbsent()
+        cached = lookup(key);
+        if (cached != null) {
+            inFlight.remove(key, created);
+            created.complete(cached);
+            return created;
+        }
+        try {
+            workers.execute(() -> generate(mediaId, quality, key, created));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+    
+    /**
+     * METHOD: locate
+     * 
+     * @param mediaId the media id
+     * @param quality the wanted quality
+     * @return the variant file if it is ready, otherwise null (and it is
+     *         being made in the background). Never blocks.
+     */
+    public Path locate(String mediaId, PlaybackQuality quality) {
+        CompletableFuture<Path> future = request(mediaId, quality);
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+    
+    /**
+     * GETTER: getUsedBytes
+     * 
+     * @return bytes taken by cached variants
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+    
+    /**
+     * GETTER: getMaxBytes
+     * 
+     * @return byte budget for all variants
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    /**
+     * GETTER: size
+     * 
+     * @return number of cached variants
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+    
+    /**
+     * GETTER: getPendingCount
+     * 
+     * @return variants being made right now (or queued)
+     */
+    public int getPendingCount() {
+        return inFlight.size();
+    }
+    
+    // Runs on a worker: make the file, index it, then wake every waiter
+    private void generate(String mediaId, PlaybackQuality quality, String key, CompletableFuture<Path> future) {
+        Path target = cacheDir.resolve(key + SUFFIX);
+        Path temp = null;
+        try {
+            Path source = origin.apply(mediaId);
+            int factor;
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                WavDecimator.Format format = WavDecimator.readFormat(in);
+                factor = (int) Math.max(1, (format.bitrate() + quality.getBitrate() - 1) / quality.getBitrate());
+            }
+            temp = Files.createTempFile(cacheDir, key, ".tmp");
+            if (factor == 1) {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                WavDecimator.decimate(source, temp, factor);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            add(key, Files.size(target));
+            failedAt.remove(key);
+            inFlight.remove(key, future);
+            future.complete(target);
+        } catch (IOException | RuntimeException e) {
+            EventLog.warn("VariantStore", "Cannot make variant {}", key);
+            failedAt.put(key, System.currentTimeMillis());
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Leftover temp file; harmless
+                }
+            }
+        }
+    }
+    
+    private synchronized Path lookup(String key) {
+        return index.get(key) != null ? cacheDir.resolve(key + SUFFIX) : null;
+    }
+    
+    // Indexes a new variant and evicts least recently used ones over budget
+    private synchronized void add(String key, long size) {
+        Long previous = index.put(key, size);
+        usedBytes += size - (previous != null ? previous : 0);
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue; // Never evict what was just made
+            }
+            try {
+                Files.deleteIfExists(cacheDir.resolve(eldest.getKey() + SUFFIX));
+            } catch (IOException e) {
+                continue; // Keep it indexed: it still takes the space
+            }
+            usedBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+    
+    // Startup: index variants left by an earlier run, oldest first
+    private void loadIndex() throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(Comparator.comparingLong(file -> file.toFile().lastModified()));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            add(name.substring(0, name.length() - SUFFIX.length()), Files.size(file));
+        }
+    }
+    
+    // Keys become file names: refuse ids that could escape the cache directory
+    private static String keyOf(String mediaId, PlaybackQuality quality) {
+        if (mediaId == null || mediaId.isEmpty() || mediaId.contains("/") || mediaId.contains("\\")
+                || mediaId.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid id for file name: " + mediaId);
+        }
+        return mediaId + "." + quality.name().toLowerCase();
+    }
+}
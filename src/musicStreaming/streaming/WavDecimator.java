@@ -0,0 +1,167 @@
+package musicStreaming.streaming;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Makes a lower-bitrate copy of a PCM WAV file by decimation: every k input
+ * frames become one output frame (their average, a simple low-pass that
+ * keeps aliasing down), and the sample rate drops by the factor k.
+ * 
+ * Supports uncompressed PCM with 8-bit (unsigned) or 16-bit (signed,
+ * little-endian) samples and any number of channels. Works in fixed-size
+ * blocks, so memory use does not depend on the length of the track.
+ * 
+ * @author Sima
+ */
+final class WavDecimator {
+    
+    private static final int HEADER_SIZE = 44;
+    private static final int FRAMES_PER_BLOCK = 4096; // Output frames per read
+    
+    private WavDecimator() {
+    }
+    
+    /**
+     * Format of a WAV file and where its samples are.
+     */
+    static final class Format {
+        int channels;
+        int sampleRate;
+        int bitsPerSample;
+        long dataOffset;
+        long dataSize;
+        
+        int blockAlign() {
+            return channels * bitsPerSample / 8;
+        }
+        
+        // Bitrate in kbps
+        long bitrate() {
+            return (long) sampleRate * channels * bitsPerSample / 1000;
+        }
+    }
+    
+    // Reads the RIFF header; rejects anything but 8/16-bit PCM
+    static Format readFormat(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(in, header, 0);
+        if (header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157) { // "RIFF", "WAVE"
+            throw new IOException("Not a WAV file");
+        }
+        Format format = null;
+        ByteBuffer chunk = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 12;
+        while (position + 8 <= in.size()) {
+            chunk.clear().limit(8);
+            readFully(in, chunk, position);
+            int id = chunk.getInt(0);
+            long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            if (id == 0x20746D66) { // "fmt "
+                chunk.clear().limit(16);
+                readFully(in, chunk, position + 8);
+                if (chunk.getShort(0) != 1) {
+                    throw new IOException("Only uncompressed PCM WAV is supported");
+                }
+                format = new Format();
+                format.channels = chunk.getShort(2);
+                format.sampleRate = chunk.getInt(4);
+                format.bitsPerSample = chunk.getShort(14);
+                if (format.channels <= 0 || (format.bitsPerSample != 8 && format.bitsPerSample != 16)) {
+                    throw new IOException("Unsupported WAV sample format");
+                }
+            } else if (id == 0x61746164 && format != null) { // "data"
+                format.dataOffset = position + 8;
+                format.dataSize = Math.min(size, in.size() - format.dataOffset);
+                return format;
+            }
+            position += 8 + size + (size & 1); // Chunks are padded to even size
+        }
+        throw new IOException("WAV file has no fmt/data chunk");
+    }
+    
+    // Writes a copy of source with the sample rate divided by factor
+    static void decimate(Path source, Path target, int factor) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Format format = readFormat(in);
+            int frameSize = format.blockAlign();
+            long inFrames = format.dataSize / frameSize;
+            long outFrames = (inFrames + factor - 1) / factor;
+            int outRate = Math.max(1, format.sampleRate / factor);
+            writeHeader(out, format, outRate, outFrames * frameSize);
+            
+            ByteBuffer input = ByteBuffer.allocate(FRAMES_PER_BLOCK * factor * frameSize).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer output = ByteBuffer.allocate(FRAMES_PER_BLOCK * frameSize).order(ByteOrder.LITTLE_ENDIAN);
+            long position = format.dataOffset;
+            long end = format.dataOffset + inFrames * frameSize;
+            while (position < end) {
+                input.clear().limit((int) Math.min(input.capacity(), end - position));
+                readFully(in, input, position);
+                position += input.limit();
+                output.clear();
+                int frames = input.limit() / frameSize;
+                for (int first = 0; first < frames; first += factor) {
+                    int count = Math.min(factor, frames - first);
+                    for (int ch = 0; ch < format.channels; ch++) {
+                        long sum = 0;
+                        for (int f = first; f < first + count; f++) {
+                            sum += sample(input, f * frameSize, ch, format.bitsPerSample);
+                        }
+                        putSample(output, (int) (sum / count), format.bitsPerSample);
+                    }
+                }
+                output.flip();
+                while (output.hasRemaining()) {
+                    out.write(output);
+                }
+            }
+            out.force(true);
+        }
+    }
+    
+    private static int sample(ByteBuffer buffer, int frameOffset, int channel, int bits) {
+        return bits == 16
+                ? buffer.getShort(frameOffset + channel * 2)
+                : (buffer.get(frameOffset + channel) & 0xFF);
+    }
+    
+    private static void putSample(ByteBuffer buffer, int value, int bits) {
+        if (bits == 16) {
+            buffer.putShort((short) value);
+        } else {
+            buffer.put((byte) value);
+        }
+    }
+    
+    private static void writeHeader(FileChannel out, Format format, int sampleRate, long dataSize)
+            throws IOException {
+        int blockAlign = format.blockAlign();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952).putInt((int) (36 + dataSize)).putInt(0x45564157);
+        header.putInt(0x20746D66).putInt(16).putShort((short) 1).putShort((short) format.channels);
+        header.putInt(sampleRate).putInt(sampleRate * blockAlign).putShort((short) blockAlign);
+        header.putShort((short) format.bitsPerSample);
+        header.putInt(0x61746164).putInt((int) dataSize);
+        header.flip();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+    }
+    
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("WAV file is truncated");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
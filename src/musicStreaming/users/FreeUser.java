@@ -1,6 +1,11 @@
 package musicstreaming.users;
 
+import java.util.concurrent.atomic.AtomicLong;
+import musicStreaming.enums.UserType;
+import musicStreaming.events.EventLog;
 import musicStreaming.media.Media;
+import musicStreaming.playback.PlaybackScheduler;
+import musicStreaming.playback.PlaybackSession;
 
 
 
@@ -26,9 +31,15 @@ public class FreeUser extends User {
     
     // CONSTANTS
     private static final int MAX_SKIPS = 5; // Maximum skips allowed for free users
+    private static final long SKIP_WINDOW_MILLIS = 60L * 60 * 1000; // Whole quota refills in 1 hour
+    
+    // Shared by all free users; holds only the limit and window
+    private static final SkipLimiter SKIP_LIMITER = new SkipLimiter(MAX_SKIPS, SKIP_WINDOW_MILLIS);
+    private static final long AD_DURATION_MILLIS = 1000; // Length of one ad break
     
     // INSTANCE VARIABLES
-    private int skipCount; // Tracks number of skips used
+    private final AtomicLong skipState; // Packed skip quota state (see SkipLimiter)
+    private final PlaybackSession session; // Pending ad break / now playing
     
     /**
      * CONSTRUCTOR: FreeUser
@@ -37,11 +48,12 @@ public class FreeUser extends User {
      * @param username Display name for the user
      * 
      * PURPOSE:
-     * Initializes a new FreeUser with default skip count (0).
+     * Initializes a new FreeUser with a full skip quota.
      */
     public FreeUser(String userId, String username) {
         super(userId, username); // Call parent class constructor
-        this.skipCount = 0; // Initialize skip count to zero
+        this.skipState = new AtomicLong(); // 0 = full quota
+        this.session = new PlaybackSession(PlaybackScheduler.getShared());
     }
     
     /**
@@ -55,29 +67,37 @@ public class FreeUser extends User {
      * 2. Checks skip limits
      * 3. Plays the media with free-tier quality
      * 
+     * NON-BLOCKING:
+     * The ad break is a timed event on the shared PlaybackScheduler, so this
+     * method returns immediately and the track starts when the ad ends.
+     * Calling play() again during an ad replaces the pending track.
+     * 
      * METHOD OVERRIDING:
      * Provides FreeUser-specific implementation of the abstract play method.
      */
     @Override
     public void play(Media media) {
-        System.out.println("--- Free User Playback ---");
+        EventLog.info("FreeUser", "--- Free User Playback ---");
         
         // Show advertisement (Free user specific)
         showAdvertisement();
         
         // Check if user can skip (if they've reached skip limit)
-        if (skipCount >= MAX_SKIPS) {
-            System.out.println("Skip limit reached! You cannot skip this track.");
-            System.out.println("Consider upgrading to Premium for unlimited skips.");
+        if (SKIP_LIMITER.remaining(skipState) == 0) {
+            EventLog.warn("FreeUser", "Skip limit reached! You cannot skip this track.");
+            EventLog.warn("FreeUser", "Consider upgrading to Premium for unlimited skips.");
         }
         
-        // Play the media
-        System.out.println("Now playing: " + media.getTitle());
-        media.play();
-        
-        // Free user specific message
-        System.out.println("(Audio quality: Standard)");
-        System.out.println("----------------------------");
+        // Play the media once the ad break is over
+        session.startAfterAd(AD_DURATION_MILLIS, media, () -> {
+            EventLog.info("FreeUser", "Now playing: {}", media.getTitle());
+            startedPlaying(media, getUserType().getMaxQuality());
+            media.play();
+            
+            // Free user specific message
+            EventLog.info("FreeUser", "(Audio quality: up to {})", getUserType().getMaxQuality());
+            EventLog.info("FreeUser", "----------------------------");
+        });
     }
     
     /**
@@ -87,12 +107,16 @@ public class FreeUser extends User {
      * 
      * PURPOSE:
      * Allows free users to skip tracks within their limit.
-     * Increments skip count each time a skip is performed.
+     * Up to MAX_SKIPS skips in a row; after that one skip becomes available
+     * again every SKIP_WINDOW_MILLIS / MAX_SKIPS (no reset needed). This is
+     * a rate, not a hard count per window: see SkipLimiter.
+     * Safe to call concurrently from several devices of the same account.
+     * A successful skip moves the play queue on (see User.skipInQueue).
      */
     public boolean skipTrack() {
-        if (skipCount < MAX_SKIPS) {
-            skipCount++;
-            System.out.println("Track skipped. Skips used: " + skipCount + "/" + MAX_SKIPS);
+        if (SKIP_LIMITER.tryAcquire(skipState)) {
+            System.out.println("Track skipped. Skips used: " + getSkipCount() + "/" + MAX_SKIPS);
+            skipInQueue();
             return true;
         } else {
             System.out.println("Cannot skip! Maximum skips (" + MAX_SKIPS + ") reached.");
@@ -107,15 +131,11 @@ public class FreeUser extends User {
      * PURPOSE:
      * Simulates showing an advertisement to free users.
      * This is a FreeUser-specific behavior.
+     * The ad's duration is not waited for here; play() schedules the
+     * track start AD_DURATION_MILLIS later instead.
      */
     private void showAdvertisement() {
-        System.out.println("Advertisement: Try Premium for ad-free experience!");
-        // Simulate ad display time
-        try {
-            Thread.sleep(1000); // Simulate 1 second ad
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        EventLog.info("FreeUser", "Advertisement: Try Premium for ad-free experience!");
     }
     
     /**
@@ -134,25 +154,44 @@ public class FreeUser extends User {
         return false;
     }
     
+    /**
+     * OVERRIDDEN METHOD: getUserType
+     * 
+     * @return UserType.FREE
+     */
+    @Override
+    public UserType getUserType() {
+        return UserType.FREE;
+    }
+    
     /**
      * METHOD: resetSkipCount
      * 
      * PURPOSE:
-     * Resets the skip counter (could be called daily or per session).
-     * Useful for implementing daily skip limits.
+     * Resets the skip counter, giving back the full quota immediately.
+     * Not needed for normal operation: the quota refills as time passes.
      */
     public void resetSkipCount() {
-        skipCount = 0;
+        SKIP_LIMITER.reset(skipState);
         System.out.println("Skip counter reset. You now have " + MAX_SKIPS + " skips available.");
     }
     
     /**
      * GETTER: getSkipCount
      * 
-     * @return Current number of skips used
+     * @return Number of skips used within the current window
      */
     public int getSkipCount() {
-        return skipCount;
+        return MAX_SKIPS - SKIP_LIMITER.remaining(skipState);
+    }
+    
+    /**
+     * GETTER: getPlaybackSession
+     * 
+     * @return This user's playback session (ad break state, now playing)
+     */
+    public PlaybackSession getPlaybackSession() {
+        return session;
     }
     
     /**
@@ -170,7 +209,7 @@ public class FreeUser extends User {
      * @return Number of skips remaining
      */
     public int getRemainingSkips() {
-        return MAX_SKIPS - skipCount;
+        return SKIP_LIMITER.remaining(skipState);
     }
     
     /**
@@ -186,7 +225,7 @@ public class FreeUser extends User {
     public void displayUserInfo() {
         super.displayUserInfo(); // Call parent class method
         System.out.println("Account Type: Free Tier");
-        System.out.println("Skips Used: " + skipCount + "/" + MAX_SKIPS);
+        System.out.println("Skips Used: " + getSkipCount() + "/" + MAX_SKIPS);
         System.out.println("Downloads Allowed: No");
         System.out.println("Ads: Yes");
     }
@@ -1,7 +1,16 @@
 package musicStreaming.users;
 
 import musicstreaming.users.User;
+import java.io.IOException;
+import java.nio.file.Path;
+import musicStreaming.downloads.DownloadManager;
+import musicStreaming.downloads.DownloadTask;
+import musicStreaming.enums.UserType;
+import musicStreaming.events.EventLog;
+import musicStreaming.enums.PlaybackQuality;
 import musicStreaming.media.Media;
+import musicStreaming.offline.OfflineCache;
+import musicstreaming.interfaces.DownloadListener;
 
 /**
  * CONCRETE CLASS: PremiumUser
@@ -24,8 +33,13 @@ import musicStreaming.media.Media;
  */
 public class PremiumUser extends User {
     
+    // CONSTANTS
+    private static final PlaybackQuality DOWNLOAD_QUALITY = PlaybackQuality.HIGH; // Quality stored offline
+    
     // INSTANCE VARIABLES
-    private boolean offlineModeEnabled; // Tracks if user has enabled offline mode
+    private volatile boolean offlineModeEnabled; // Tracks if user has enabled offline mode
+    private volatile DownloadManager downloadManager; // Where this user's downloads run
+    private volatile OfflineCache offlineCache; // What is stored on this device (null = no cache)
     
     /**
      * CONSTRUCTOR: PremiumUser
@@ -39,6 +53,7 @@ public class PremiumUser extends User {
     public PremiumUser(String userId, String username) {
         super(userId, username); // Call parent class constructor
         this.offlineModeEnabled = false; // Start with offline mode disabled
+        this.downloadManager = DownloadManager.getShared();
     }
     
     /**
@@ -57,43 +72,143 @@ public class PremiumUser extends User {
      */
     @Override
     public void play(Media media) {
-        System.out.println("--- Premium User Playback ---");
+        EventLog.info("PremiumUser", "--- Premium User Playback ---");
         
         // No advertisements for premium users
         
         // Play the media with premium features
-        System.out.println("Now playing: " + media.getTitle());
+        EventLog.info("PremiumUser", "Now playing: {}", media.getTitle());
+        startedPlaying(media, getUserType().getMaxQuality());
         media.play();
         
         // Premium user benefits
-        System.out.println("(Audio quality: High)");
-        System.out.println("(No advertisements)");
-        System.out.println("-------------------------------");
+        EventLog.info("PremiumUser", "(Audio quality: up to {})", getUserType().getMaxQuality());
+        EventLog.info("PremiumUser", "(No advertisements)");
+        EventLog.info("PremiumUser", "-------------------------------");
     }
     
     /**
      * METHOD: downloadMedia
      * 
      * @param media The media item to download
+     * @return Handle to follow or cancel the download (null if not allowed)
      * 
      * PURPOSE:
      * Allows premium users to download media for offline playback.
      * This is a PremiumUser-exclusive feature.
+     * 
+     * NON-BLOCKING:
+     * The download is queued on the DownloadManager and runs in chunks on its
+     * worker pool; this method returns immediately. Offline mode is enabled
+     * once the file is complete.
      */
-    public void downloadMedia(Media media) {
-        if (canDownload()) {
-            System.out.println("Downloading '" + media.getTitle() + "' for offline use...");
-            // Simulate download process
-            try {
-                Thread.sleep(500); // Simulate download time
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-            System.out.println("Download complete! You can now listen offline.");
+    public DownloadTask downloadMedia(Media media) {
+        return downloadMedia(media, null);
+    }
+    
+    /**
+     * METHOD: downloadMedia (with progress callbacks)
+     * 
+     * @param media    The media item to download
+     * @param listener Receives progress/completion callbacks, may be null
+     * @return Handle to follow or cancel the download (null if not allowed)
+     */
+    public DownloadTask downloadMedia(Media media, DownloadListener listener) {
+        if (!canDownload()) {
+            return null;
+        }
+        EventLog.info("PremiumUser", "Downloading '{}' for offline use...", media.getTitle());
+        DownloadTask task = downloadManager.submit(getUserId(), media, listener);
+        task.getCompletion().thenAccept(file -> {
+            storeOffline(media, file);
+            EventLog.info("PremiumUser", "Download complete! You can now listen offline.");
             offlineModeEnabled = true;
+        });
+        return task;
+    }
+    
+    /**
+     * METHOD: storeOffline
+     * 
+     * @param media The downloaded media
+     * @param file  The finished download
+     * 
+     * PURPOSE:
+     * Hands a finished download to the offline cache (if one is set), which
+     * indexes it and enforces the device's storage quota.
+     */
+    private void storeOffline(Media media, Path file) {
+        OfflineCache cache = offlineCache;
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.put(media.getId(), DOWNLOAD_QUALITY, file);
+        } catch (IOException e) {
+            EventLog.warn("PremiumUser", "Could not store '{}' offline", media.getTitle());
+        }
+    }
+    
+    /**
+     * METHOD: getOfflineFile
+     * 
+     * @param media The media to look up
+     * @return The stored file, or null if the media is not available offline
+     * 
+     * PURPOSE:
+     * Offline playback lookup: an O(1) index lookup, no directory scan.
+     */
+    public Path getOfflineFile(Media media) {
+        OfflineCache cache = offlineCache;
+        if (cache == null) {
+            return null;
+        }
+        try {
+            return cache.get(media.getId(), DOWNLOAD_QUALITY);
+        } catch (IOException e) {
+            return null;
         }
     }
     
+    /**
+     * METHOD: isAvailableOffline
+     * 
+     * @param media The media to check
+     * @return true if the media is stored on this device
+     */
+    public boolean isAvailableOffline(Media media) {
+        OfflineCache cache = offlineCache;
+        return cache != null && cache.contains(media.getId(), DOWNLOAD_QUALITY);
+    }
+    
+    /**
+     * SETTER: setOfflineCache
+     * 
+     * @param offlineCache Device cache that finished downloads are stored in
+     */
+    public void setOfflineCache(OfflineCache offlineCache) {
+        this.offlineCache = offlineCache;
+    }
+    
+    /**
+     * GETTER: getOfflineCache
+     * 
+     * @return The device's offline cache, or null if none is set
+     */
+    public OfflineCache getOfflineCache() {
+        return offlineCache;
+    }
+    
+    /**
+     * SETTER: setDownloadManager
+     * 
+     * @param downloadManager Manager to run this user's downloads on
+     *                        (defaults to the shared one)
+     */
+    public void setDownloadManager(DownloadManager downloadManager) {
+        this.downloadManager = downloadManager;
+    }
+    
     /**
      * OVERRIDDEN METHOD: canDownload
      * 
@@ -110,6 +225,16 @@ public class PremiumUser extends User {
         return true;
     }
     
+    /**
+     * OVERRIDDEN METHOD: getUserType
+     * 
+     * @return UserType.PREMIUM
+     */
+    @Override
+    public UserType getUserType() {
+        return UserType.PREMIUM;
+    }
+    
     /**
      * METHOD: enableOfflineMode
      * 
@@ -142,9 +267,11 @@ public class PremiumUser extends User {
      * PURPOSE:
      * Premium users can skip tracks without limitations.
      * Always returns true (unlimited skips).
+     * Moves the play queue on (see User.skipInQueue).
      */
     public boolean skipTrack() {
         System.out.println("Track skipped. (Unlimited skips available)");
+        skipInQueue();
         return true; // Premium users always can skip
     }
     
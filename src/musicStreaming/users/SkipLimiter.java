@@ -0,0 +1,149 @@
+package musicstreaming.users;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * CLASS: SkipLimiter
+ * 
+ * PURPOSE:
+ * Skip quota that refills over time ("N skips per window") whose whole
+ * per-user state is ONE long, updated lock-free with compare-and-set.
+ * 
+ * WHAT IT GUARANTEES:
+ * - At most N skips in a burst; after that one skip every window / N
+ * - Over long periods at most N skips per window on average
+ * - It is a token bucket, NOT a sliding-window count: a user who saves up
+ *   a full quota can make up to 2N - 1 skips in one window (N at its start,
+ *   N - 1 refilled during it)
+ * 
+ * WHY THIS CLASS EXISTS:
+ * FreeUser used a plain int skipCount that was only reset by hand. It was
+ * not safe when the same account skipped from two devices at once, and it
+ * had no notion of time. Resetting millions of counters on a schedule would
+ * need a sweep over every user.
+ * 
+ * HOW IT WORKS (generic cell rate algorithm):
+ * - Each skip "costs" interval = window / limit milliseconds
+ * - Time is counted in ticks of 1 / limit ms, so the interval is exactly
+ *   windowMillis ticks and the window limit * windowMillis ticks: no
+ *   rounding, the burst is exactly N for any window
+ * - The state is the theoretical time at which the quota is fully refilled
+ *   ("tat", in ticks); 0 means the quota is full
+ * - A skip is allowed if tat - now leaves room for one more skip within the
+ *   window, and then moves tat forward by one interval
+ * - Refill is lazy: time passing is the refill, nothing ever has to visit
+ *   idle users to reset them
+ * 
+ * The limiter itself holds only configuration, so one instance is shared by
+ * every user of a tier; each user owns its AtomicLong state.
+ * 
+ * @author Sima
+ */
+public class SkipLimiter {
+    
+    // Keeps now * limit (ticks) far from overflow for any real clock
+    private static final int MAX_LIMIT = 1 << 20;
+    private static final long MAX_WINDOW_MILLIS = 1L << 40;
+    
+    private final int limit;          // Skips allowed per window
+    private final long windowMillis;   // Window length; also the cost of one skip in ticks
+    private final long windowTicks;    // Window length in ticks (limit * windowMillis)
+    private final LongSupplier clock;  // Milliseconds, replaceable for testing
+    
+    /**
+     * CONSTRUCTOR: SkipLimiter
+     * 
+     * @param limit        Burst size, and skips refilled per window
+     * @param windowMillis Time in which the whole quota refills
+     */
+    public SkipLimiter(int limit, long windowMillis) {
+        this(limit, windowMillis, System::currentTimeMillis);
+    }
+    
+    /**
+     * CONSTRUCTOR: SkipLimiter (with clock)
+     * 
+     * @param limit        Burst size, and skips refilled per window
+     * @param windowMillis Time in which the whole quota refills
+     * @param clock        Source of the current time in milliseconds
+     */
+    public SkipLimiter(int limit, long windowMillis, LongSupplier clock) {
+        if (limit <= 0 || limit > MAX_LIMIT || windowMillis <= 0 || windowMillis > MAX_WINDOW_MILLIS) {
+            throw new IllegalArgumentException("Invalid skip limit or window");
+        }
+        this.limit = limit;
+        this.windowMillis = windowMillis;
+        this.windowTicks = windowMillis * limit;
+        this.clock = clock;
+    }
+    
+    /**
+     * METHOD: tryAcquire
+     * 
+     * @param state The user's packed skip state
+     * @return true if the skip is allowed (and has been counted)
+     * 
+     * PURPOSE:
+     * Atomically checks and consumes one skip. Safe to call concurrently
+     * for the same user from several devices.
+     */
+    public boolean tryAcquire(AtomicLong state) {
+        long now = clock.getAsLong() * limit;
+        while (true) {
+            long current = state.get();
+            long tat = Math.max(current, now);
+            // Allowed while the debt after this skip still fits in the window
+            if (tat + windowMillis - now > windowTicks) {
+                return false;
+            }
+            if (state.compareAndSet(current, tat + windowMillis)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * METHOD: remaining
+     * 
+     * @param state The user's packed skip state
+     * @return Skips the user could make right now
+     */
+    public int remaining(AtomicLong state) {
+        long now = clock.getAsLong() * limit;
+        long debt = Math.max(state.get(), now) - now;
+        // Each started interval of debt is one skip still "in the window"
+        long used = (debt + windowMillis - 1) / windowMillis;
+        return (int) Math.max(0, limit - used);
+    }
+    
+    /**
+     * METHOD: reset
+     * 
+     * @param state The user's packed skip state
+     * 
+     * PURPOSE:
+     * Gives the user the full quota back immediately.
+     */
+    public void reset(AtomicLong state) {
+        state.set(0L);
+    }
+    
+    /**
+     * GETTER: getLimit
+     * 
+     * @return Skips allowed per window
+     */
+    public int getLimit() {
+        return limit;
+    }
+    
+    /**
+     * GETTER: getWindowMillis
+     * 
+     * @return Window length in milliseconds
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+}
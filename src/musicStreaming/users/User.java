@@ -1,8 +1,20 @@
 package musicstreaming.users;
 
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import musicStreaming.charts.TrendingCharts;
+import musicStreaming.enums.PlaybackQuality;
+import musicStreaming.enums.UserType;
+import musicStreaming.events.EventLog;
+import musicStreaming.events.PlayEventLog;
 import musicStreaming.media.Media;
+import musicStreaming.playback.PlayQueue;
+import musicStreaming.playback.PrefetchedAudio;
+import musicStreaming.streaming.AudioStream;
+import musicStreaming.streaming.BitrateController;
+import musicStreaming.streaming.StreamingEngine;
 import musicstreaming.playlists.Library;
 import musicstreaming.playlists.Playlist;
 
@@ -30,10 +42,18 @@ import musicstreaming.playlists.Playlist;
 public abstract class User {
     
     // PRIVATE FIELDS (ENCAPSULATION)
-    private String userId;          // Unique identifier for each user
-    private String username;        // Display name of the user
-    private Library<Media> library; // User's personal media collection
-    private List<Playlist<? extends Media>> playlists; // User's playlists
+    // WHY volatile: the same account may be used from several devices
+    private volatile String userId;   // Unique identifier for each user
+    private volatile String username; // Display name of the user
+    // WHY volatile: created lazily on first use (most accounts never touch
+    // them in a session), possibly from several devices at once
+    private volatile Library<Media> library; // User's personal media collection
+    private volatile List<Playlist<? extends Media>> playlists; // User's playlists
+    private volatile PlayQueue playQueue; // "Up next", with read-ahead
+    // Current play, for the play-event log (guarded by "this")
+    private Media playing;
+    private long playingSince;
+    private PlaybackQuality playingQuality;
     
     /**
      * CONSTRUCTOR: User
@@ -45,12 +65,13 @@ public abstract class User {
      * Initializes a new User object with basic information.
      * Note: This constructor is protected because User is abstract
      * and can only be called by child classes.
+     * The library and playlist list are created on first use (see
+     * getLibrary/getPlaylists), so a materialized account that is only
+     * looked up costs no collection memory.
      */
     protected User(String userId, String username) {
         this.userId = userId;
         this.username = username;
-        this.library = new Library<>(); // Initialize empty library
-        this.playlists = new ArrayList<>(); // Initialize empty playlist list
     }
     
     // ABSTRACT METHODS (MUST BE IMPLEMENTED BY CHILD CLASSES)
@@ -80,6 +101,17 @@ public abstract class User {
      */
     public abstract boolean canDownload();
     
+    /**
+     * ABSTRACT METHOD: getUserType
+     * 
+     * @return The account tier of this user
+     * 
+     * PURPOSE:
+     * Lets tier-wide features (user directory counts, quality caps) work
+     * from the UserType enum instead of instanceof checks.
+     */
+    public abstract UserType getUserType();
+    
     // CONCRETE METHODS (COMMON TO ALL USERS)
     
     /**
@@ -95,7 +127,7 @@ public abstract class User {
      */
     public Playlist<Media> createPlaylist(String name) {
         Playlist<Media> newPlaylist = new Playlist<>(name);
-        playlists.add(newPlaylist);
+        getPlaylists().add(newPlaylist);
         System.out.println("Playlist '" + name + "' created successfully.");
         return newPlaylist;
     }
@@ -110,23 +142,153 @@ public abstract class User {
      * This represents the user's saved/liked media collection.
      */
     public void addToLibrary(Media media) {
-        library.add(media);
-        System.out.println("Added '" + media.getTitle() + "' to your library.");
+        getLibrary().add(media);
+        EventLog.info("User", "Added '{}' to your library.", media.getTitle());
+    }
+    
+    /**
+     * METHOD: stream
+     * 
+     * @param media The media item to send
+     * @param sink  Where the audio goes (client socket, pipe or file)
+     * @return Handle to follow or stop the stream
+     * 
+     * PURPOSE:
+     * Streams real audio to one of this user's devices. The quality adapts
+     * to how fast the device takes the data, capped by the account tier
+     * (getUserType().getMaxQuality()). If media is the play queue's current
+     * item, its read-ahead bytes are sent from memory.
+     */
+    public AudioStream stream(Media media, WritableByteChannel sink) {
+        PlayQueue queue = playQueue;
+        PrefetchedAudio head = queue == null ? null : queue.takePrefetched(media);
+        return StreamingEngine.getShared().stream(media, sink, null, new BitrateController(getUserType()), head);
+    }
+    
+    /**
+     * METHOD: playNext
+     * 
+     * @return false if nothing is queued
+     * 
+     * PURPOSE:
+     * Moves the play queue to its next item and plays it. The start of that
+     * item was normally read ahead already (see PlayQueue).
+     */
+    public boolean playNext() {
+        Media next = getPlayQueue().advance();
+        if (next == null) {
+            EventLog.info("User", "Play queue is empty.");
+            return false;
+        }
+        play(next);
+        return true;
+    }
+    
+    /**
+     * METHOD: skipInQueue
+     * 
+     * PURPOSE:
+     * Called by skipTrack() once a skip is allowed: cancels read-ahead that
+     * is still in flight and plays the next queued item, if any.
+     */
+    protected void skipInQueue() {
+        PlayQueue queue = playQueue;
+        if (queue == null) {
+            return; // Nothing was ever queued
+        }
+        Media next = queue.skip();
+        if (next != null) {
+            play(next);
+        }
+    }
+    
+    /**
+     * METHOD: startedPlaying
+     * 
+     * @param media   The media that just started
+     * @param quality The quality it is played at
+     * 
+     * PURPOSE:
+     * Called by play() implementations when a track actually starts. The
+     * track that was playing before is recorded in the PlayEventLog with
+     * the time it was really heard (at most its duration), and the new one
+     * counts towards the TrendingCharts.
+     * Runs on playback scheduler threads (e.g. after a FreeUser ad break),
+     * so it never waits on the log: see recordPlay.
+     */
+    protected void startedPlaying(Media media, PlaybackQuality quality) {
+        long now = System.currentTimeMillis();
+        Media ended;
+        long endedSince;
+        PlaybackQuality endedQuality;
+        synchronized (this) {
+            ended = playing;
+            endedSince = playingSince;
+            endedQuality = playingQuality;
+            playing = media;
+            playingSince = now;
+            playingQuality = quality;
+        }
+        recordPlay(ended, endedSince, endedQuality, now);
+        TrendingCharts.getShared().record(media, now);
+    }
+    
+    /**
+     * METHOD: stopPlayback
+     * 
+     * PURPOSE:
+     * Ends the current play (user stopped, logged out) and records it.
+     * The play queue is cleared, which returns its read-ahead buffers to
+     * the shared pool.
+     */
+    public void stopPlayback() {
+        long now = System.currentTimeMillis();
+        Media ended;
+        long endedSince;
+        PlaybackQuality endedQuality;
+        synchronized (this) {
+            ended = playing;
+            endedSince = playingSince;
+            endedQuality = playingQuality;
+            playing = null;
+        }
+        recordPlay(ended, endedSince, endedQuality, now);
+        PlayQueue queue = playQueue;
+        if (queue != null) {
+            queue.clear();
+        }
+    }
+    
+    // Called WITHOUT the lock. recordOrDefer never parks: a full ring must
+    // not stall this user's lock or the shared playback scheduler threads.
+    private void recordPlay(Media media, long since, PlaybackQuality quality, long now) {
+        if (media == null) {
+            return;
+        }
+        long listened = now - since;
+        if (media.getDuration() > 0) {
+            listened = Math.min(listened, media.getDuration() * 1000L);
+        }
+        PlayEventLog.getShared().recordOrDefer(userId, media.getId(), now, (int) listened, quality);
     }
     
     /**
      * METHOD: searchLibrary
      * 
      * @param keyword The search term
+     * @return The matching media, in the order they were saved
      * 
      * PURPOSE:
      * Searches for media in the user's personal library.
      * Delegates the search to the Library class.
      */
-    
-//    public void searchLibrary(String keyword) {  // need searchable in library class!!!!!!!!!!!!!!!!!!!!!!!!!!
-//        library.search(keyword);
-//    }
+    public ArrayList<Media> searchLibrary(String keyword) {
+        Library<Media> current = library;
+        if (current == null) {
+            return new ArrayList<>(); // Nothing saved: do not create a library
+        }
+        return current.search(keyword);
+    }
     
     
     /**
@@ -140,8 +302,11 @@ public abstract class User {
         System.out.println("User ID: " + userId);
         System.out.println("Username: " + username);
         System.out.println("User Type: " + this.getClass().getSimpleName());
-        System.out.println("Playlists: " + playlists.size());
-        System.out.println("Library Items: " + library.getSavedItems().size());
+        // Read the fields directly: showing "0" must not create empty collections
+        List<Playlist<? extends Media>> currentPlaylists = playlists;
+        Library<Media> currentLibrary = library;
+        System.out.println("Playlists: " + (currentPlaylists == null ? 0 : currentPlaylists.size()));
+        System.out.println("Library Items: " + (currentLibrary == null ? 0 : currentLibrary.size()));
     }
     
     // GETTERS AND SETTERS (ENCAPSULATION)
@@ -185,21 +350,125 @@ public abstract class User {
     /**
      * GETTER: getLibrary
      * 
-     * @return The user's media library
+     * @return The user's media library (created on first call)
      */
     public Library<Media> getLibrary() {
-        return library;
+        Library<Media> current = library;
+        if (current == null) {
+            synchronized (this) {
+                current = library;
+                if (current == null) {
+                    current = new Library<>(userId); // Reports to SavedByIndex
+                    library = current;
+                }
+            }
+        }
+        return current;
     }
     
     /**
      * GETTER: getPlaylists
      * 
-     * @return List of user's playlists
+     * @return List of user's playlists (created on first call)
      */
     public List<Playlist<? extends Media>> getPlaylists() {
+        List<Playlist<? extends Media>> current = playlists;
+        if (current == null) {
+            synchronized (this) {
+                current = playlists;
+                if (current == null) {
+                    // Lock-free reads, snapshot iteration across devices
+                    current = new CopyOnWriteArrayList<>();
+                    playlists = current;
+                }
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * GETTER: getLibraryIfCreated
+     * 
+     * @return The user's library, or null if nothing has created it yet
+     *         (for code that must not create one, e.g. storage)
+     */
+    public Library<Media> getLibraryIfCreated() {
+        return library;
+    }
+    
+    /**
+     * GETTER: getPlaylistsIfCreated
+     * 
+     * @return List of user's playlists, or null if nothing has created it yet
+     */
+    public List<Playlist<? extends Media>> getPlaylistsIfCreated() {
         return playlists;
     }
     
+    /**
+     * GETTER: getStateVersion
+     * 
+     * @return A value that changes whenever the library, the playlist list
+     *         or any playlist changes (compare for equality only); lets
+     *         storage notice edits made while it was writing them
+     */
+    public long getStateVersion() {
+        Library<Media> currentLibrary = library;
+        long version = currentLibrary == null ? 0 : currentLibrary.getModificationCount();
+        List<Playlist<? extends Media>> currentPlaylists = playlists;
+        if (currentPlaylists != null) {
+            // Playlist versions start at a random epoch per object, so
+            // adding, removing or reordering playlists changes this too
+            for (Playlist<? extends Media> playlist : currentPlaylists) {
+                version = 31 * version + playlist.getVersion();
+            }
+        }
+        return version;
+    }
+    
+    /**
+     * GETTER: getResidentItemCount
+     * 
+     * @return Library items plus playlist items held on the heap right now
+     *         (never creates the library or playlist list)
+     */
+    public int getResidentItemCount() {
+        int items = 0;
+        Library<Media> currentLibrary = library;
+        if (currentLibrary != null) {
+            items += currentLibrary.size();
+        }
+        List<Playlist<? extends Media>> currentPlaylists = playlists;
+        if (currentPlaylists != null) {
+            for (Playlist<? extends Media> playlist : currentPlaylists) {
+                items += playlist.size();
+            }
+        }
+        return items;
+    }
+    
+    /**
+     * GETTER: getPlayQueue
+     * 
+     * @return The user's play queue (created on first call)
+     */
+    public PlayQueue getPlayQueue() {
+        PlayQueue current = playQueue;
+        if (current == null) {
+            synchronized (this) {
+                current = playQueue;
+                if (current == null) {
+                    // Read ahead the file a stream will start on (the
+                    // tier's start quality if that variant exists)
+                    PlaybackQuality start = new BitrateController(getUserType()).getQuality();
+                    current = new PlayQueue(media -> StreamingEngine.getShared().locateStart(media, start));
+                    playQueue = current;
+                }
+            }
+        }
+        return current;
+    }
+    
     /**
      * METHOD: toString
      * 
@@ -0,0 +1,589 @@
+package musicstreaming.users;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+import musicStreaming.enums.UserType;
+import musicStreaming.events.EventLog;
+import musicStreaming.users.PremiumUser;
+import musicstreaming.interfaces.UserStateStore;
+
+/**
+ * CLASS: UserDirectory
+ * 
+ * PURPOSE:
+ * Registry of every account on the node: O(1) concurrent lookup by user id,
+ * per-tier counts, and User objects created only for accounts in use.
+ * 
+ * WHY THIS CLASS EXISTS:
+ * Nothing kept track of User objects; finding one by getUserId() meant a
+ * linear scan of whatever list the caller had. Keeping 50M fully built User
+ * objects (each with its Library and playlist list) on the heap would not
+ * fit on one node either.
+ * 
+ * MEMORY LAYOUT (per account, not materialized):
+ * - id and username as length-prefixed UTF-8 in a paged byte arena
+ *   (no String objects, no per-account object headers)
+ * - one int hash, two long arena references and one tier byte in paged
+ *   primitive columns, indexed by the account's slot number
+ * - one int in an open-addressing hash table (slot + 1, 0 = empty)
+ * That is ~26 bytes + the id/username bytes per account, versus several
+ * hundred bytes for a materialized User.
+ * 
+ * MATERIALIZATION:
+ * - get() builds the FreeUser/PremiumUser from the record on first access
+ *   and keeps it until release()
+ * - The User's Library and playlists are themselves created lazily (see
+ *   User.getLibrary), so a looked-up account stays small
+ * - With a UserStateStore set (see setStateStore), release() first hands
+ *   the library and playlists to the store and get() brings them back, so
+ *   idle accounts can leave the heap without losing anything
+ * - While a User is being spilled it is marked as evicting: get() for that
+ *   id waits until it is dropped or kept, so nobody gets a User whose
+ *   state is being written, or builds one from a file not written yet.
+ *   The mark is checked again inside the map's computeIfAbsent, so a
+ *   get() that got past the first check cannot build a second User
+ *   while an eviction has the first one out of the map.
+ *   Edits made meanwhile through a User obtained before (see
+ *   User.getStateVersion) are spilled again; a User that keeps changing
+ *   is kept
+ * 
+ * CONCURRENCY:
+ * - Lookups use a StampedLock optimistic read: no lock is taken unless a
+ *   writer (register/resize) ran at the same moment, then they retry
+ *   under the read lock
+ * - Writers (register, setUserType, release) take the write lock
+ * - Tier counts are atomic and can be read at any time
+ * 
+ * NOTE: the user id is the key; it must not be changed with setUserId()
+ * while the account is registered.
+ * 
+ * @author Sima
+ */
+public class UserDirectory {
+    
+    // Column pages of 64K slots: growing never copies existing columns
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    
+    // Arena pages of 1 MB; a record never spans two pages
+    private static final int ARENA_PAGE_SIZE = 1 << 20;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    
+    private final StampedLock lock = new StampedLock();
+    
+    // Columns, indexed by slot (guarded by lock)
+    private int[][] hashPages = new int[0][];
+    private long[][] idPages = new long[0][];
+    private long[][] namePages = new long[0][];
+    private byte[][] tierPages = new byte[0][];
+    
+    // String arena (guarded by lock)
+    private byte[][] arena = new byte[0][];
+    private int arenaOffset = ARENA_PAGE_SIZE; // Forces a first page
+    
+    // Open-addressing index: slot + 1, 0 = empty (guarded by lock)
+    private int[] table = new int[16];
+    private int count;
+    
+    private final AtomicLongArray tierCounts = new AtomicLongArray(UserType.values().length);
+    
+    // Spill attempts before a User that keeps changing is kept instead
+    private static final int MAX_SPILLS = 3;
+    
+    // Accounts currently in use as full User objects
+    private final ConcurrentHashMap<String, User> materialized = new ConcurrentHashMap<String, User>();
+    // Users being dropped; completed once dropped or kept
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> evicting = new ConcurrentHashMap<String, CompletableFuture<Void>>();
+    
+    // Where released accounts keep their state; null: state is dropped
+    private volatile UserStateStore stateStore;
+    
+    /**
+     * SETTER: setStateStore
+     * 
+     * @param stateStore where released users keep their library and
+     *                   playlists, or null to drop them on release
+     */
+    public void setStateStore(UserStateStore stateStore) {
+        this.stateStore = stateStore;
+    }
+    
+    /**
+     * METHOD: register
+     * 
+     * @param user An existing user object
+     * @return true if registered, false if the id is already taken
+     * 
+     * PURPOSE:
+     * Adds the account and keeps the given object as its materialized User.
+     */
+    public boolean register(User user) {
+        if (!register(user.getUserId(), user.getUsername(), user.getUserType())) {
+            return false;
+        }
+        materialized.put(user.getUserId(), user);
+        UserStateStore store = stateStore;
+        if (store != null) {
+            store.accessed(user);
+        }
+        return true;
+    }
+    
+    /**
+     * METHOD: register (bulk form)
+     * 
+     * @param userId   Unique id
+     * @param username Display name
+     * @param type     Account tier
+     * @return true if registered, false if the id is already taken
+     * 
+     * PURPOSE:
+     * Adds an account WITHOUT building a User object - the form to use when
+     * loading millions of accounts at startup.
+     */
+    public boolean register(String userId, String username, UserType type) {
+        byte[] id = encode(userId);
+        byte[] name = encode(username);
+        int hash = hash(id);
+        long stamp = lock.writeLock();
+        try {
+            if (find(id, hash) >= 0) {
+                return false;
+            }
+            int slot = count;
+            ensureSlot(slot);
+            hashPages[slot >>> PAGE_BITS][slot & PAGE_MASK] = hash;
+            idPages[slot >>> PAGE_BITS][slot & PAGE_MASK] = store(id);
+            namePages[slot >>> PAGE_BITS][slot & PAGE_MASK] = store(name);
+            tierPages[slot >>> PAGE_BITS][slot & PAGE_MASK] = (byte) type.ordinal();
+            count++;
+            if (count * 4L > table.length * 3L) {
+                rehash(table.length * 2);
+            }
+            insert(hash, slot);
+            tierCounts.incrementAndGet(type.ordinal());
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * METHOD: get
+     * 
+     * @param userId The id to look up
+     * @return The User, built on first access, or null if unknown or null
+     * 
+     * PURPOSE:
+     * A User built here gets its stored library and playlists back from the
+     * UserStateStore before any caller can see it. If the User is being
+     * released, waits until it is dropped (then builds it again) or kept.
+     */
+    public User get(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        UserStateStore store = stateStore;
+        User user;
+        while (true) {
+            CompletableFuture<Void> eviction;
+            while ((eviction = evicting.get(userId)) != null) {
+                eviction.join();
+            }
+            user = materialized.get(userId);
+            if (user != null) {
+                break;
+            }
+            int slot = lookup(userId);
+            if (slot < 0) {
+                return null;
+            }
+            user = materialized.computeIfAbsent(userId, id -> {
+                // Checked under the map's lock for this id: an eviction
+                // that started since the loop above may have the User out
+                // of the map for now and put it back. Build nothing then
+                if (evicting.containsKey(id)) {
+                    return null;
+                }
+                User built = materialize(slot);
+                if (store != null) {
+                    store.restore(built);
+                }
+                return built;
+            });
+            if (user != null) {
+                break;
+            }
+        }
+        if (store != null) {
+            store.accessed(user);
+        }
+        return user;
+    }
+    
+    /**
+     * METHOD: getIfMaterialized
+     * 
+     * @param userId The id to look up
+     * @return The User if it is currently held, else null (never
+     *         materializes and does not count as an access)
+     */
+    public User getIfMaterialized(String userId) {
+        return userId == null ? null : materialized.get(userId);
+    }
+    
+    /**
+     * METHOD: contains
+     * 
+     * @param userId The id to check
+     * @return true if the account is registered
+     */
+    public boolean contains(String userId) {
+        return lookup(userId) >= 0;
+    }
+    
+    /**
+     * METHOD: getUserType
+     * 
+     * @param userId The id to look up
+     * @return The account tier, or null if unknown (never materializes)
+     */
+    public UserType getUserType(String userId) {
+        int slot = lookup(userId);
+        if (slot < 0) {
+            return null;
+        }
+        long stamp = lock.readLock();
+        try {
+            return UserType.values()[tierPages[slot >>> PAGE_BITS][slot & PAGE_MASK]];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * METHOD: getUsername
+     * 
+     * @param userId The id to look up
+     * @return The stored username, or null if unknown or null (never materializes)
+     */
+    public String getUsername(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        User user = materialized.get(userId);
+        if (user != null) {
+            return user.getUsername();
+        }
+        int slot = lookup(userId);
+        if (slot < 0) {
+            return null;
+        }
+        long stamp = lock.readLock();
+        try {
+            return load(namePages[slot >>> PAGE_BITS][slot & PAGE_MASK]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * METHOD: setUserType
+     * 
+     * @param userId The account to change
+     * @param type   The new tier (e.g. after an upgrade)
+     * @return true if the account exists
+     * 
+     * PURPOSE:
+     * Changes the stored tier and the per-tier counts. A materialized User of
+     * the old tier is dropped as by release(), so the next get() builds the
+     * right subclass (its state is spilled first and comes back with it).
+     * If its state cannot be kept, the old User stays in use until a later
+     * release() succeeds.
+     */
+    public boolean setUserType(String userId, UserType type) {
+        byte[] id = encode(userId);
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(id, hash(id));
+            if (slot < 0) {
+                return false;
+            }
+            byte[] page = tierPages[slot >>> PAGE_BITS];
+            int old = page[slot & PAGE_MASK];
+            if (old != type.ordinal()) {
+                page[slot & PAGE_MASK] = (byte) type.ordinal();
+                tierCounts.decrementAndGet(old);
+                tierCounts.incrementAndGet(type.ordinal());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        // Outside the lock: spilling writes files
+        User current = materialized.get(userId);
+        if (current != null && current.getUserType() != type && !evict(userId, current)) {
+            EventLog.warn("UserDirectory", "Kept {} with its old tier: its state could not be spilled", userId);
+        }
+        return true;
+    }
+    
+    /**
+     * METHOD: release
+     * 
+     * @param userId The account that is no longer in use
+     * 
+     * PURPOSE:
+     * Drops the materialized User, writing its username back to the
+     * compact record first. Its library and playlists are handed to the
+     * UserStateStore if one is set (if it cannot keep them, the User is
+     * not dropped), otherwise they go with it.
+     */
+    public void release(String userId) {
+        User user = userId == null ? null : materialized.get(userId);
+        if (user == null || !evict(userId, user)) {
+            return;
+        }
+        byte[] id = encode(userId);
+        byte[] name = encode(user.getUsername());
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(id, hash(id));
+            if (slot >= 0 && !matches(name, namePages[slot >>> PAGE_BITS][slot & PAGE_MASK])) {
+                namePages[slot >>> PAGE_BITS][slot & PAGE_MASK] = store(name);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * METHOD: count
+     * 
+     * @param type A tier
+     * @return Number of registered accounts of that tier
+     */
+    public long count(UserType type) {
+        return tierCounts.get(type.ordinal());
+    }
+    
+    /**
+     * METHOD: size
+     * 
+     * @return Number of registered accounts
+     */
+    public long size() {
+        long total = 0;
+        for (int i = 0; i < tierCounts.length(); i++) {
+            total += tierCounts.get(i);
+        }
+        return total;
+    }
+    
+    /**
+     * GETTER: getMaterializedCount
+     * 
+     * @return Number of accounts currently held as User objects
+     */
+    public int getMaterializedCount() {
+        return materialized.size();
+    }
+    
+    // Drops user if the store keeps its state; true if dropped. Marked as
+    // evicting meanwhile, so get() waits. The state version is compared
+    // after each spill and after the drop to catch edits through a User
+    // obtained before; an edit after that last check is lost, which is why
+    // callers get users per request instead of keeping them.
+    private boolean evict(String userId, User user) {
+        CompletableFuture<Void> done = new CompletableFuture<Void>();
+        if (evicting.putIfAbsent(userId, done) != null) {
+            return false; // Someone else is dropping it
+        }
+        try {
+            if (materialized.get(userId) != user) {
+                return false; // Released or replaced by someone else meanwhile
+            }
+            UserStateStore store = stateStore;
+            if (store == null) {
+                materialized.remove(userId, user); // State goes with it
+            } else {
+                for (int spills = 0; ; spills++) {
+                    if (spills == MAX_SPILLS) {
+                        return false; // Still being edited: keep the User
+                    }
+                    long version = user.getStateVersion();
+                    if (!store.spill(user)) {
+                        return false; // State could not be kept: keep the User
+                    }
+                    if (user.getStateVersion() != version) {
+                        continue; // Edited while spilling
+                    }
+                    materialized.remove(userId, user);
+                    if (user.getStateVersion() == version) {
+                        break;
+                    }
+                    // Edited as it was dropped: put it back and retry. get()
+                    // builds nothing while the mark is set, so the slot is
+                    // still free; should another User be there anyway, it
+                    // came from the last spill and this edit is lost
+                    User other = materialized.putIfAbsent(userId, user);
+                    if (other != null) {
+                        EventLog.warn("UserDirectory", "Edit lost while releasing user {}", userId);
+                        break;
+                    }
+                }
+            }
+        } finally {
+            evicting.remove(userId, done);
+            done.complete(null);
+        }
+        user.stopPlayback(); // Returns its read-ahead buffers
+        return true;
+    }
+    
+    // Optimistic read first; retry under the read lock if a writer interfered
+    private int lookup(String userId) {
+        if (userId == null) {
+            return -1;
+        }
+        byte[] id = encode(userId);
+        int hash = hash(id);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int slot = find(id, hash);
+                if (lock.validate(stamp)) {
+                    return slot;
+                }
+            } catch (RuntimeException torn) {
+                // Arrays swapped by a concurrent resize; fall through
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return find(id, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    // Linear probing; caller holds a lock or validates afterwards
+    private int find(byte[] id, int hash) {
+        int[] t = table;
+        int mask = t.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int entry = t[i];
+            if (entry == 0) {
+                return -1;
+            }
+            int slot = entry - 1;
+            if (hashPages[slot >>> PAGE_BITS][slot & PAGE_MASK] == hash
+                    && matches(id, idPages[slot >>> PAGE_BITS][slot & PAGE_MASK])) {
+                return slot;
+            }
+        }
+    }
+    
+    private void insert(int hash, int slot) {
+        int mask = table.length - 1;
+        int i = hash & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+    
+    private void rehash(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        for (int entry : old) {
+            if (entry != 0) {
+                int slot = entry - 1;
+                insert(hashPages[slot >>> PAGE_BITS][slot & PAGE_MASK], slot);
+            }
+        }
+    }
+    
+    private void ensureSlot(int slot) {
+        int page = slot >>> PAGE_BITS;
+        if (page == hashPages.length) {
+            hashPages = Arrays.copyOf(hashPages, page + 1);
+            idPages = Arrays.copyOf(idPages, page + 1);
+            namePages = Arrays.copyOf(namePages, page + 1);
+            tierPages = Arrays.copyOf(tierPages, page + 1);
+            hashPages[page] = new int[PAGE_SIZE];
+            idPages[page] = new long[PAGE_SIZE];
+            namePages[page] = new long[PAGE_SIZE];
+            tierPages[page] = new byte[PAGE_SIZE];
+        }
+    }
+    
+    // Appends [u16 length][bytes] to the arena; returns (page << 32) | offset
+    private long store(byte[] bytes) {
+        if (arenaOffset + 2 + bytes.length > ARENA_PAGE_SIZE) {
+            arena = Arrays.copyOf(arena, arena.length + 1);
+            arena[arena.length - 1] = new byte[ARENA_PAGE_SIZE];
+            arenaOffset = 0;
+        }
+        int page = arena.length - 1;
+        byte[] target = arena[page];
+        target[arenaOffset] = (byte) (bytes.length >>> 8);
+        target[arenaOffset + 1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, target, arenaOffset + 2, bytes.length);
+        long ref = ((long) page << 32) | arenaOffset;
+        arenaOffset += 2 + bytes.length;
+        return ref;
+    }
+    
+    // Compares in place, without copying the stored bytes
+    private boolean matches(byte[] bytes, long ref) {
+        byte[] page = arena[(int) (ref >>> 32)];
+        int offset = (int) ref;
+        int length = ((page[offset] & 0xFF) << 8) | (page[offset + 1] & 0xFF);
+        return length == bytes.length
+                && Arrays.equals(bytes, 0, length, page, offset + 2, offset + 2 + length);
+    }
+    
+    private byte[] bytesAt(long ref) {
+        byte[] page = arena[(int) (ref >>> 32)];
+        int offset = (int) ref;
+        int length = ((page[offset] & 0xFF) << 8) | (page[offset + 1] & 0xFF);
+        return Arrays.copyOfRange(page, offset + 2, offset + 2 + length);
+    }
+    
+    private String load(long ref) {
+        return new String(bytesAt(ref), StandardCharsets.UTF_8);
+    }
+    
+    private User materialize(int slot) {
+        long stamp = lock.readLock();
+        String userId;
+        String username;
+        UserType type;
+        try {
+            userId = load(idPages[slot >>> PAGE_BITS][slot & PAGE_MASK]);
+            username = load(namePages[slot >>> PAGE_BITS][slot & PAGE_MASK]);
+            type = UserType.values()[tierPages[slot >>> PAGE_BITS][slot & PAGE_MASK]];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return type == UserType.PREMIUM ? new PremiumUser(userId, username) : new FreeUser(userId, username);
+    }
+    
+    private static byte[] encode(String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Value too long for user directory: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+    
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes);
+        return h ^ (h >>> 16);
+    }
+}